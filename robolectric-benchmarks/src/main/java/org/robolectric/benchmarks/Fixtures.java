@@ -0,0 +1,14 @@
+package org.robolectric.benchmarks;
+
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+
+class Fixtures {
+  static final String FIXTURES_PACKAGE = "org.robolectric.benchmarks.fixtures";
+
+  static InstrumentationConfiguration instrumentationConfiguration() {
+    return InstrumentationConfiguration.newBuilder()
+        .addInstrumentedPackage(FIXTURES_PACKAGE)
+        .doNotAcquireClass(IntOperation.class.getName())
+        .build();
+  }
+}
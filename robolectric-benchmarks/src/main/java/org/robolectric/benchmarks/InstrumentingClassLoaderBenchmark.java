@@ -0,0 +1,52 @@
+package org.robolectric.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.benchmarks.fixtures.Counter;
+import org.robolectric.benchmarks.fixtures.Dispatched;
+import org.robolectric.benchmarks.fixtures.Widget;
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+import org.robolectric.internal.bytecode.InstrumentingClassLoader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a fresh {@link InstrumentingClassLoader} takes to read, instrument and define classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class InstrumentingClassLoaderBenchmark {
+  private static final String[] CLASS_NAMES = {
+      Dispatched.class.getName(),
+      Counter.class.getName(),
+      Widget.class.getName()
+  };
+
+  private InstrumentationConfiguration config;
+
+  @Setup
+  public void setUp() {
+    config = Fixtures.instrumentationConfiguration();
+  }
+
+  @Benchmark
+  public ClassLoader defineInstrumentedClasses() throws Exception {
+    InstrumentingClassLoader classLoader = new InstrumentingClassLoader(config);
+    for (String className : CLASS_NAMES) {
+      classLoader.loadClass(className);
+    }
+    return classLoader;
+  }
+}
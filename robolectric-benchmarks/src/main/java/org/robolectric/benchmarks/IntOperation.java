@@ -0,0 +1,11 @@
+package org.robolectric.benchmarks;
+
+/**
+ * Lets benchmarks call into classes loaded by an {@link org.robolectric.internal.bytecode.InstrumentingClassLoader}
+ * without reflection; it must not be acquired by that class loader.
+ */
+public interface IntOperation {
+  int apply(int value);
+
+  int applyUnshadowed(int value);
+}
@@ -0,0 +1,105 @@
+package org.robolectric.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.res.Fs;
+import org.robolectric.res.PackageResourceLoader;
+import org.robolectric.res.ResName;
+import org.robolectric.res.ResourcePath;
+import org.robolectric.res.TypedResource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading a generated app's resources, as happens the first time a test asks for one of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class PackageResourceLoaderBenchmark {
+  private static final String PACKAGE_NAME = "org.robolectric.benchmarks";
+  private static final String[] VALUES_DIRS = {"values", "values-v21", "values-land", "values-fr"};
+  private static final int VALUE_COUNT = 500;
+  private static final int LAYOUT_COUNT = 50;
+
+  private File appDir;
+  private ResourcePath resourcePath;
+
+  @Setup
+  public void setUp() throws IOException {
+    appDir = Files.createTempDirectory("robolectric-benchmark").toFile();
+    File resDir = new File(appDir, "res");
+    for (String valuesDir : VALUES_DIRS) {
+      StringBuilder values = new StringBuilder("<resources>\n");
+      for (int i = 0; i < VALUE_COUNT; i++) {
+        values.append("  <string name=\"string").append(i).append("\">").append(valuesDir).append(' ').append(i).append("</string>\n");
+        values.append("  <dimen name=\"dimen").append(i).append("\">").append(i).append("dp</dimen>\n");
+        values.append("  <color name=\"color").append(i).append("\">#ff00").append(String.format("%04x", i)).append("</color>\n");
+      }
+      values.append("  <style name=\"Theme.Benchmark\" parent=\"android:Theme\">\n")
+          .append("    <item name=\"android:textSize\">@dimen/dimen1</item>\n")
+          .append("  </style>\n")
+          .append("</resources>\n");
+      write(new File(resDir, valuesDir + "/values.xml"), values.toString());
+    }
+    for (int i = 0; i < LAYOUT_COUNT; i++) {
+      write(new File(resDir, "layout/layout" + i + ".xml"),
+          "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+          "    android:layout_width=\"match_parent\" android:layout_height=\"match_parent\">\n" +
+          "  <TextView android:id=\"@+id/text" + i + "\" android:text=\"@string/string" + i + "\"\n" +
+          "      android:layout_width=\"wrap_content\" android:layout_height=\"wrap_content\"/>\n" +
+          "</LinearLayout>\n");
+    }
+    File assetsDir = new File(appDir, "assets");
+    assetsDir.mkdirs();
+
+    resourcePath = new ResourcePath(null, PACKAGE_NAME, Fs.newFile(resDir), Fs.newFile(assetsDir));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    delete(appDir);
+  }
+
+  @Benchmark
+  public TypedResource initialize() {
+    PackageResourceLoader resourceLoader = new PackageResourceLoader(resourcePath);
+    return resourceLoader.getValue(new ResName(PACKAGE_NAME, "string", "string0"), "");
+  }
+
+  private static void write(File file, String contents) throws IOException {
+    file.getParentFile().mkdirs();
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+      writer.write(contents);
+    }
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,69 @@
+package org.robolectric.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.res.ResBundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures picking the best value for a resource which has alternatives for several qualifiers.
+ *
+ * Calls {@link ResBundle#pick(List, String)} directly, since {@link ResBundle#get} remembers what it last picked for
+ * each resource and would only be measuring that lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ResBundleBenchmark {
+  private static final String[] VALUES_DIRS = {
+      "values", "values-v14", "values-v21", "values-land", "values-sw600dp", "values-w820dp",
+      "values-en", "values-en-rGB", "values-land-v21", "values-sw600dp-v21", "values-fr-land"
+  };
+  private static final int NAME_COUNT = 64;
+
+  private final List<List<ResBundle.Value<String>>> valueLists = new ArrayList<>();
+  private int next;
+
+  @Setup
+  public void setUp() {
+    for (int i = 0; i < NAME_COUNT; i++) {
+      List<ResBundle.Value<String>> values = new ArrayList<>();
+      for (String valuesDir : VALUES_DIRS) {
+        String qualifiers = valuesDir.equals("values") ? null : valuesDir.substring("values-".length());
+        values.add(new ResBundle.Value<>(qualifiers, "string" + i + " from " + valuesDir));
+      }
+      // sorted the way ResBundle keeps them
+      Collections.sort(values);
+      valueLists.add(values);
+    }
+  }
+
+  @Benchmark
+  public String pickForDefaultConfiguration() {
+    return ResBundle.pick(nextValues(), "").getValue();
+  }
+
+  @Benchmark
+  public String pickForQualifiedConfiguration() {
+    return ResBundle.pick(nextValues(), "en-rGB-land-sw600dp-w820dp-v23").getValue();
+  }
+
+  private List<ResBundle.Value<String>> nextValues() {
+    return valueLists.get(next++ & (NAME_COUNT - 1));
+  }
+}
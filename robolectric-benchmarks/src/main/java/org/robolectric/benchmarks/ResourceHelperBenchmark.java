@@ -0,0 +1,169 @@
+package org.robolectric.benchmarks;
+
+import android.util.TypedValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.shadows.ResourceHelper;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures parsing dimension, float and color literals with {@link ResourceHelper}, against the regular expression
+ * and substring based parsing it used to do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ResourceHelperBenchmark {
+  private static final String[] FLOATS = {
+      "8dp", "16dip", "12sp", "1px", "-2.5dp", "0.5", "33.3%", "100%p", "4.75pt", "1.0", "72in", " 24dp "
+  };
+  private static final String[] COLORS = {
+      "#fff", "#8fff", "#ffffff", "#80ff00ff", "#123", "#cafe", "#00ff00", "#ff2c76ad"
+  };
+
+  private final TypedValue typedValue = new TypedValue();
+  private int next;
+
+  @Benchmark
+  public int parseFloatAttribute() {
+    ResourceHelper.parseFloatAttribute(null, FLOATS[nextIndex(FLOATS.length)], typedValue, false);
+    return typedValue.data;
+  }
+
+  @Benchmark
+  public int parseFloatAttributeWithRegex() {
+    RegexResourceHelper.parseFloatAttribute(FLOATS[nextIndex(FLOATS.length)], typedValue);
+    return typedValue.data;
+  }
+
+  @Benchmark
+  public int getColor() {
+    return ResourceHelper.getColor(COLORS[nextIndex(COLORS.length)]);
+  }
+
+  @Benchmark
+  public int getColorWithSubstrings() {
+    return RegexResourceHelper.getColor(COLORS[nextIndex(COLORS.length)]);
+  }
+
+  private int nextIndex(int length) {
+    return (next++ & Integer.MAX_VALUE) % length;
+  }
+
+  /**
+   * How {@link ResourceHelper} used to parse values.
+   */
+  private static class RegexResourceHelper {
+    private static final Pattern FLOAT_PATTERN = Pattern.compile("(-?[0-9]+(?:\\.[0-9]+)?)(.*)");
+    private static final String[] UNIT_NAMES = {"px", "dip", "dp", "sp", "pt", "in", "mm", "%", "%p"};
+    private static final int[] UNIT_TYPES = {
+        TypedValue.TYPE_DIMENSION, TypedValue.TYPE_DIMENSION, TypedValue.TYPE_DIMENSION, TypedValue.TYPE_DIMENSION,
+        TypedValue.TYPE_DIMENSION, TypedValue.TYPE_DIMENSION, TypedValue.TYPE_DIMENSION, TypedValue.TYPE_FRACTION,
+        TypedValue.TYPE_FRACTION
+    };
+    private static final int[] UNITS = {
+        TypedValue.COMPLEX_UNIT_PX, TypedValue.COMPLEX_UNIT_DIP, TypedValue.COMPLEX_UNIT_DIP, TypedValue.COMPLEX_UNIT_SP,
+        TypedValue.COMPLEX_UNIT_PT, TypedValue.COMPLEX_UNIT_IN, TypedValue.COMPLEX_UNIT_MM,
+        TypedValue.COMPLEX_UNIT_FRACTION, TypedValue.COMPLEX_UNIT_FRACTION_PARENT
+    };
+
+    static int getColor(String value) {
+      value = value.substring(1);
+      if (value.length() == 3) {
+        char[] color = new char[8];
+        color[0] = color[1] = 'F';
+        color[2] = color[3] = value.charAt(0);
+        color[4] = color[5] = value.charAt(1);
+        color[6] = color[7] = value.charAt(2);
+        value = new String(color);
+      } else if (value.length() == 4) {
+        char[] color = new char[8];
+        color[0] = color[1] = value.charAt(0);
+        color[2] = color[3] = value.charAt(1);
+        color[4] = color[5] = value.charAt(2);
+        color[6] = color[7] = value.charAt(3);
+        value = new String(color);
+      } else if (value.length() == 6) {
+        value = "FF" + value;
+      }
+      return (int) Long.parseLong(value, 16);
+    }
+
+    static boolean parseFloatAttribute(String value, TypedValue outValue) {
+      value = value.trim();
+      char[] buf = value.toCharArray();
+      for (char c : buf) {
+        if (c > 255) {
+          return false;
+        }
+      }
+
+      Matcher m = FLOAT_PATTERN.matcher(value);
+      if (!m.matches()) {
+        return false;
+      }
+      float f = Float.parseFloat(m.group(1));
+      String end = m.group(2);
+      if (end.length() == 0) {
+        outValue.type = TypedValue.TYPE_FLOAT;
+        outValue.data = Float.floatToIntBits(f);
+        return true;
+      }
+
+      end = end.trim();
+      for (int i = 0; i < UNIT_NAMES.length; i++) {
+        if (UNIT_NAMES[i].equals(end)) {
+          outValue.type = UNIT_TYPES[i];
+          outValue.data = UNITS[i] << TypedValue.COMPLEX_UNIT_SHIFT;
+          computeTypedValue(outValue, UNIT_TYPES[i] == TypedValue.TYPE_FRACTION ? f * (1.0f / 100) : f);
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static void computeTypedValue(TypedValue outValue, float value) {
+      boolean neg = value < 0;
+      if (neg) {
+        value = -value;
+      }
+      long bits = (long) (value * (1 << 23) + .5f);
+      int radix;
+      int shift;
+      if ((bits & 0x7fffff) == 0) {
+        radix = TypedValue.COMPLEX_RADIX_23p0;
+        shift = 23;
+      } else if ((bits & 0xffffffffff800000L) == 0) {
+        radix = TypedValue.COMPLEX_RADIX_0p23;
+        shift = 0;
+      } else if ((bits & 0xffffffff80000000L) == 0) {
+        radix = TypedValue.COMPLEX_RADIX_8p15;
+        shift = 8;
+      } else if ((bits & 0xffffff8000000000L) == 0) {
+        radix = TypedValue.COMPLEX_RADIX_16p7;
+        shift = 16;
+      } else {
+        radix = TypedValue.COMPLEX_RADIX_23p0;
+        shift = 23;
+      }
+      int mantissa = (int) ((bits >> shift) & TypedValue.COMPLEX_MANTISSA_MASK);
+      if (neg) {
+        mantissa = (-mantissa) & TypedValue.COMPLEX_MANTISSA_MASK;
+      }
+      outValue.data |= (radix << TypedValue.COMPLEX_RADIX_SHIFT) | (mantissa << TypedValue.COMPLEX_MANTISSA_SHIFT);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package org.robolectric.benchmarks;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures work which needs a Robolectric environment by running the tests in {@link SandboxedWork}.
+ *
+ * {@link #perTestSetup()} runs an empty test, so it measures what every test pays: creating the runner,
+ * {@link org.robolectric.internal.ParallelUniverse#setUpApplicationState} and tearing it down again. The SDK
+ * environment is built during warmup and reused after that, as it would be across a test suite.
+ * {@link #parcelRoundTrip()} includes that cost too, spread across {@link SandboxedWork#PARCEL_ROUND_TRIPS}
+ * operations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class SandboxBenchmark {
+  private final JUnitCore junit = new JUnitCore();
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public Result perTestSetup() {
+    return run("nothing");
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @OperationsPerInvocation(SandboxedWork.PARCEL_ROUND_TRIPS)
+  public Result parcelRoundTrip() {
+    return run("parcelRoundTrips");
+  }
+
+  private Result run(String methodName) {
+    Result result = junit.run(Request.method(SandboxedWork.class, methodName));
+    if (!result.wasSuccessful()) {
+      throw new IllegalStateException(methodName + " failed: " + result.getFailures());
+    }
+    return result;
+  }
+}
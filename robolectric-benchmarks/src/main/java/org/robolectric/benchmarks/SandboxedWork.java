@@ -0,0 +1,37 @@
+package org.robolectric.benchmarks;
+
+import android.os.Parcel;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Tests which {@link SandboxBenchmark} runs to measure work inside a Robolectric environment.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class SandboxedWork {
+  static final int PARCEL_ROUND_TRIPS = 10000;
+
+  @Test
+  public void nothing() {
+  }
+
+  @Test
+  public void parcelRoundTrips() {
+    for (int i = 0; i < PARCEL_ROUND_TRIPS; i++) {
+      Parcel parcel = Parcel.obtain();
+      parcel.writeInt(i);
+      parcel.writeLong(i);
+      parcel.writeString("value");
+      parcel.writeByteArray(new byte[] {1, 2, 3});
+      parcel.setDataPosition(0);
+      if (parcel.readInt() != i || parcel.readLong() != i || !"value".equals(parcel.readString())
+          || parcel.createByteArray().length != 3) {
+        throw new AssertionError("parcel didn't round trip");
+      }
+      parcel.recycle();
+    }
+  }
+}
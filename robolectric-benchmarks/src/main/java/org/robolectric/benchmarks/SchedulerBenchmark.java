@@ -0,0 +1,70 @@
+package org.robolectric.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.util.Scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures posting delayed runnables to a paused {@link Scheduler}, then running or removing them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class SchedulerBenchmark {
+  @Param({"100", "10000"})
+  private int runnableCount;
+
+  private Runnable[] runnables;
+
+  @Setup
+  public void setUp() {
+    runnables = new Runnable[runnableCount];
+    for (int i = 0; i < runnableCount; i++) {
+      runnables[i] = new Runnable() {
+        @Override
+        public void run() {
+        }
+      };
+    }
+  }
+
+  @Benchmark
+  public Scheduler postAndAdvance() {
+    Scheduler scheduler = postAll();
+    scheduler.advanceToLastPostedRunnable();
+    return scheduler;
+  }
+
+  @Benchmark
+  public Scheduler postAndRemove() {
+    Scheduler scheduler = postAll();
+    for (Runnable runnable : runnables) {
+      scheduler.remove(runnable);
+    }
+    return scheduler;
+  }
+
+  private Scheduler postAll() {
+    Scheduler scheduler = new Scheduler();
+    scheduler.pause();
+    for (int i = 0; i < runnables.length; i++) {
+      // interleave delays so posting doesn't always append to the end of the queue
+      scheduler.postDelayed(runnables[i], (i * 7919) % 1000);
+    }
+    return scheduler;
+  }
+}
@@ -0,0 +1,71 @@
+package org.robolectric.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.benchmarks.fixtures.Dispatched;
+import org.robolectric.benchmarks.shadows.ShadowDispatched;
+import org.robolectric.internal.bytecode.InstrumentingClassLoader;
+import org.robolectric.internal.bytecode.ShadowInvalidator;
+import org.robolectric.internal.bytecode.ShadowMap;
+import org.robolectric.internal.bytecode.ShadowWrangler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures calls to instrumented methods, with and without a shadow implementation, through both the
+ * invokedynamic call sites and the {@link org.robolectric.internal.bytecode.ClassHandler.Plan}s used when
+ * invokedynamic is disabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ShadowDispatchBenchmark {
+  private static final String INVOKEDYNAMIC = "-Drobolectric.invokedynamic.enable=true";
+  private static final String PLANS = "-Drobolectric.invokedynamic.enable=false";
+
+  private IntOperation operation;
+  private int value = 42;
+
+  @Setup
+  public void setUp() throws Exception {
+    InstrumentingClassLoader classLoader = new InstrumentingClassLoader(Fixtures.instrumentationConfiguration());
+    ShadowMap shadowMap = new ShadowMap.Builder().addShadowClasses(ShadowDispatched.class).build();
+    RobolectricTestRunner.injectEnvironment(classLoader, new ShadowWrangler(shadowMap, 23), new ShadowInvalidator());
+    operation = (IntOperation) classLoader.loadClass(Dispatched.class.getName()).newInstance();
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = INVOKEDYNAMIC)
+  public int shadowedWithInvokeDynamic() {
+    return operation.apply(value);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = PLANS)
+  public int shadowedWithPlans() {
+    return operation.apply(value);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = INVOKEDYNAMIC)
+  public int callThroughWithInvokeDynamic() {
+    return operation.applyUnshadowed(value);
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = PLANS)
+  public int callThroughWithPlans() {
+    return operation.applyUnshadowed(value);
+  }
+}
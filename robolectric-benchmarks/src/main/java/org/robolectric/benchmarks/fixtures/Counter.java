@@ -0,0 +1,26 @@
+package org.robolectric.benchmarks.fixtures;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Counter {
+  private final List<Integer> counts = new ArrayList<>();
+  private int total;
+
+  public void add(int count) {
+    counts.add(count);
+    total += count;
+  }
+
+  public int getTotal() {
+    return total;
+  }
+
+  public static Counter of(int... counts) {
+    Counter counter = new Counter();
+    for (int count : counts) {
+      counter.add(count);
+    }
+    return counter;
+  }
+}
@@ -0,0 +1,15 @@
+package org.robolectric.benchmarks.fixtures;
+
+import org.robolectric.benchmarks.IntOperation;
+
+public class Dispatched implements IntOperation {
+  @Override
+  public int apply(int value) {
+    return value + 1;
+  }
+
+  @Override
+  public int applyUnshadowed(int value) {
+    return value + 1;
+  }
+}
@@ -0,0 +1,27 @@
+package org.robolectric.benchmarks.fixtures;
+
+public class Widget {
+  private final String name;
+  private final Counter counter = new Counter();
+
+  public Widget(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void click() {
+    counter.add(1);
+  }
+
+  public int getClickCount() {
+    return counter.getTotal();
+  }
+
+  @Override
+  public String toString() {
+    return "Widget{" + name + "}";
+  }
+}
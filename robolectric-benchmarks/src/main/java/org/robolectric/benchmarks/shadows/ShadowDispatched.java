@@ -0,0 +1,13 @@
+package org.robolectric.benchmarks.shadows;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.benchmarks.fixtures.Dispatched;
+
+@Implements(Dispatched.class)
+public class ShadowDispatched {
+  @Implementation
+  public int apply(int value) {
+    return value + 2;
+  }
+}
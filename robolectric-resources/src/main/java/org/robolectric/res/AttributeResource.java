@@ -12,6 +12,7 @@ public class AttributeResource {
   public final @NotNull ResName resName;
   public final @NotNull String value;
   public final @NotNull String contextPackageName;
+  private volatile ConvertedValue convertedValue;
 
   public AttributeResource(@NotNull ResName resName, @NotNull String value, @NotNull String contextPackageName) {
     if (!resName.type.equals("attr")) throw new IllegalStateException("\"" + resName.getFullyQualifiedName() + "\" unexpected");
@@ -45,6 +46,18 @@ public class AttributeResource {
     return ResName.qualifyResName(value.substring(1), contextPackageName, "attr");
   }
 
+  /**
+   * Returns what this attribute's value was converted to by {@code convertedBy}, or null if it hasn't been.
+   */
+  public ConvertedValue getConvertedValue(Object convertedBy) {
+    ConvertedValue convertedValue = this.convertedValue;
+    return convertedValue != null && convertedValue.convertedBy.equals(convertedBy) ? convertedValue : null;
+  }
+
+  public void setConvertedValue(ConvertedValue convertedValue) {
+    this.convertedValue = convertedValue;
+  }
+
   public boolean isNull() {
     return NULL_VALUE.equals(value);
   }
@@ -0,0 +1,21 @@
+package org.robolectric.res;
+
+/**
+ * What a resource value was converted to for an {@code android.util.TypedValue}, remembered so that it's only converted
+ * once. Holds no Android classes, since resources are shared by every SDK.
+ */
+public final class ConvertedValue {
+  /** What did the conversion, such as the converter's class name. Never a {@code Class}, which would pin its SDK. */
+  public final Object convertedBy;
+  public final int type;
+  public final int data;
+  /** Whether the {@code TypedValue}'s asset cookie and string were cleared. */
+  public final boolean clearsStringAndCookie;
+
+  public ConvertedValue(Object convertedBy, int type, int data, boolean clearsStringAndCookie) {
+    this.convertedBy = convertedBy;
+    this.type = type;
+    this.data = data;
+    this.clearsStringAndCookie = clearsStringAndCookie;
+  }
+}
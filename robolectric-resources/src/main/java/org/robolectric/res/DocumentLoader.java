@@ -4,6 +4,28 @@ import com.ximpleware.VTDGen;
 import com.ximpleware.VTDNav;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the XML files in resource directories.
+ *
+ * Files are read, parsed and prepared by each {@link XmlLoader} on a shared pool of threads (the number is set by
+ * the {@code robolectric.resourceParsing.threads} system property, and defaults to the number of processors).
+ * Preparing includes selecting the nodes each {@link XpathResourceXmlLoader} is interested in, which is where most
+ * of the time goes. The loaders then process the prepared files one at a time on the calling thread, in the order
+ * the files were found, so the loaded resources are the same no matter how the parsing was scheduled.
+ */
 public class DocumentLoader {
   private static final FsFile.Filter ENDS_WITH_XML = new FsFile.Filter() {
     @Override public boolean accept(@NotNull FsFile fsFile) {
@@ -11,51 +33,149 @@ public class DocumentLoader {
     }
   };
 
+  private static final int PARSER_THREADS =
+      Integer.getInteger("robolectric.resourceParsing.threads", Runtime.getRuntime().availableProcessors());
+
+  // the number of files which may be parsed ahead of the one being processed
+  private static final int WINDOW_SIZE = PARSER_THREADS * 4;
+
+  private static final ThreadLocal<VTDGen> vtdGens = new ThreadLocal<VTDGen>() {
+    @Override
+    protected VTDGen initialValue() {
+      return new VTDGen();
+    }
+  };
+
+  private static ExecutorService parserExecutor;
+
   private final FsFile resourceBase;
   private final String packageName;
-  private final VTDGen vtdGen;
+  private int loadedFileCount;
 
   public DocumentLoader(ResourcePath resourcePath) {
     this.resourceBase = resourcePath.getResourceBase();
     this.packageName = resourcePath.getPackageName();
-    vtdGen = new VTDGen();
   }
 
   public void load(String folderBaseName, XmlLoader... xmlLoaders) throws Exception {
-    FsFile[] files = resourceBase.listFiles(new DirectoryMatchingFilter(folderBaseName));
-    if (files == null) {
+    FsFile[] dirs = resourceBase.listFiles(new DirectoryMatchingFilter(folderBaseName));
+    if (dirs == null) {
       throw new RuntimeException(resourceBase.join(folderBaseName) + " is not a directory");
     }
-    for (FsFile dir : files) {
-      loadFile(dir, xmlLoaders);
+
+    List<FsFile> files = new ArrayList<>();
+    for (FsFile dir : dirs) {
+      if (!dir.exists()) {
+        throw new RuntimeException("no such directory " + dir);
+      }
+      Collections.addAll(files, dir.listFiles(ENDS_WITH_XML));
+    }
+
+    if (PARSER_THREADS <= 1 || files.size() <= 1) {
+      for (FsFile file : files) {
+        process(prepare(file, xmlLoaders), xmlLoaders);
+      }
+    } else {
+      loadConcurrently(files, xmlLoaders);
+    }
+  }
+
+  public int getLoadedFileCount() {
+    return loadedFileCount;
+  }
+
+  private void loadConcurrently(List<FsFile> files, final XmlLoader[] xmlLoaders) throws Exception {
+    ExecutorService executor = getParserExecutor();
+    Deque<Future<PreparedFile>> pending = new ArrayDeque<>();
+    int nextFile = 0;
+    try {
+      while (nextFile < files.size() || !pending.isEmpty()) {
+        while (nextFile < files.size() && pending.size() < WINDOW_SIZE) {
+          final FsFile file = files.get(nextFile++);
+          pending.add(executor.submit(new Callable<PreparedFile>() {
+            @Override
+            public PreparedFile call() throws Exception {
+              return prepare(file, xmlLoaders);
+            }
+          }));
+        }
+
+        process(getPrepared(pending.remove()), xmlLoaders);
+      }
+    } finally {
+      for (Future<PreparedFile> future : pending) {
+        future.cancel(false);
+      }
     }
   }
 
-  private void loadFile(FsFile dir, XmlLoader[] xmlLoaders) throws Exception {
-    if (!dir.exists()) {
-      throw new RuntimeException("no such directory " + dir);
+  private PreparedFile prepare(FsFile file, XmlLoader[] xmlLoaders) throws Exception {
+    VTDNav vtdNav = parse(file);
+    Object[] prepared = new Object[xmlLoaders.length];
+    for (int i = 0; i < xmlLoaders.length; i++) {
+      prepared[i] = xmlLoaders[i].prepareResourceXml(file, vtdNav, packageName);
     }
+    return new PreparedFile(file, vtdNav, prepared);
+  }
 
-    for (FsFile file : dir.listFiles(ENDS_WITH_XML)) {
-      loadResourceXmlFile(file, xmlLoaders);
+  private void process(PreparedFile preparedFile, XmlLoader[] xmlLoaders) throws Exception {
+    loadedFileCount++;
+    for (int i = 0; i < xmlLoaders.length; i++) {
+      xmlLoaders[i].processResourceXml(preparedFile.file, preparedFile.vtdNav, packageName, preparedFile.prepared[i]);
     }
   }
 
-  private void loadResourceXmlFile(FsFile fsFile, XmlLoader... xmlLoaders) throws Exception {
-    VTDNav vtdNav = parse(fsFile);
-    for (XmlLoader xmlLoader : xmlLoaders) {
-      xmlLoader.processResourceXml(fsFile, vtdNav, packageName);
+  private static PreparedFile getPrepared(Future<PreparedFile> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
     }
   }
 
   private VTDNav parse(FsFile xmlFile) throws Exception {
     byte[] bytes = xmlFile.getBytes();
+    VTDGen vtdGen = vtdGens.get();
     vtdGen.setDoc(bytes);
     vtdGen.parse(true);
 
     return vtdGen.getNav();
   }
 
+  private static synchronized ExecutorService getParserExecutor() {
+    if (parserExecutor == null) {
+      parserExecutor = Executors.newFixedThreadPool(PARSER_THREADS, new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+          Thread thread = new Thread(runnable, "robolectric-resource-parser-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return parserExecutor;
+  }
+
+  private static class PreparedFile {
+    private final FsFile file;
+    private final VTDNav vtdNav;
+    private final Object[] prepared;
+
+    PreparedFile(FsFile file, VTDNav vtdNav, Object[] prepared) {
+      this.file = file;
+      this.vtdNav = vtdNav;
+      this.prepared = prepared;
+    }
+  }
+
   private static class DirectoryMatchingFilter implements FsFile.Filter {
     private final String folderBaseName;
 
@@ -30,13 +30,22 @@ public class DrawableResourceLoader {
    * @param resourcePath Resource path.
    */
   public void findDrawableResources(ResourcePath resourcePath) {
+    findDrawableResources(resourcePath, "drawable");
+    findDrawableResources(resourcePath, "mipmap");
+  }
+
+  /**
+   * Finds the drawables of one type, either {@code drawable} or {@code mipmap}.
+   *
+   * @param resourcePath Resource path.
+   * @param type Resource type, which is also the prefix of the directories it's found in.
+   */
+  public void findDrawableResources(ResourcePath resourcePath, String type) {
     FsFile[] files = resourcePath.getResourceBase().listFiles();
     if (files != null) {
       for (FsFile f : files) {
-        if (f.isDirectory() && f.getName().startsWith("drawable")) {
-          listDrawableResources(resourcePath, f, "drawable");
-        } else if (f.isDirectory() && f.getName().startsWith("mipmap")) {
-          listDrawableResources(resourcePath, f, "mipmap");
+        if (f.isDirectory() && f.getName().startsWith(type)) {
+          listDrawableResources(resourcePath, f, type);
         }
       }
     }
@@ -169,6 +169,14 @@ abstract public class Fs {
         return Util.readBytes(jarFile.getInputStream(jarEntryMap.get(path)));
       }
 
+      /**
+       * Returns the CRC-32 of this file's contents recorded in the jar, or -1 if it isn't known.
+       */
+      long getCrc() {
+        JarEntry jarEntry = jarEntryMap.get(path);
+        return jarEntry == null ? -1 : jarEntry.getCrc();
+      }
+
       @Override public FsFile join(String... pathParts) {
         return new JarFsFile(path + "/" + Join.join("/", asList(pathParts)));
       }
@@ -0,0 +1,39 @@
+package org.robolectric.res;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * Ids made up for resources which aren't declared in any R class, numbered after the highest declared id.
+ */
+class GeneratedResourceIds {
+  private static final Logger LOGGER = Logger.getLogger(GeneratedResourceIds.class.getName());
+
+  private final ConcurrentMap<ResName, Integer> ids = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, ResName> names = new ConcurrentHashMap<>();
+  private int maxUsedInt;
+
+  GeneratedResourceIds(int maxUsedInt) {
+    this.maxUsedInt = maxUsedInt;
+  }
+
+  Integer getId(ResName resName) {
+    return ids.isEmpty() ? null : ids.get(resName);
+  }
+
+  ResName getName(int id) {
+    return names.isEmpty() ? null : names.get(id);
+  }
+
+  synchronized Integer generateId(ResName resName) {
+    Integer id = ids.get(resName);
+    if (id == null) {
+      id = ++maxUsedInt;
+      names.put(id, resName);
+      ids.put(resName, id);
+      LOGGER.fine("no id mapping found for " + resName.getFullyQualifiedName() + "; assigning ID #0x" + Integer.toHexString(id));
+    }
+    return id;
+  }
+}
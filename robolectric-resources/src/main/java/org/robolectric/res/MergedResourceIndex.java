@@ -1,6 +1,7 @@
 package org.robolectric.res;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -8,31 +9,55 @@ import java.util.Set;
 public class MergedResourceIndex extends ResourceIndex {
   private final ResourceIndex[] subIndexes;
   private final Set<String> actualPackageNames = new HashSet<>();
+  private final ResourceIdTable resourceIdTable;
+  // Where to look for ids which were generated after this index was built, by package name and by package id.
+  private final Map<String, ResourceIndex> subIndexesByPackageName = new HashMap<>();
+  private final ResourceIndex[] subIndexesByPackageId = new ResourceIndex[256];
 
   public MergedResourceIndex(ResourceIndex... subIndexes) {
     this.subIndexes = subIndexes;
+
+    ResourceIdTable.Builder builder = new ResourceIdTable.Builder();
     for (ResourceIndex subIndex : subIndexes) {
       actualPackageNames.addAll(subIndex.getPackages());
-      merge(resourceNameToId, subIndex.resourceNameToId, "resourceNameToId");
-      merge(resourceIdToResName, subIndex.resourceIdToResName, "resourceIdToResName");
-    }
-  }
+      for (String packageName : subIndex.getPackages()) {
+        if (!subIndexesByPackageName.containsKey(packageName)) {
+          subIndexesByPackageName.put(packageName, subIndex);
+        }
+      }
 
-  private static <K,V> void merge(Map<K, V> map1, Map<K, V> map2, String name) {
-    int expected = map1.size() + map2.size();
-    map1.putAll(map2);
-    if (map1.size() != expected) {
-      throw new IllegalStateException("there must have been some overlap for " + name + "! expected " + expected + " but got " + map1.size());
+      ResourceIdTable subResourceIdTable = subIndex.getResourceIdTable();
+      for (int i = 0; i < subResourceIdTable.size(); i++) {
+        ResName resName = subResourceIdTable.getNameAt(i);
+        int id = subResourceIdTable.getIdAt(i);
+        if (builder.containsName(resName)) {
+          throw new IllegalStateException("there must have been some overlap for resourceNameToId! " + resName + " is in more than one index");
+        }
+        if (builder.containsId(id)) {
+          throw new IllegalStateException("there must have been some overlap for resourceIdToResName! #0x" + Integer.toHexString(id) + " is in more than one index");
+        }
+        builder.put(resName, id);
+
+        int packageId = id >>> 24;
+        if (subIndexesByPackageId[packageId] == null) {
+          subIndexesByPackageId[packageId] = subIndex;
+        }
+      }
     }
+    resourceIdTable = builder.build();
   }
 
   @Override
   public Integer getResourceId(ResName resName) {
-    // todo: this is pretty silly...
-    Integer id = resourceNameToId.get(resName);
+    Integer id = resourceIdTable.getId(resName);
     if (id == null) {
-      for (ResourceIndex subIndex : subIndexes) {
-        id = subIndex.getResourceId(resName);
+      ResourceIndex subIndex = subIndexesByPackageName.get(resName.packageName);
+      if (subIndex != null) {
+        return subIndex.getResourceId(resName);
+      }
+
+      for (ResourceIndex index : subIndexes) {
+        id = index.getResourceId(resName);
         if (id != null) return id;
       }
     }
@@ -41,11 +66,15 @@ public class MergedResourceIndex extends ResourceIndex {
 
   @Override
   public ResName getResName(int resourceId) {
-    // todo: this is pretty silly...
-    ResName resName = resourceIdToResName.get(resourceId);
+    ResName resName = resourceIdTable.getName(resourceId);
     if (resName == null) {
-      for (ResourceIndex subIndex : subIndexes) {
-        resName = subIndex.getResName(resourceId);
+      ResourceIndex subIndex = subIndexesByPackageId[resourceId >>> 24];
+      if (subIndex != null) {
+        return subIndex.getResName(resourceId);
+      }
+
+      for (ResourceIndex index : subIndexes) {
+        resName = index.getResName(resourceId);
         if (resName != null) return resName;
       }
     }
@@ -55,4 +84,9 @@ public class MergedResourceIndex extends ResourceIndex {
   @Override public Collection<String> getPackages() {
     return actualPackageNames;
   }
-}
\ No newline at end of file
+
+  @Override
+  ResourceIdTable getResourceIdTable() {
+    return resourceIdTable;
+  }
+}
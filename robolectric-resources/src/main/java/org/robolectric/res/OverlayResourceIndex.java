@@ -1,20 +1,15 @@
 package org.robolectric.res;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.logging.Logger;
 
 class OverlayResourceIndex extends ResourceIndex {
-
-  private static final Logger LOGGER = Logger.getLogger(OverlayResourceIndex.class.getName());
-
   private final String packageName;
   private final Set<String> actualPackageNames = new HashSet<>();
-  private Integer maxUsedInt = null;
+  private final ResourceIdTable resourceIdTable;
+  private final GeneratedResourceIds generatedIds;
 
   public OverlayResourceIndex(String packageName, List<PackageResourceLoader> subResourceLoaders) {
     this(packageName, map(subResourceLoaders));
@@ -32,19 +27,20 @@ class OverlayResourceIndex extends ResourceIndex {
     this.packageName = packageName;
     actualPackageNames.add(packageName);
 
+    ResourceIdTable.Builder builder = new ResourceIdTable.Builder();
     for (ResourceIndex subResourceIndex : subResourceIndexes) {
       actualPackageNames.addAll(subResourceIndex.getPackages());
 
-      for (Map.Entry<ResName, Integer> entry : subResourceIndex.resourceNameToId.entrySet()) {
-        ResName resName = entry.getKey();
-        int value = entry.getValue();
-        ResName localResName = resName.withPackageName(packageName);
-        if (!resourceNameToId.containsKey(localResName)) {
-          resourceNameToId.put(localResName, value);
-          resourceIdToResName.put(value, localResName);
+      ResourceIdTable subResourceIdTable = subResourceIndex.getResourceIdTable();
+      for (int i = 0; i < subResourceIdTable.size(); i++) {
+        ResName localResName = subResourceIdTable.getNameAt(i).withPackageName(packageName);
+        if (!builder.containsName(localResName)) {
+          builder.put(localResName, subResourceIdTable.getIdAt(i));
         }
       }
     }
+    resourceIdTable = builder.build();
+    generatedIds = new GeneratedResourceIds(resourceIdTable.getMaxId());
   }
 
   @Override
@@ -52,22 +48,22 @@ class OverlayResourceIndex extends ResourceIndex {
     if (!actualPackageNames.contains(resName.packageName)) {
       return null;
     }
-    Integer id = resourceNameToId.get(resName.withPackageName(packageName));
+    Integer id = resourceIdTable.getId(resName.withPackageName(packageName));
     if (id == null) {
-      if (maxUsedInt == null) {
-        maxUsedInt = resourceIdToResName.isEmpty() ? 0 : Collections.max(resourceIdToResName.keySet());
-      }
-      id = ++maxUsedInt;
-      resourceNameToId.put(resName, id);
-      resourceIdToResName.put(id, resName);
-      LOGGER.fine("no id mapping found for " + resName.getFullyQualifiedName() + "; assigning ID #0x" + Integer.toHexString(id));
+      id = generatedIds.getId(resName);
+    }
+    if (id == null) {
+      id = generatedIds.generateId(resName);
     }
     return id;
   }
 
   @Override
   public ResName getResName(int resourceId) {
-    ResName resName = resourceIdToResName.get(resourceId);
+    ResName resName = resourceIdTable.getName(resourceId);
+    if (resName == null) {
+      resName = generatedIds.getName(resourceId);
+    }
     return resName == null ? null : resName.withPackageName(packageName);
   }
 
@@ -75,6 +71,11 @@ class OverlayResourceIndex extends ResourceIndex {
     return actualPackageNames;
   }
 
+  @Override
+  ResourceIdTable getResourceIdTable() {
+    return resourceIdTable;
+  }
+
   @Override public String toString() {
     return "OverlayResourceIndex{" +
         "package='" + packageName + '\'' +
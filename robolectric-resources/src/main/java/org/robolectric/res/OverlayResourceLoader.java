@@ -5,7 +5,9 @@ import org.robolectric.res.builder.XmlBlock;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
 
 public class OverlayResourceLoader extends XResourceLoader {
@@ -23,8 +25,23 @@ public class OverlayResourceLoader extends XResourceLoader {
 
   @Override
   void doInitialize() {
-    initialiseResourceLoaders();
-    mergeResources();
+    initialiseResourceLoaders(null);
+
+    Set<String> types = new LinkedHashSet<>();
+    for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
+      types.addAll(subResourceLoader.getTypes());
+    }
+    for (String type : types) {
+      if (!isInitialized(type)) {
+        mergeResources(type);
+      }
+    }
+  }
+
+  @Override
+  void doInitialize(String type) {
+    initialiseResourceLoaders(type);
+    mergeResources(type);
   }
 
   /**
@@ -38,14 +55,18 @@ public class OverlayResourceLoader extends XResourceLoader {
     return Math.max(1, threadsToUse);
   }
 
-  private void initialiseResourceLoaders() {
+  private void initialiseResourceLoaders(final String type) {
     List<Callable<Void>> initialiseTasks = new ArrayList<Callable<Void>>(subResourceLoaders.size());
 
     for (final PackageResourceLoader subResourceLoader : subResourceLoaders) {
       initialiseTasks.add(new Callable<Void>() {
         @Override
         public Void call() {
-          subResourceLoader.initialize();
+          if (type == null) {
+            subResourceLoader.initialize();
+          } else {
+            subResourceLoader.initialize(type);
+          }
           return null;
         }
       });
@@ -54,42 +75,27 @@ public class OverlayResourceLoader extends XResourceLoader {
     runTasksInExecutor(initialiseTasks);
   }
 
-  private void mergeResources() {
-    List<Callable<Void>> mergeTasks = new ArrayList<Callable<Void>>(7);
-    mergeTasks.add(new Callable<Void>() {
-      @Override
-      public Void call() {
-        for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
-          xmlDocuments.mergeLibraryStyle(subResourceLoader.xmlDocuments, packageName);
-        }
-        return null;
-      }
-    });
-
-    mergeTasks.add(new Callable<Void>() {
-      @Override
-      public Void call() {
-        for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
-          rawResources.mergeLibraryStyle(subResourceLoader.rawResources, packageName);
-        }
-        return null;
-      }
-    });
-
-    mergeTasks.add(new Callable<Void>() {
-      @Override
-      public Void call() {
-        for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
-          data.mergeLibraryStyle(subResourceLoader.data, packageName);
-        }
-        return null;
-      }
-    });
-
-    runTasksInExecutor(mergeTasks);
+  private void mergeResources(String type) {
+    for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
+      data.mergeLibraryStyle(subResourceLoader.data, packageName, type);
+      xmlDocuments.mergeLibraryStyle(subResourceLoader.xmlDocuments, packageName, type);
+      rawResources.mergeLibraryStyle(subResourceLoader.rawResources, packageName, type);
+    }
   }
 
   private void runTasksInExecutor(List<Callable<Void>> tasks) {
+    if (tasks.size() == 1) {
+      // a single loader isn't worth starting a thread pool for
+      try {
+        tasks.get(0).call();
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      return;
+    }
+
     ForkJoinPool executorService = new ForkJoinPool(MAX_PARALLELISM);
     try {
       executorService.invokeAll(tasks);
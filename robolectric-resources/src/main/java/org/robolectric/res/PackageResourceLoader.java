@@ -2,33 +2,164 @@ package org.robolectric.res;
 
 import org.robolectric.util.Logger;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 public class PackageResourceLoader extends XResourceLoader {
+  private static final String[] FAMILIES = {
+      "values", "layout", "menu", "drawable", "anim", "animator", "color", "xml", "transition", "interpolator",
+      "mipmap", "raw"
+  };
+
   private final ResourcePath resourcePath;
+  private final ResourceTableCache resourceTableCache;
+  private final Set<String> loadedFamilies = new LinkedHashSet<>();
+  private DocumentLoader documentLoader;
+  // set while values are being decoded from a resource table one type at a time
+  private ResourceTableCache.Table valuesTable;
 
   public PackageResourceLoader(ResourcePath resourcePath) {
     this(resourcePath, new ResourceExtractor(resourcePath));
   }
 
   public PackageResourceLoader(ResourcePath resourcePath, ResourceIndex resourceIndex) {
+    this(resourcePath, resourceIndex, ResourceTableCache.fromSystemProperties());
+  }
+
+  /**
+   * @param resourceTableCache Where parsed values are cached, or null to always parse them.
+   */
+  public PackageResourceLoader(ResourcePath resourcePath, ResourceIndex resourceIndex, ResourceTableCache resourceTableCache) {
     super(resourceIndex);
     this.resourcePath = resourcePath;
+    this.resourceTableCache = resourceTableCache;
   }
 
+  @Override
   void doInitialize() {
+    loadFamily("values");
+    loadValuesFromTable(null);
+    for (String family : FAMILIES) {
+      loadFamily(family);
+    }
+  }
+
+  @Override
+  void doInitialize(String type) {
+    // values directories can define resources of any type
+    loadFamily("values");
+    loadValuesFromTable(type);
+    loadFamily(type);
+  }
+
+  /**
+   * Returns the directory families, such as {@code values} or {@code layout}, which have been loaded so far.
+   */
+  public synchronized Set<String> getLoadedFamilies() {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(loadedFamilies));
+  }
+
+  /**
+   * Returns the number of XML files which have been parsed so far.
+   */
+  public synchronized int getParsedFileCount() {
+    return documentLoader == null ? 0 : documentLoader.getLoadedFileCount();
+  }
+
+  private void loadFamily(String family) {
+    if (loadedFamilies.contains(family)) return;
+
+    Logger.debug("Loading %s resources for %s from %s...", family, resourcePath.getPackageName(), resourcePath.getResourceBase());
     try {
-      loadEverything();
+      doLoadFamily(family);
     } catch (RuntimeException e) {
       throw e;
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
+    loadedFamilies.add(family);
   }
 
-  private void loadEverything() throws Exception {
-    Logger.debug("Loading resources for %s from %s...", resourcePath.getPackageName(), resourcePath.getResourceBase());
+  private void doLoadFamily(String family) throws Exception {
+    if (documentLoader == null) {
+      documentLoader = new DocumentLoader(resourcePath);
+    }
 
-    DocumentLoader documentLoader = new DocumentLoader(resourcePath);
+    switch (family) {
+      case "values":
+        String resourceTableKey = resourceTableCache == null ? null : resourceTableCache.keyFor(resourcePath);
+        valuesTable = resourceTableKey == null ? null : resourceTableCache.open(resourceTableKey);
+        if (valuesTable == null) {
+          // values are loaded first, so they're all that's in data when they're stored in the resource table
+          loadValues(documentLoader, data);
+          if (resourceTableKey != null) {
+            resourceTableCache.store(resourceTableKey, data);
+          }
+        }
+        break;
+      case "drawable":
+        documentLoader.load("drawable", new OpaqueFileLoader(data, "drawable", ResType.DRAWABLE), new XmlBlockLoader(xmlDocuments, "drawable"));
+        new DrawableResourceLoader(data).findDrawableResources(resourcePath, "drawable");
+        break;
+      case "mipmap":
+        new DrawableResourceLoader(data).findDrawableResources(resourcePath, "mipmap");
+        break;
+      case "color":
+        documentLoader.load("color", new ColorResourceLoader(data), new XmlBlockLoader(xmlDocuments, "color"));
+        break;
+      case "raw":
+        new RawResourceLoader(resourcePath).loadTo(rawResources);
+        break;
+      case "layout":
+      case "menu":
+      case "anim":
+      case "animator":
+      case "xml":
+      case "transition":
+      case "interpolator":
+        documentLoader.load(family, new OpaqueFileLoader(data, family), new XmlBlockLoader(xmlDocuments, family));
+        break;
+      default:
+        // resources of other types, such as strings, are only ever found in values directories
+    }
+  }
+
+  /**
+   * Decodes the values of {@code type}, or of every type if it's null, from the resource table. If the table turns
+   * out to be unreadable, the values it hasn't supplied yet are parsed from XML instead.
+   */
+  private void loadValuesFromTable(String type) {
+    if (valuesTable == null) return;
 
+    try {
+      if (type == null) {
+        valuesTable.loadAll(data);
+      } else {
+        valuesTable.load(type, data);
+      }
+    } catch (RuntimeException e) {
+      Logger.info("%s, parsing values for %s instead", e.getMessage(), resourcePath.getPackageName());
+      Set<String> loadedTypes = valuesTable.getLoadedTypes();
+      valuesTable = null;
+
+      ResBunch parsed = new ResBunch();
+      try {
+        loadValues(documentLoader, parsed);
+      } catch (RuntimeException parseError) {
+        throw parseError;
+      } catch (Exception parseError) {
+        throw new RuntimeException(parseError);
+      }
+      for (String parsedType : parsed.getBundles().keySet()) {
+        if (!loadedTypes.contains(parsedType)) {
+          data.putAll(parsed, parsedType);
+        }
+      }
+    }
+  }
+
+  private void loadValues(DocumentLoader documentLoader, ResBunch data) throws Exception {
     documentLoader.load("values",
         new ValueResourceLoader(data, "/resources/bool", "bool", ResType.BOOLEAN),
         new ValueResourceLoader(data, "/resources/item[@type='bool']", "bool", ResType.BOOLEAN),
@@ -50,19 +181,6 @@ public class PackageResourceLoader extends XResourceLoader {
         new AttrResourceLoader(data),
         new StyleResourceLoader(data)
     );
-
-    documentLoader.load("layout", new OpaqueFileLoader(data, "layout"), new XmlBlockLoader(xmlDocuments, "layout"));
-    documentLoader.load("menu", new OpaqueFileLoader(data, "menu"), new XmlBlockLoader(xmlDocuments, "menu"));
-    documentLoader.load("drawable", new OpaqueFileLoader(data, "drawable", ResType.DRAWABLE), new XmlBlockLoader(xmlDocuments, "drawable"));
-    documentLoader.load("anim", new OpaqueFileLoader(data, "anim"), new XmlBlockLoader(xmlDocuments, "anim"));
-    documentLoader.load("animator", new OpaqueFileLoader(data, "animator"), new XmlBlockLoader(xmlDocuments, "animator"));
-    documentLoader.load("color", new ColorResourceLoader(data), new XmlBlockLoader(xmlDocuments, "color"));
-    documentLoader.load("xml", new OpaqueFileLoader(data, "xml"), new XmlBlockLoader(xmlDocuments, "xml"));
-    documentLoader.load("transition", new OpaqueFileLoader(data, "transition"), new XmlBlockLoader(xmlDocuments, "transition"));
-    documentLoader.load("interpolator", new OpaqueFileLoader(data, "interpolator"), new XmlBlockLoader(xmlDocuments, "interpolator"));
-
-    new DrawableResourceLoader(data).findDrawableResources(resourcePath);
-    new RawResourceLoader(resourcePath).loadTo(rawResources);
   }
 
   @Override
@@ -1,11 +1,17 @@
 package org.robolectric.res;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Android qualifers as defined by https://developer.android.com/guide/topics/resources/providing-resources.html
+ *
+ * Qualifiers which must match exactly are packed into two words, highest precedence (as per table 2) in the highest
+ * bits, so that eliminating a resource and finding the most important qualifier in which two resources differ are a
+ * handful of bitwise operations. Qualifiers which aren't recognised must also match exactly, but are compared last.
  */
 public class Qualifiers {
   // Matches a version qualifier like "v14". Parentheses capture the numeric
@@ -13,99 +19,354 @@ public class Qualifiers {
   private static final Pattern SCREEN_WIDTH_PATTERN = Pattern.compile("^w([0-9]+)dp");
   private static final Pattern SMALLEST_SCREEN_WIDTH_PATTERN = Pattern.compile("^sw([0-9]+)dp");
   private static final Pattern VERSION_QUALIFIER_PATTERN = Pattern.compile("(v)([0-9]+)$");
-  private static final Pattern SIZE_QUALIFIER_PATTERN = Pattern.compile("(s?[wh])([0-9]+)dp");
 
-  // Version are matched in the end, and hence have least order
-  private static final int ORDER_VERSION = 0;
-  // Various size qualifies, in increasing order of importance.
-  private static final List<String> INT_QUALIFIERS = Arrays.asList("v", "h", "w", "sh", "sw");
-  private static final int TOTAL_ORDER_COUNT = INT_QUALIFIERS.size();
+  // Word 0: mobile country and network codes, locale and layout direction.
+  private static final Field MCC = new Field(0, 53, 10);
+  private static final Field MNC = new Field(0, 43, 10);
+  private static final Field LANGUAGE = new Field(0, 28, 15);
+  private static final Field REGION = new Field(0, 12, 16);
+  private static final Field LAYOUT_DIRECTION = new Field(0, 10, 2);
 
-  private static final Map<String, Qualifiers> sQualifiersCache = new HashMap<>();
+  // Word 1: screen qualifiers in the upper half, which outrank density; input qualifiers in the lower half.
+  private static final Field SCREEN_LONG = new Field(1, 46, 2);
+  private static final Field ROUND = new Field(1, 44, 2);
+  private static final Field WIDE_COLOR_GAMUT = new Field(1, 42, 2);
+  private static final Field HDR = new Field(1, 40, 2);
+  private static final Field ORIENTATION = new Field(1, 38, 2);
+  private static final Field UI_MODE_TYPE = new Field(1, 35, 3);
+  private static final Field NIGHT_MODE = new Field(1, 33, 2);
+  private static final Field TOUCHSCREEN = new Field(1, 9, 2);
+  private static final Field KEYS_HIDDEN = new Field(1, 7, 2);
+  private static final Field KEYBOARD = new Field(1, 5, 2);
+  private static final Field NAV_HIDDEN = new Field(1, 3, 2);
+  private static final Field NAVIGATION = new Field(1, 0, 3);
+  private static final long INPUT_FIELDS = 0xffffffffL;
 
-  private final int[] mWeights = new int[TOTAL_ORDER_COUNT];
-  // Set of all the qualifiers which need exact matching.
-  private final List<String> mDefaults = new ArrayList<>();
+  // Qualifiers a resource must not exceed, in decreasing order of importance. 0 means unspecified.
+  private static final int SMALLEST_WIDTH = 0;
+  private static final int WIDTH = 1;
+  private static final int HEIGHT = 2;
+  private static final int SMALLEST_HEIGHT = 3;
+  private static final int SCREEN_SIZE = 4;
+  private static final int SIZE_COUNT = 5;
+
+  private static final int DENSITY_DEFAULT = 160;
+  private static final int DENSITY_ANY = 0xfffe;
+  private static final int DENSITY_NONE = 0xffff;
+
+  private static final Map<String, Keyword> KEYWORDS = new HashMap<>();
+  private static final Map<String, Integer> DENSITIES = new HashMap<>();
+  private static final Map<String, Integer> SCREEN_SIZES = new HashMap<>();
+  private static final String[] NO_OTHERS = new String[0];
+
+  static {
+    keywords(LAYOUT_DIRECTION, "ldltr", "ldrtl");
+    keywords(SCREEN_LONG, "long", "notlong");
+    keywords(ROUND, "round", "notround");
+    keywords(WIDE_COLOR_GAMUT, "widecg", "nowidecg");
+    keywords(HDR, "highdr", "lowdr");
+    keywords(ORIENTATION, "port", "land", "square");
+    keywords(UI_MODE_TYPE, "car", "desk", "television", "appliance", "watch", "vrheadset");
+    keywords(NIGHT_MODE, "night", "notnight");
+    keywords(TOUCHSCREEN, "notouch", "stylus", "finger");
+    keywords(KEYS_HIDDEN, "keysexposed", "keyshidden", "keyssoft");
+    keywords(KEYBOARD, "nokeys", "qwerty", "12key");
+    keywords(NAV_HIDDEN, "navexposed", "navhidden");
+    keywords(NAVIGATION, "nonav", "dpad", "trackball", "wheel");
+
+    DENSITIES.put("ldpi", 120);
+    DENSITIES.put("mdpi", 160);
+    DENSITIES.put("tvdpi", 213);
+    DENSITIES.put("hdpi", 240);
+    DENSITIES.put("xhdpi", 320);
+    DENSITIES.put("xxhdpi", 480);
+    DENSITIES.put("xxxhdpi", 640);
+    DENSITIES.put("anydpi", DENSITY_ANY);
+    DENSITIES.put("nodpi", DENSITY_NONE);
+
+    SCREEN_SIZES.put("small", 1);
+    SCREEN_SIZES.put("normal", 2);
+    SCREEN_SIZES.put("large", 3);
+    SCREEN_SIZES.put("xlarge", 4);
+  }
+
+  private static final ConcurrentMap<String, Qualifiers> sQualifiersCache = new ConcurrentHashMap<>();
+
+  private final long[] words = new long[2];
+  private final long[] masks = new long[2];
+  private final int[] sizes = new int[SIZE_COUNT];
+  private int density = 0;
+  private int version = -1;
+  // Qualifiers we don't recognise, which need exact matching.
+  private String[] others = NO_OTHERS;
 
   public boolean matches(Qualifiers other) {
     if (!passesRequirements(other)) {
       return false;
     }
-    return other.mDefaults.containsAll(mDefaults);
+    if (((words[0] ^ other.words[0]) & masks[0]) != 0 || ((words[1] ^ other.words[1]) & masks[1]) != 0) {
+      return false;
+    }
+    for (String qualifier : others) {
+      if (!contains(other.others, qualifier)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   public boolean passesRequirements(Qualifiers other) {
-    for (int i = 0; i < TOTAL_ORDER_COUNT; i++) {
-      if (other.mWeights[i] != -1 && mWeights[i] != -1 && other.mWeights[i] < mWeights[i]) {
+    for (int i = 0; i < SIZE_COUNT; i++) {
+      if (other.sizes[i] < sizes[i]) {
         return false;
       }
     }
-    return true;
+    // Version qualifiers are also allowed to match when only one of the qualifiers
+    // defines a version restriction.
+    return other.version == -1 || version == -1 || other.version >= version;
   }
 
+  /**
+   * Returns true if these qualifiers are a better match for {@code context} than {@code other}. Both are expected to
+   * {@link #matches(Qualifiers) match} the context, so any exactly matched qualifier which only one of them specifies
+   * decides.
+   */
   public boolean isBetterThan(Qualifiers other, Qualifiers context) {
-    // Compare the defaults in the order they appear in the context.
-    for (String qualifier : context.mDefaults) {
-      if (other.mDefaults.contains(qualifier) ^ mDefaults.contains(qualifier)) {
-        return mDefaults.contains(qualifier);
+    long difference = masks[0] ^ other.masks[0];
+    if (difference != 0) {
+      return (masks[0] & Long.highestOneBit(difference)) != 0;
+    }
+
+    for (int i = 0; i < SIZE_COUNT; i++) {
+      if (other.sizes[i] != sizes[i]) {
+        return sizes[i] > other.sizes[i];
       }
     }
 
-    for (int i = TOTAL_ORDER_COUNT - 1; i > ORDER_VERSION; i--) {
-      if (other.mWeights[i] != mWeights[i]) {
-        return mWeights[i] > other.mWeights[i];
+    difference = masks[1] ^ other.masks[1];
+    if ((difference & ~INPUT_FIELDS) != 0) {
+      return (masks[1] & Long.highestOneBit(difference)) != 0;
+    }
+    if (density != other.density) {
+      return isBetterDensityThan(other, context);
+    }
+    if (difference != 0) {
+      return (masks[1] & Long.highestOneBit(difference)) != 0;
+    }
+
+    // Compare the qualifiers we don't recognise in the order they appear in the context.
+    for (String qualifier : context.others) {
+      boolean hasQualifier = contains(others, qualifier);
+      if (hasQualifier != contains(other.others, qualifier)) {
+        return hasQualifier;
       }
     }
 
     // Compare the version only if the context defines a version.
-    if (context.mWeights[ORDER_VERSION] != -1
-        && other.mWeights[ORDER_VERSION] != mWeights[ORDER_VERSION]) {
-      return mWeights[ORDER_VERSION] > other.mWeights[ORDER_VERSION];
+    if (context.version != -1 && other.version != version) {
+      return version > other.version;
     }
 
     // The qualifiers match completely
     return false;
   }
 
+  // Resources for any density may be scaled, so none are eliminated. Same as ResTable_config::isBetterThan().
+  private boolean isBetterDensityThan(Qualifiers other, Qualifiers context) {
+    int thisDensity = density == 0 ? DENSITY_DEFAULT : density;
+    int otherDensity = other.density == 0 ? DENSITY_DEFAULT : other.density;
+    if (thisDensity == otherDensity) {
+      return density != 0;
+    }
+
+    // Drawables which don't need scaling are always preferred.
+    if (thisDensity == DENSITY_ANY) {
+      return true;
+    } else if (otherDensity == DENSITY_ANY) {
+      return false;
+    }
+
+    int requestedDensity = context.density;
+    if (requestedDensity == 0 || requestedDensity == DENSITY_ANY) {
+      requestedDensity = DENSITY_DEFAULT;
+    }
+
+    int high = Math.max(thisDensity, otherDensity);
+    int low = Math.min(thisDensity, otherDensity);
+    boolean thisIsHigher = thisDensity == high;
+    if (requestedDensity >= high) {
+      return thisIsHigher;
+    }
+    if (low >= requestedDensity) {
+      return !thisIsHigher;
+    }
+    // Scaling down is considered twice as good as scaling up.
+    if (((2 * low) - requestedDensity) * high > requestedDensity * requestedDensity) {
+      return !thisIsHigher;
+    } else {
+      return thisIsHigher;
+    }
+  }
+
   public static Qualifiers parse(String qualifiersStr) {
-    synchronized (sQualifiersCache) {
-      Qualifiers result = sQualifiersCache.get(qualifiersStr);
-      if (result != null) {
-        return result;
-      }
-      StringTokenizer st = new StringTokenizer(qualifiersStr, "-");
-      result = new Qualifiers();
-      // Version qualifiers are also allowed to match when only one of the qualifiers
-      // defines a version restriction.
-      result.mWeights[ORDER_VERSION] = -1;
-
-      while (st.hasMoreTokens()) {
-        String qualifier = st.nextToken();
-        if (qualifier.isEmpty()) {
-          continue;
-        }
+    Qualifiers result = sQualifiersCache.get(qualifiersStr);
+    if (result != null) {
+      return result;
+    }
+
+    result = doParse(qualifiersStr);
+    Qualifiers existing = sQualifiersCache.putIfAbsent(qualifiersStr, result);
+    return existing != null ? existing : result;
+  }
+
+  private static Qualifiers doParse(String qualifiersStr) {
+    StringTokenizer st = new StringTokenizer(qualifiersStr, "-");
+    Qualifiers result = new Qualifiers();
+    List<String> others = new ArrayList<>();
 
-        Matcher m = VERSION_QUALIFIER_PATTERN.matcher(qualifier);
-        if (!m.find()) {
-          m = SIZE_QUALIFIER_PATTERN.matcher(qualifier);
-          if (!m.find()) {
-            m = null;
-          }
+    while (st.hasMoreTokens()) {
+      String qualifier = st.nextToken();
+      if (qualifier.isEmpty()) {
+        continue;
+      }
+
+      int value;
+      Keyword keyword = KEYWORDS.get(qualifier);
+      if (keyword != null) {
+        result.set(keyword.field, keyword.value);
+      } else if ((value = parseNumber(qualifier, "v", "")) != -1) {
+        if (result.version != -1) {
+          throw new IllegalStateException(
+              "A resource file was found that had two API level qualifiers: " + qualifiersStr);
         }
-        if (m != null) {
-          int order = INT_QUALIFIERS.indexOf(m.group(1));
-          if (order == ORDER_VERSION && result.mWeights[ORDER_VERSION] != -1) {
-            throw new IllegalStateException(
-                "A resource file was found that had two API level qualifiers: " + qualifiersStr);
-          }
-          result.mWeights[order] = Integer.parseInt(m.group(2));
-        } else {
-          result.mDefaults.add(qualifier);
+        result.version = value;
+      } else if ((value = parseNumber(qualifier, "sw", "dp")) != -1) {
+        result.sizes[SMALLEST_WIDTH] = value;
+      } else if ((value = parseNumber(qualifier, "w", "dp")) != -1) {
+        result.sizes[WIDTH] = value;
+      } else if ((value = parseNumber(qualifier, "h", "dp")) != -1) {
+        result.sizes[HEIGHT] = value;
+      } else if ((value = parseNumber(qualifier, "sh", "dp")) != -1) {
+        result.sizes[SMALLEST_HEIGHT] = value;
+      } else if (SCREEN_SIZES.containsKey(qualifier)) {
+        result.sizes[SCREEN_SIZE] = SCREEN_SIZES.get(qualifier);
+      } else if (DENSITIES.containsKey(qualifier)) {
+        result.density = DENSITIES.get(qualifier);
+      } else if ((value = parseNumber(qualifier, "", "dpi")) > 0) {
+        result.density = value;
+      } else if ((value = parseNumber(qualifier, "mcc", "")) > 0 && value <= 999) {
+        result.set(MCC, value);
+      } else if ((value = parseNumber(qualifier, "mnc", "")) != -1 && value <= 999) {
+        result.set(MNC, value + 1);
+      } else if ((value = encodeLanguage(qualifier, 0, qualifier.length())) != 0) {
+        result.set(LANGUAGE, value);
+      } else if (qualifier.startsWith("r") && (value = encodeRegion(qualifier, 1, qualifier.length())) != 0) {
+        result.set(REGION, value);
+      } else if (!parseLanguageTag(qualifier, result)) {
+        others.add(qualifier);
+      }
+    }
+
+    if (!others.isEmpty()) {
+      result.others = others.toArray(new String[others.size()]);
+    }
+    return result;
+  }
+
+  private void set(Field field, long value) {
+    words[field.word] = (words[field.word] & ~field.mask) | (value << field.shift);
+    masks[field.word] |= field.mask;
+  }
+
+  // Parses BCP 47 tags like "b+en+US". Tags with scripts or variants are left to be matched exactly.
+  private static boolean parseLanguageTag(String qualifier, Qualifiers result) {
+    if (!qualifier.startsWith("b+")) {
+      return false;
+    }
+    int languageEnd = qualifier.indexOf('+', 2);
+    int language = encodeLanguage(qualifier, 2, languageEnd == -1 ? qualifier.length() : languageEnd);
+    int region = languageEnd == -1 ? 0 : encodeRegion(qualifier, languageEnd + 1, qualifier.length());
+    if (language == 0 || (languageEnd != -1 && region == 0)) {
+      return false;
+    }
+    result.set(LANGUAGE, language);
+    if (region != 0) {
+      result.set(REGION, region);
+    }
+    return true;
+  }
+
+  // Two or three lower case letters, five bits each.
+  private static int encodeLanguage(String s, int start, int end) {
+    int length = end - start;
+    if (length < 2 || length > 3) {
+      return 0;
+    }
+    int code = 0;
+    for (int i = start; i < end; i++) {
+      char c = s.charAt(i);
+      if (c < 'a' || c > 'z') {
+        return 0;
+      }
+      code = (code << 5) | (c - 'a' + 1);
+    }
+    return code;
+  }
+
+  // Two upper case letters, five bits each, or a three digit UN M.49 area code flagged by the top bit.
+  private static int encodeRegion(String s, int start, int end) {
+    int length = end - start;
+    if (length == 2) {
+      char first = Character.toUpperCase(s.charAt(start));
+      char second = Character.toUpperCase(s.charAt(start + 1));
+      if (first < 'A' || first > 'Z' || second < 'A' || second > 'Z') {
+        return 0;
+      }
+      return ((first - 'A' + 1) << 5) | (second - 'A' + 1);
+    } else if (length == 3) {
+      int code = 0;
+      for (int i = start; i < end; i++) {
+        char c = s.charAt(i);
+        if (c < '0' || c > '9') {
+          return 0;
         }
+        code = code * 10 + (c - '0');
       }
+      return 0x8000 | code;
+    }
+    return 0;
+  }
 
-      sQualifiersCache.put(qualifiersStr, result);
-      return result;
+  // Returns the number between prefix and suffix, or -1 if the qualifier doesn't look like that.
+  private static int parseNumber(String qualifier, String prefix, String suffix) {
+    int start = prefix.length();
+    int end = qualifier.length() - suffix.length();
+    if (end <= start || end - start > 9 || !qualifier.startsWith(prefix) || !qualifier.endsWith(suffix)) {
+      return -1;
+    }
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      char c = qualifier.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private static boolean contains(String[] qualifiers, String qualifier) {
+    for (String q : qualifiers) {
+      if (q.equals(qualifier)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void keywords(Field field, String... names) {
+    for (int i = 0; i < names.length; i++) {
+      KEYWORDS.put(names[i], new Keyword(field, i + 1));
     }
   }
 
@@ -179,4 +440,26 @@ public class Qualifiers {
     }
     return qualifiers;
   }
+
+  private static class Field {
+    final int word;
+    final int shift;
+    final long mask;
+
+    Field(int word, int shift, int bits) {
+      this.word = word;
+      this.shift = shift;
+      this.mask = ((1L << bits) - 1) << shift;
+    }
+  }
+
+  private static class Keyword {
+    final Field field;
+    final int value;
+
+    Keyword(Field field, int value) {
+      this.field = field;
+      this.value = value;
+    }
+  }
 }
@@ -1,11 +1,14 @@
 package org.robolectric.res;
 
-import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.jetbrains.annotations.NotNull;
 
 public class ResBunch {
-  private final Map<String, ResBundle<TypedResource>> types = new LinkedHashMap<>();
+  // read by lookups while other types are still being loaded
+  private final Map<String, ResBundle<TypedResource>> types = new ConcurrentHashMap<>();
 
   public void put(String attrType, String name, TypedResource value, XmlLoader.XmlContext xmlContext) {
     ResBundle<TypedResource> bundle = getBundle(attrType);
@@ -27,8 +30,29 @@ public class ResBunch {
   }
 
   public ResBundle.Value<TypedResource> getValue(@NotNull ResName resName, String qualifiers) {
-    ResBundle<TypedResource> bundle = getBundle(resName.type);
-    return bundle.getValue(resName, qualifiers);
+    ResBundle<TypedResource> bundle = types.get(resName.type);
+    return bundle == null ? null : bundle.getValue(resName, qualifiers);
+  }
+
+  void putValue(ResName resName, ResBundle.Value<TypedResource> value) {
+    getBundle(resName.type).putValue(resName, value);
+  }
+
+  /**
+   * Adds {@code other}'s resources of {@code type}.
+   */
+  void putAll(ResBunch other, String type) {
+    ResBundle<TypedResource> otherBundle = other.types.get(type);
+    if (otherBundle == null) return;
+    for (Map.Entry<ResName, List<ResBundle.Value<TypedResource>>> entry : otherBundle.getValues().entrySet()) {
+      for (ResBundle.Value<TypedResource> value : entry.getValue()) {
+        putValue(entry.getKey(), value);
+      }
+    }
+  }
+
+  Map<String, ResBundle<TypedResource>> getBundles() {
+    return Collections.unmodifiableMap(types);
   }
 
   public int size() {
@@ -51,6 +75,13 @@ public class ResBunch {
     }
   }
 
+  public void mergeLibraryStyle(ResBunch fromResBundle, String packageName, String type) {
+    ResBundle<TypedResource> fromBundle = fromResBundle.types.get(type);
+    if (fromBundle != null) {
+      getBundle(type).mergeLibraryStyle(fromBundle, packageName);
+    }
+  }
+
   public void receive(ResourceLoader.Visitor visitor) {
     for (ResBundle<TypedResource> resBundle : types.values()) {
       resBundle.receive(visitor);
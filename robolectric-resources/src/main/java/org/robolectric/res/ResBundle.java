@@ -3,15 +3,19 @@ package org.robolectric.res;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ResBundle<T> {
 
 
   private final ResMap<T> valuesMap = new ResMap<>();
   private final ResMap<List<T>> valuesArrayMap = new ResMap<>();
+  // the last value picked for each resource, which is almost always picked again with the same qualifiers
+  private final Map<ResName, Resolution<T>> resolutions = new ConcurrentHashMap<>();
   private String overrideNamespace;
 
   public void put(String attrType, String name, T value, XmlLoader.XmlContext xmlContext) {
@@ -19,6 +23,30 @@ public class ResBundle<T> {
     List<Value<T>> values = valuesMap.find(resName);
     values.add(new Value<>(xmlContext.getQualifiers(), value));
     Collections.sort(values);
+    if (!resolutions.isEmpty()) {
+      resolutions.clear();
+    }
+  }
+
+  void putValue(ResName resName, Value<T> value) {
+    List<Value<T>> values = valuesMap.find(maybeOverride(resName));
+    values.add(value);
+    Collections.sort(values);
+    if (!resolutions.isEmpty()) {
+      resolutions.clear();
+    }
+  }
+
+  Map<ResName, List<Value<T>>> getValues() {
+    return Collections.unmodifiableMap(valuesMap.map);
+  }
+
+  Set<String> getTypes() {
+    Set<String> types = new HashSet<>();
+    for (ResName resName : valuesMap.map.keySet()) {
+      types.add(resName.type);
+    }
+    return types;
   }
 
   public T get(ResName resName, String qualifiers) {
@@ -27,15 +55,21 @@ public class ResBundle<T> {
   }
 
   public Value<T> getValue(ResName resName, String qualifiers) {
-    List<Value<T>> values = valuesMap.find(maybeOverride(resName));
-    return values != null ? pick(values, qualifiers) : null;
+    resName = maybeOverride(resName);
+    Resolution<T> resolution = resolutions.get(resName);
+    if (resolution == null || !resolution.isFor(qualifiers)) {
+      List<Value<T>> values = valuesMap.get(resName);
+      resolution = new Resolution<>(qualifiers, values != null ? pick(values, qualifiers) : null);
+      resolutions.put(resName, resolution);
+    }
+    return resolution.value;
   }
 
   public static <T> Value<T> pick(List<Value<T>> values, String qualifiersStr) {
     final int count = values.size();
     if (count == 0) return null;
 
-    // This should really follow the android algorithm specified at:
+    // This follows the android algorithm specified at:
     // http://developer.android.com/guide/topics/resources/providing-resources.html#BestMatch
     //
     // 1: eliminate resources that contradict the qualifiersStr
@@ -44,38 +78,31 @@ public class ResBundle<T> {
     // 4: eliminate resources values that don't use this qualifier.
     // 5: if more than one resource is left, go back to 2.
     //
-    // However, we currently only model the smallest/available width/height and version qualifiers
-    // rather than all of the possibly qualifier classes in table 2.
+    // Steps 2 to 5 are done pairwise by Qualifiers.isBetterThan(), keeping the best match so far.
 
     Qualifiers toMatch = Qualifiers.parse(qualifiersStr);
 
     Qualifiers bestMatchQualifiers = null;
     Value<T> bestMatch = null;
+    Value<T> firstPassingRequirements = null;
 
-    List<Value<T>> passesRequirements = new ArrayList<>();
-    for (Value<T> value : values) {
-      Qualifiers qualifiers = Qualifiers.parse(value.qualifiers);
-      if (qualifiers.passesRequirements(toMatch)) {
-        passesRequirements.add(value);
+    for (int i = 0; i < count; i++) {
+      Value<T> value = values.get(i);
+      Qualifiers qualifiers = value.getParsedQualifiers();
+      if (!qualifiers.passesRequirements(toMatch)) {
+        continue;
+      }
+      if (firstPassingRequirements == null) {
+        firstPassingRequirements = value;
       }
-    }
-
-    for (Value<T> value : passesRequirements) {
-      Qualifiers qualifiers = Qualifiers.parse(value.qualifiers);
       if (qualifiers.matches(toMatch)) {
         if (bestMatchQualifiers == null || qualifiers.isBetterThan(bestMatchQualifiers, toMatch)) {
           bestMatchQualifiers = qualifiers;
-          bestMatch =  value;
+          bestMatch = value;
         }
       }
     }
-    if (bestMatch != null) {
-      return bestMatch;
-    }
-    if (!passesRequirements.isEmpty()) {
-      return passesRequirements.get(0);
-    }
-    return null;
+    return bestMatch != null ? bestMatch : firstPassingRequirements;
   }
 
   public int size() {
@@ -103,6 +130,13 @@ public class ResBundle<T> {
   public void mergeLibraryStyle(ResBundle<T> fromResBundle, String packageName) {
     valuesMap.merge(packageName, fromResBundle.valuesMap);
     valuesArrayMap.merge(packageName, fromResBundle.valuesArrayMap);
+    resolutions.clear();
+  }
+
+  public void mergeLibraryStyle(ResBundle<T> fromResBundle, String packageName, String type) {
+    valuesMap.merge(packageName, fromResBundle.valuesMap, type);
+    valuesArrayMap.merge(packageName, fromResBundle.valuesArrayMap, type);
+    resolutions.clear();
   }
 
   public void receive(ResourceLoader.Visitor visitor) {
@@ -128,20 +162,41 @@ public class ResBundle<T> {
   public static class Value<T> implements Comparable<Value<T>> {
     private final String qualifiers;
     private final T value;
+    private volatile Qualifiers parsedQualifiers;
 
-    Value(String qualifiers, T value) {
+    public Value(String qualifiers, T value) {
+      this(value, qualifiers == null ? "--" : "-" + qualifiers + "-");
+    }
+
+    private Value(T value, String decoratedQualifiers) {
       if (value == null) {
         throw new NullPointerException();
       }
 
-      this.qualifiers = qualifiers == null ? "--" : "-" + qualifiers + "-";
+      this.qualifiers = decoratedQualifiers;
       this.value = value;
     }
 
+    /**
+     * Creates a value from qualifiers as returned by {@link #getQualifiers()}.
+     */
+    static <T> Value<T> withDecoratedQualifiers(String qualifiers, T value) {
+      return new Value<>(value, qualifiers);
+    }
+
     public String getQualifiers() {
       return qualifiers;
     }
 
+    Qualifiers getParsedQualifiers() {
+      // racing threads would just parse the same thing
+      Qualifiers parsedQualifiers = this.parsedQualifiers;
+      if (parsedQualifiers == null) {
+        this.parsedQualifiers = parsedQualifiers = Qualifiers.parse(qualifiers);
+      }
+      return parsedQualifiers;
+    }
+
     public T getValue() {
       return value;
     }
@@ -159,10 +214,29 @@ public class ResBundle<T> {
     }
   }
 
+  private static class Resolution<T> {
+    private final String qualifiers;
+    private final Value<T> value;
+
+    Resolution(String qualifiers, Value<T> value) {
+      this.qualifiers = qualifiers;
+      this.value = value;
+    }
+
+    boolean isFor(String qualifiers) {
+      return this.qualifiers == null ? qualifiers == null : this.qualifiers.equals(qualifiers);
+    }
+  }
+
   private static class ResMap<T> {
-    private final Map<ResName, List<Value<T>>> map = new HashMap<>();
+    // read by lookups while other types are still being loaded
+    private final Map<ResName, List<Value<T>>> map = new ConcurrentHashMap<>();
     private boolean immutable;
 
+    public List<Value<T>> get(ResName resName) {
+      return map.get(resName);
+    }
+
     public List<Value<T>> find(ResName resName) {
       List<Value<T>> values = map.get(resName);
       if (values == null) map.put(resName, values = new ArrayList<>());
@@ -170,11 +244,16 @@ public class ResBundle<T> {
     }
 
     private void merge(String packageName, ResMap<T> sourceMap) {
+      merge(packageName, sourceMap, null);
+    }
+
+    private void merge(String packageName, ResMap<T> sourceMap, String type) {
       if (immutable) {
         throw new IllegalStateException("immutable!");
       }
 
       for (Map.Entry<ResName, List<Value<T>>> entry : sourceMap.map.entrySet()) {
+        if (type != null && !type.equals(entry.getKey().type)) continue;
         ResName resName = entry.getKey().withPackageName(packageName);
         find(resName).addAll(entry.getValue());
       }
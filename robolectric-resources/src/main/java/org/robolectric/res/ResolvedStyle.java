@@ -0,0 +1,253 @@
+package org.robolectric.res;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A style with the attributes of all of its parents flattened into a single table, as seen by {@link StyleResolver}.
+ * Built once per style and qualifiers and shared through {@link ResourceLoader#getResolvedStyle}, unless finding a
+ * parent needed the theme.
+ */
+final class ResolvedStyle {
+  private final StyleData styleData;
+  // The first definition of each attribute in the chain of styles, and how far down the chain it was.
+  private final Map<ResName, Entry> attributes = new HashMap<>();
+  // The same, for each non-framework package which styles in the chain belong to. See StyleData.getAttrValue().
+  private final Map<String, Map<ResName, Entry>> attributesByPackage = new LinkedHashMap<>();
+  private final RuntimeException parentFailure;
+  private final boolean dependsOnTheme;
+
+  private ResolvedStyle(StyleData styleData, List<StyleData> styles, RuntimeException parentFailure, boolean dependsOnTheme) {
+    this.styleData = styleData;
+    this.parentFailure = parentFailure;
+    this.dependsOnTheme = dependsOnTheme;
+
+    for (int depth = 0; depth < styles.size(); depth++) {
+      StyleData style = styles.get(depth);
+      Map<ResName, Entry> packageAttributes = null;
+      if (!"android".equals(style.getPackageName())) {
+        packageAttributes = attributesByPackage.get(style.getPackageName());
+        if (packageAttributes == null) {
+          packageAttributes = new HashMap<>();
+          attributesByPackage.put(style.getPackageName(), packageAttributes);
+        }
+      }
+
+      for (Map.Entry<ResName, AttributeResource> item : style.getItems().entrySet()) {
+        Entry entry = new Entry(item.getValue(), depth);
+        if (!attributes.containsKey(item.getKey())) {
+          attributes.put(item.getKey(), entry);
+        }
+        if (packageAttributes != null && !packageAttributes.containsKey(item.getKey())) {
+          packageAttributes.put(item.getKey(), entry);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the value of the attribute from the first style in the chain which has it.
+   *
+   * @throws RuntimeException If the attribute isn't in the chain and one of the parents couldn't be found.
+   */
+  AttributeResource getAttrValue(ResName resName) {
+    Entry entry = attributes.get(resName);
+    boolean fromOtherPackage = false;
+    if (!"android".equals(resName.packageName)) {
+      for (Map.Entry<String, Map<ResName, Entry>> packageAttributes : attributesByPackage.entrySet()) {
+        Entry packageEntry = packageAttributes.getValue().get(resName.withPackageName(packageAttributes.getKey()));
+        if (packageEntry != null && (entry == null || packageEntry.depth < entry.depth)) {
+          entry = packageEntry;
+          fromOtherPackage = true;
+        }
+      }
+    }
+
+    if (entry == null) {
+      if (parentFailure != null) {
+        throw parentFailure;
+      }
+      return null;
+    }
+
+    AttributeResource value = entry.value;
+    if (fromOtherPackage && !"android".equals(value.contextPackageName)) {
+      value = new AttributeResource(resName, value.value, resName.packageName);
+    }
+    return value;
+  }
+
+  boolean dependsOnTheme() {
+    return dependsOnTheme;
+  }
+
+  @Override
+  public String toString() {
+    return styleData + " (and parents)";
+  }
+
+  static ResolvedStyle resolve(ResourceLoader resourceLoader, StyleData styleData, Style theme, String qualifiers) {
+    return new Resolver(resourceLoader, theme, qualifiers).resolve(styleData);
+  }
+
+  static class Key {
+    private final StyleData styleData;
+    private final String qualifiers;
+
+    Key(StyleData styleData, String qualifiers) {
+      this.styleData = styleData;
+      this.qualifiers = qualifiers;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return styleData == key.styleData && qualifiers.equals(key.qualifiers);
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(styleData) * 31 + qualifiers.hashCode();
+    }
+  }
+
+  private static class Entry {
+    final AttributeResource value;
+    final int depth;
+
+    Entry(AttributeResource value, int depth) {
+      this.value = value;
+      this.depth = depth;
+    }
+  }
+
+  private static class Resolver {
+    private final ResourceLoader resourceLoader;
+    private final Style theme;
+    private final String qualifiers;
+    private final List<StyleData> styles = new ArrayList<>();
+    private boolean dependsOnTheme;
+
+    Resolver(ResourceLoader resourceLoader, Style theme, String qualifiers) {
+      this.resourceLoader = resourceLoader;
+      this.theme = theme;
+      this.qualifiers = qualifiers;
+    }
+
+    ResolvedStyle resolve(StyleData styleData) {
+      styles.add(styleData);
+      RuntimeException parentFailure = null;
+      try {
+        while (hasParent(styles.get(styles.size() - 1))) {
+          StyleData parent = getParent(styles.get(styles.size() - 1));
+          if (parent != null) {
+            styles.add(parent);
+          } else {
+            break;
+          }
+        }
+      } catch (RuntimeException e) {
+        parentFailure = e;
+      }
+      return new ResolvedStyle(styleData, styles, parentFailure, dependsOnTheme);
+    }
+
+    private static String getParentStyleName(StyleData style) {
+      if (style == null) {
+        return null;
+      }
+      String parent = style.getParent();
+      if (parent == null || parent.isEmpty()) {
+        parent = null;
+        String name = style.getName();
+        if (name.contains(".")) {
+          parent = name.substring(0, name.lastIndexOf('.'));
+          if (parent.isEmpty()) {
+            return null;
+          }
+        }
+      }
+      return parent;
+    }
+
+    private static boolean hasParent(StyleData style) {
+      if (style == null) return false;
+      String parent = style.getParent();
+      return parent != null && !parent.isEmpty();
+    }
+
+    private StyleData getParent(StyleData style) {
+      String parent = getParentStyleName(style);
+
+      if (parent == null || "Null".equals(parent)) return null;
+
+      if (parent.startsWith("@")) parent = parent.substring(1);
+
+      ResName styleRef = ResName.qualifyResName(parent, style.getPackageName(), "style");
+
+      styleRef = dereferenceResName(styleRef);
+
+      TypedResource typedResource = resourceLoader.getValue(styleRef, qualifiers);
+
+      if (typedResource == null) {
+        StringBuilder builder = new StringBuilder("Could not find any resource ")
+            .append(" from reference ").append(styleRef)
+            .append(" from ").append(style)
+            .append(" with ").append(theme);
+        throw new RuntimeException(builder.toString());
+      }
+
+      Object data = typedResource.getData();
+      if (data instanceof StyleData) {
+        return (StyleData) data;
+      } else {
+        StringBuilder builder = new StringBuilder(styleRef.toString())
+            .append(" does not resolve to a Style.")
+            .append(" got ").append(data).append(" instead. ")
+            .append(" from ").append(style)
+            .append(" with ").append(theme);
+        throw new RuntimeException(builder.toString());
+      }
+    }
+
+    private ResName dereferenceResName(ResName res) {
+      ResName styleRef = res;
+      boolean dereferencing = true;
+      while ("attr".equals(styleRef.type) && dereferencing) {
+        dereferencing = false;
+        for (StyleData parentStyle : styles) {
+          AttributeResource value = parentStyle.getAttrValue(styleRef);
+          if (value != null) {
+            styleRef = dereferenceAttr(value);
+            dereferencing = true;
+            break;
+          }
+        }
+        if (!dereferencing && theme != null) {
+          // the theme can change, so this chain can't be shared
+          dependsOnTheme = true;
+          AttributeResource value = theme.getAttrValue(styleRef);
+          if (value != null) {
+            styleRef = dereferenceAttr(value);
+            dereferencing = true;
+          }
+        }
+      }
+
+      return styleRef;
+    }
+
+    private ResName dereferenceAttr(AttributeResource attr) {
+      if (attr.isResourceReference()) {
+        return attr.getResourceReference();
+      } else if (attr.isStyleReference()) {
+        return attr.getStyleReference();
+      }
+      throw new RuntimeException("Found a " + attr + " but can't cast it :(");
+    }
+  }
+}
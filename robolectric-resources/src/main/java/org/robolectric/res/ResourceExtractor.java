@@ -2,29 +2,60 @@ package org.robolectric.res;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.logging.Logger;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ResourceExtractor extends ResourceIndex {
-  private static final Logger LOGGER = Logger.getLogger(ResourceExtractor.class.getName());
+  // R classes are loaded again by every SdkEnvironment, but their ids only depend on which R classes they are.
+  private static final ConcurrentMap<List<String>, ResourceIdTable> resourceIdTables = new ConcurrentHashMap<>();
 
   private final String packageName;
-  private Integer maxUsedInt = null;
+  private final ResourceIdTable resourceIdTable;
+  private final GeneratedResourceIds generatedIds;
 
   public ResourceExtractor(ResourcePath resourcePath) {
     packageName = resourcePath.getPackageName();
+    resourceIdTable = getResourceIdTable(resourcePath);
+    generatedIds = new GeneratedResourceIds(resourceIdTable.getMaxId());
+  }
 
-    if (resourcePath.getRClass() != null) {
-      gatherResourceIdsAndNames(resourcePath.getRClass(), packageName);
+  private static ResourceIdTable getResourceIdTable(ResourcePath resourcePath) {
+    if (resourcePath.getRClass() == null && resourcePath.getInternalRClass() == null) {
+      return ResourceIdTable.EMPTY;
     }
 
-    if (resourcePath.getInternalRClass() != null) {
-      gatherResourceIdsAndNames(resourcePath.getInternalRClass(), packageName);
+    List<String> key = Arrays.asList(resourcePath.getPackageName(),
+        nameOf(resourcePath.getRClass()), nameOf(resourcePath.getInternalRClass()),
+        String.valueOf(resourcePath.getResourceBase()));
+    ResourceIdTable resourceIdTable = resourceIdTables.get(key);
+    if (resourceIdTable == null) {
+      ResourceIdTable.Builder builder = new ResourceIdTable.Builder();
+      if (resourcePath.getRClass() != null) {
+        gatherResourceIdsAndNames(builder, resourcePath.getRClass(), resourcePath.getPackageName());
+      }
+
+      if (resourcePath.getInternalRClass() != null) {
+        gatherResourceIdsAndNames(builder, resourcePath.getInternalRClass(), resourcePath.getPackageName());
+      }
+
+      resourceIdTable = builder.build();
+      ResourceIdTable existing = resourceIdTables.putIfAbsent(key, resourceIdTable);
+      if (existing != null) {
+        resourceIdTable = existing;
+      }
     }
+    return resourceIdTable;
   }
 
-  private void gatherResourceIdsAndNames(Class<?> rClass, String packageName) {
+  private static String nameOf(Class<?> rClass) {
+    return rClass == null ? null : rClass.getName();
+  }
+
+  private static void gatherResourceIdsAndNames(ResourceIdTable.Builder builder, Class<?> rClass, String packageName) {
     for (Class innerClass : rClass.getClasses()) {
       for (Field field : innerClass.getDeclaredFields()) {
         if (field.getType().equals(Integer.TYPE) && Modifier.isStatic(field.getModifiers())) {
@@ -40,8 +71,7 @@ public class ResourceExtractor extends ResourceIndex {
             String fieldName = field.getName();
             ResName resName = new ResName(packageName, section, fieldName);
 
-            resourceNameToId.put(resName, id);
-            resourceIdToResName.put(id, resName);
+            builder.put(resName, id);
           }
         }
       }
@@ -49,32 +79,35 @@ public class ResourceExtractor extends ResourceIndex {
   }
 
   @Override
-  public synchronized Integer getResourceId(ResName resName) {
-    Integer id = resourceNameToId.get(resName);
+  public Integer getResourceId(ResName resName) {
+    Integer id = resourceIdTable.getId(resName);
+    if (id == null) {
+      id = generatedIds.getId(resName);
+    }
     if (id == null && ("android".equals(resName.packageName) || "".equals(resName.packageName))) {
-      if (maxUsedInt == null) {
-        maxUsedInt = resourceIdToResName.isEmpty() ? 0 : Collections.max(resourceIdToResName.keySet());
-      }
-      id = ++maxUsedInt;
-      resourceNameToId.put(resName, id);
-      resourceIdToResName.put(id, resName);
-      LOGGER.fine("no id mapping found for " + resName.getFullyQualifiedName() + "; assigning ID #0x" + Integer.toHexString(id));
+      id = generatedIds.generateId(resName);
     }
     return id;
   }
 
   @Override
-  public synchronized ResName getResName(int resourceId) {
-    return resourceIdToResName.get(resourceId);
+  public ResName getResName(int resourceId) {
+    ResName resName = resourceIdTable.getName(resourceId);
+    return resName == null ? generatedIds.getName(resourceId) : resName;
   }
 
   @Override public Collection<String> getPackages() {
     return Collections.singletonList(packageName);
   }
 
+  @Override
+  ResourceIdTable getResourceIdTable() {
+    return resourceIdTable;
+  }
+
   @Override public String toString() {
     return "ResourceExtractor{" +
         "package=" + packageName +
         '}';
   }
-}
\ No newline at end of file
+}
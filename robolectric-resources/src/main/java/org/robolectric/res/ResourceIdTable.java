@@ -0,0 +1,110 @@
+package org.robolectric.res;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable mapping between {@link ResName}s and resource ids. Names are looked up in an open-addressed hash table
+ * and ids by binary search over a sorted int array, so lookups need neither locks nor boxing.
+ */
+final class ResourceIdTable {
+  static final ResourceIdTable EMPTY = new Builder().build();
+
+  private final ResName[] keys;
+  private final Integer[] values;
+  private final int[] ids;
+  private final ResName[] names;
+
+  private ResourceIdTable(ResName[] keys, Integer[] values, int[] ids, ResName[] names) {
+    this.keys = keys;
+    this.values = values;
+    this.ids = ids;
+    this.names = names;
+  }
+
+  Integer getId(ResName resName) {
+    int mask = keys.length - 1;
+    for (int i = mix(resName.hashCode()) & mask; ; i = (i + 1) & mask) {
+      ResName key = keys[i];
+      if (key == null) {
+        return null;
+      }
+      if (key.equals(resName)) {
+        return values[i];
+      }
+    }
+  }
+
+  ResName getName(int id) {
+    int index = Arrays.binarySearch(ids, id);
+    return index < 0 ? null : names[index];
+  }
+
+  int size() {
+    return ids.length;
+  }
+
+  int getIdAt(int index) {
+    return ids[index];
+  }
+
+  ResName getNameAt(int index) {
+    return names[index];
+  }
+
+  int getMaxId() {
+    return ids.length == 0 ? 0 : ids[ids.length - 1];
+  }
+
+  private static int mix(int hashCode) {
+    int h = hashCode * 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+  static class Builder {
+    private final Map<ResName, Integer> idsByName = new LinkedHashMap<>();
+    private final Map<Integer, ResName> namesById = new HashMap<>();
+
+    boolean containsName(ResName resName) {
+      return idsByName.containsKey(resName);
+    }
+
+    boolean containsId(int id) {
+      return namesById.containsKey(id);
+    }
+
+    Builder put(ResName resName, int id) {
+      idsByName.put(resName, id);
+      namesById.put(id, resName);
+      return this;
+    }
+
+    ResourceIdTable build() {
+      int capacity = Integer.highestOneBit(Math.max(idsByName.size(), 1)) * 4;
+      ResName[] keys = new ResName[capacity];
+      Integer[] values = new Integer[capacity];
+      for (Map.Entry<ResName, Integer> entry : idsByName.entrySet()) {
+        int i = mix(entry.getKey().hashCode()) & (capacity - 1);
+        while (keys[i] != null) {
+          i = (i + 1) & (capacity - 1);
+        }
+        keys[i] = entry.getKey();
+        values[i] = entry.getValue();
+      }
+
+      int[] ids = new int[namesById.size()];
+      int count = 0;
+      for (Integer id : namesById.keySet()) {
+        ids[count++] = id;
+      }
+      Arrays.sort(ids);
+      ResName[] names = new ResName[ids.length];
+      for (int i = 0; i < ids.length; i++) {
+        names[i] = namesById.get(ids[i]);
+      }
+      return new ResourceIdTable(keys, values, ids, names);
+    }
+  }
+}
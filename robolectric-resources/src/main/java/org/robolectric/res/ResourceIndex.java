@@ -5,6 +5,10 @@ import java.util.HashMap;
 import java.util.Map;
 
 public abstract class ResourceIndex {
+  /**
+   * Ids for {@link #getResourceIdTable()} to copy, for subclasses which don't override it. The indexes in this
+   * package keep their ids in a {@link ResourceIdTable} instead, and leave these empty.
+   */
   protected final Map<ResName, Integer> resourceNameToId = new HashMap<>();
   protected final Map<Integer, ResName> resourceIdToResName = new HashMap<>();
 
@@ -13,4 +17,15 @@ public abstract class ResourceIndex {
   public abstract ResName getResName(int resourceId);
 
   public abstract Collection<String> getPackages();
+
+  /**
+   * Returns the ids this index was built with, not including any generated since for undeclared resources.
+   */
+  ResourceIdTable getResourceIdTable() {
+    ResourceIdTable.Builder builder = new ResourceIdTable.Builder();
+    for (Map.Entry<ResName, Integer> entry : resourceNameToId.entrySet()) {
+      builder.put(entry.getKey(), entry.getValue());
+    }
+    return builder.build();
+  }
 }
@@ -2,13 +2,17 @@ package org.robolectric.res;
 
 import org.jetbrains.annotations.NotNull;
 import org.robolectric.res.builder.XmlBlock;
+import org.robolectric.util.Strings;
 
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 public abstract class ResourceLoader {
+  private final ConcurrentMap<ResolvedStyle.Key, ResolvedStyle> resolvedStyles = new ConcurrentHashMap<>();
 
   public abstract TypedResource getValue(@NotNull ResName resName, String qualifiers);
 
@@ -33,6 +37,25 @@ public abstract class ResourceLoader {
 
   public abstract ResourceIndex getResourceIndex();
 
+  /**
+   * Returns {@code styleData} with its parents flattened into it. Unless finding a parent needed {@code theme}, the
+   * result is shared by everything which uses this style with the same qualifiers.
+   */
+  ResolvedStyle getResolvedStyle(StyleData styleData, Style theme, String qualifiers) {
+    ResolvedStyle.Key key = new ResolvedStyle.Key(styleData, Strings.nullToEmpty(qualifiers));
+    ResolvedStyle resolvedStyle = resolvedStyles.get(key);
+    if (resolvedStyle == null) {
+      resolvedStyle = ResolvedStyle.resolve(this, styleData, theme, qualifiers);
+      if (!resolvedStyle.dependsOnTheme()) {
+        ResolvedStyle existing = resolvedStyles.putIfAbsent(key, resolvedStyle);
+        if (existing != null) {
+          resolvedStyle = existing;
+        }
+      }
+    }
+    return resolvedStyle;
+  }
+
   public abstract boolean providesFor(String namespace);
 
   @NotNull
@@ -0,0 +1,629 @@
+package org.robolectric.res;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.jetbrains.annotations.NotNull;
+import org.robolectric.util.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * On-disk cache of the resources {@link PackageResourceLoader} parses from {@code values*} directories, shared by
+ * every JVM which uses the same cache directory.
+ *
+ * Parsing values files means running a couple of dozen XPath queries over each of them, for the app and for the
+ * whole Android framework, in every forked JVM. Instead the parsed values, styles, attrs and plurals are written
+ * once to a compact binary table, named for a digest of the XML they came from and the version of Robolectric
+ * which parsed it. When the same resources are loaded again the table is memory-mapped, and each type's section is
+ * only decoded when resources of that type are first asked for. If there's no table, or it can't be read, resources
+ * are parsed from XML as usual.
+ *
+ * Used for every package when the {@code robolectric.resourceTable.dir} system property is set. Framework resources
+ * are cached in Robolectric's cache directory under {@code java.io.tmpdir} otherwise, unless
+ * {@code robolectric.systemResourceTable} is {@code false}. Values files in jars are identified by the CRCs in the
+ * jar's directory, so keying those tables doesn't mean reading the files.
+ */
+public class ResourceTableCache {
+  private static final int MAGIC = 0x52544231; // "RTB1"
+  private static final int FORMAT_VERSION = 3;
+
+  private static final byte PLAIN = 0;
+  private static final byte ARRAY = 1;
+  private static final byte ATTR = 2;
+  private static final byte STYLE = 3;
+  private static final byte PLURALS = 4;
+
+  private static final Comparator<FsFile> BY_NAME = new Comparator<FsFile>() {
+    @Override
+    public int compare(FsFile a, FsFile b) {
+      return a.getName().compareTo(b.getName());
+    }
+  };
+
+  private final Path dir;
+  private final String robolectricVersion;
+
+  public ResourceTableCache(File dir) {
+    this(dir, readRobolectricVersion());
+  }
+
+  /**
+   * @param robolectricVersion tables written by other versions of Robolectric, whose loaders may have parsed the
+   *     same XML differently, are ignored
+   */
+  public ResourceTableCache(File dir, String robolectricVersion) {
+    this.dir = dir.toPath();
+    this.robolectricVersion = robolectricVersion;
+  }
+
+  /**
+   * Returns the cache configured by system properties, or null if there isn't one.
+   */
+  public static ResourceTableCache fromSystemProperties() {
+    return fromSystemProperties(readRobolectricVersion());
+  }
+
+  /**
+   * Returns the cache configured by system properties, or null if there isn't one.
+   */
+  public static ResourceTableCache fromSystemProperties(String robolectricVersion) {
+    String dir = System.getProperty("robolectric.resourceTable.dir");
+    return dir == null ? null : new ResourceTableCache(new File(dir), robolectricVersion);
+  }
+
+  /**
+   * Returns the cache for framework resources, or null if they shouldn't be cached.
+   */
+  public static ResourceTableCache forSystemResources(String robolectricVersion) {
+    return forSystemResources(new File(System.getProperty("java.io.tmpdir"), "robolectric"), robolectricVersion);
+  }
+
+  static ResourceTableCache forSystemResources(File robolectricCacheDir, String robolectricVersion) {
+    ResourceTableCache resourceTableCache = fromSystemProperties(robolectricVersion);
+    if (resourceTableCache != null) {
+      return resourceTableCache;
+    }
+    if (!Boolean.parseBoolean(System.getProperty("robolectric.systemResourceTable", "true"))) {
+      return null;
+    }
+    return new ResourceTableCache(new File(robolectricCacheDir, "resource-tables"), robolectricVersion);
+  }
+
+  /**
+   * Returns a digest of the {@code values*} XML files in {@code resourcePath}.
+   */
+  public String keyFor(ResourcePath resourcePath) throws IOException {
+    Hasher hasher = Hashing.sha1().newHasher()
+        .putInt(FORMAT_VERSION)
+        .putString(robolectricVersion, StandardCharsets.UTF_8)
+        .putString(resourcePath.getPackageName(), StandardCharsets.UTF_8);
+
+    FsFile[] valuesDirs = resourcePath.getResourceBase().listFiles(new FsFile.Filter() {
+      @Override
+      public boolean accept(@NotNull FsFile file) {
+        return file.getName().startsWith("values");
+      }
+    });
+    if (valuesDirs != null) {
+      Arrays.sort(valuesDirs, BY_NAME);
+      for (FsFile valuesDir : valuesDirs) {
+        FsFile[] files = valuesDir.listFiles(new FsFile.Filter() {
+          @Override
+          public boolean accept(@NotNull FsFile file) {
+            return file.getName().endsWith(".xml");
+          }
+        });
+        Arrays.sort(files, BY_NAME);
+        for (FsFile file : files) {
+          hasher.putString(valuesDir.getName() + "/" + file.getName(), StandardCharsets.UTF_8);
+          long crc = file instanceof Fs.JarFs.JarFsFile ? ((Fs.JarFs.JarFsFile) file).getCrc() : -1;
+          if (crc != -1) {
+            hasher.putLong(crc);
+          } else {
+            byte[] bytes = file.getBytes();
+            hasher.putInt(bytes.length)
+                .putBytes(bytes);
+          }
+        }
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Adds the resources in the table for {@code key} to {@code data}.
+   *
+   * @return False if there's no usable table, in which case {@code data} is unchanged.
+   */
+  public boolean load(String key, ResBunch data) {
+    Table table = open(key);
+    if (table == null) {
+      return false;
+    }
+
+    try {
+      table.loadAll(data);
+    } catch (RuntimeException e) {
+      Logger.info("Couldn't read resource table %s: %s", table.file, e);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Maps the table for {@code key} and reads its index, without decoding any resources yet.
+   *
+   * @return The table, or null if there's no usable table.
+   */
+  public Table open(String key) {
+    Path file = fileFor(key);
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || !key.equals(readUtf8(buffer))) {
+        Logger.info("Ignoring resource table %s, it's in an unexpected format", file);
+        return null;
+      }
+      Table table = new Table(file, buffer);
+      Logger.debug("Opened resource table %s with %d types", file, table.getTypes().size());
+      return table;
+    } catch (IOException | RuntimeException e) {
+      Logger.info("Couldn't read resource table %s: %s", file, e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the resources in {@code data} to the table for {@code key}. The table is written to a temporary file
+   * and renamed into place so concurrent readers in other JVMs never see a partial table.
+   *
+   * The table starts with every string it uses, followed by an index of the sections, one per resource type, so a
+   * section can be decoded without reading the ones before it.
+   */
+  public void store(String key, ResBunch data) {
+    Path tmpFile = null;
+    try {
+      Files.createDirectories(dir);
+      tmpFile = Files.createTempFile(dir, key, ".tmp");
+      ByteArrayOutputStream sections = new ByteArrayOutputStream();
+      DataOutputStream sectionsOut = new DataOutputStream(sections);
+      Writer writer = new Writer(sectionsOut);
+      Map<String, ResBundle<TypedResource>> bundles = new TreeMap<>(data.getBundles());
+      int[] sectionTypes = new int[bundles.size()];
+      int[] sectionOffsets = new int[bundles.size()];
+      int section = 0;
+      for (Map.Entry<String, ResBundle<TypedResource>> bundle : bundles.entrySet()) {
+        sectionTypes[section] = writer.indexOf(bundle.getKey());
+        sectionOffsets[section] = sectionsOut.size();
+        writer.writeSection(bundle.getValue());
+        section++;
+      }
+
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeUtf8(out, key);
+        writer.writeStrings(out);
+        out.writeInt(bundles.size());
+        for (int i = 0; i < bundles.size(); i++) {
+          out.writeInt(sectionTypes[i]);
+          out.writeInt(sectionOffsets[i]);
+        }
+        sections.writeTo(out);
+      }
+      Files.move(tmpFile, fileFor(key), StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | IllegalArgumentException e) {
+      Logger.info("Couldn't write resource table for %s: %s", key, e.getMessage());
+      if (tmpFile != null) {
+        try {
+          Files.deleteIfExists(tmpFile);
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  private Path fileFor(String key) {
+    return dir.resolve(key + ".rtable");
+  }
+
+  /**
+   * Returns the version of Robolectric on the classpath, or "unknown" if it isn't there, e.g. in this module's tests.
+   */
+  private static String readRobolectricVersion() {
+    ClassLoader classLoader = ResourceTableCache.class.getClassLoader();
+    try (InputStream in = classLoader.getResourceAsStream("robolectric-version.properties")) {
+      if (in != null) {
+        Properties properties = new Properties();
+        properties.load(in);
+        String version = properties.getProperty("robolectric.version");
+        if (version != null) {
+          return version;
+        }
+      }
+    } catch (IOException e) {
+      Logger.debug("Couldn't read Robolectric version: %s", e.getMessage());
+    }
+    return "unknown";
+  }
+
+  private static void writeUtf8(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readUtf8(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * A mapped table, whose sections are decoded one type at a time.
+   */
+  public static class Table {
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final int[] stringOffsets;
+    private final String[] strings;
+    private final Map<String, Integer> sectionOffsets = new LinkedHashMap<>();
+    private final Set<String> loadedTypes = new HashSet<>();
+
+    Table(Path file, ByteBuffer buffer) {
+      this.file = file;
+      this.buffer = buffer;
+
+      stringOffsets = new int[buffer.getInt()];
+      strings = new String[stringOffsets.length];
+      for (int i = 0; i < stringOffsets.length; i++) {
+        stringOffsets[i] = buffer.getInt();
+      }
+      int stringsLength = buffer.getInt();
+      int stringsStart = buffer.position();
+      buffer.position(stringsStart + stringsLength);
+      for (int i = 0; i < stringOffsets.length; i++) {
+        if (stringOffsets[i] < 0 || stringOffsets[i] >= stringsLength) {
+          throw new IllegalArgumentException("bad string offset " + stringOffsets[i]);
+        }
+        stringOffsets[i] += stringsStart;
+      }
+
+      int sectionCount = buffer.getInt();
+      int[] sectionTypes = new int[sectionCount];
+      int[] offsets = new int[sectionCount];
+      for (int i = 0; i < sectionCount; i++) {
+        sectionTypes[i] = buffer.getInt();
+        offsets[i] = buffer.getInt();
+      }
+      int sectionsStart = buffer.position();
+      for (int i = 0; i < sectionCount; i++) {
+        if (offsets[i] < 0 || offsets[i] >= buffer.limit() - sectionsStart) {
+          throw new IllegalArgumentException("bad section offset " + offsets[i]);
+        }
+        sectionOffsets.put(string(sectionTypes[i]), sectionsStart + offsets[i]);
+      }
+    }
+
+    /**
+     * Returns the types of resources in the table.
+     */
+    public Set<String> getTypes() {
+      return Collections.unmodifiableSet(sectionOffsets.keySet());
+    }
+
+    /**
+     * Returns the types which have been added to a {@link ResBunch} so far.
+     */
+    public synchronized Set<String> getLoadedTypes() {
+      return Collections.unmodifiableSet(new HashSet<>(loadedTypes));
+    }
+
+    /**
+     * Adds the resources of {@code type} to {@code data}, unless they've already been added. If the section can't
+     * be decoded {@code data} is unchanged.
+     */
+    public synchronized void load(String type, ResBunch data) {
+      if (loadedTypes.contains(type)) {
+        return;
+      }
+
+      Integer offset = sectionOffsets.get(type);
+      if (offset != null) {
+        putAll(decode(type, offset), data);
+      }
+      loadedTypes.add(type);
+    }
+
+    /**
+     * Adds the resources of every type which hasn't been added yet to {@code data}. If any section can't be
+     * decoded {@code data} is unchanged.
+     */
+    public synchronized void loadAll(ResBunch data) {
+      List<Decoded> sections = new ArrayList<>();
+      for (Map.Entry<String, Integer> section : sectionOffsets.entrySet()) {
+        if (!loadedTypes.contains(section.getKey())) {
+          sections.add(decode(section.getKey(), section.getValue()));
+        }
+      }
+      for (Decoded decoded : sections) {
+        putAll(decoded, data);
+      }
+      loadedTypes.addAll(sectionOffsets.keySet());
+    }
+
+    private Decoded decode(String type, int offset) {
+      ByteBuffer section = buffer.duplicate();
+      section.position(offset);
+      Reader reader = new Reader(section, this);
+      Decoded decoded = new Decoded();
+      try {
+        int entryCount = section.getInt();
+        for (int i = 0; i < entryCount; i++) {
+          ResName resName = reader.readResName();
+          int valueCount = section.getInt();
+          for (int j = 0; j < valueCount; j++) {
+            String qualifiers = reader.readString();
+            decoded.resNames.add(resName);
+            decoded.values.add(ResBundle.Value.withDecoratedQualifiers(qualifiers, reader.readTypedResource()));
+          }
+        }
+      } catch (RuntimeException e) {
+        throw new IllegalStateException("couldn't read " + type + " resources from " + file, e);
+      }
+      Logger.debug("Loaded %d %s resources from %s", decoded.values.size(), type, file);
+      return decoded;
+    }
+
+    private static void putAll(Decoded decoded, ResBunch data) {
+      for (int i = 0; i < decoded.resNames.size(); i++) {
+        data.putValue(decoded.resNames.get(i), decoded.values.get(i));
+      }
+    }
+
+    String string(int index) {
+      if (index < 0 || index >= strings.length) {
+        throw new IllegalArgumentException("bad string index " + index);
+      }
+      String string = strings[index];
+      if (string == null) {
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.position(stringOffsets[index]);
+        string = readUtf8(bytes);
+        strings[index] = string;
+      }
+      return string;
+    }
+  }
+
+  private static class Decoded {
+    private final List<ResName> resNames = new ArrayList<>();
+    private final List<ResBundle.Value<TypedResource>> values = new ArrayList<>();
+  }
+
+  /**
+   * Sections refer to strings by their index in the table's strings, which are written once, after the sections
+   * have been.
+   */
+  private static class Writer {
+    private final DataOutputStream out;
+    private final Map<String, Integer> stringIndexes = new LinkedHashMap<>();
+
+    Writer(DataOutputStream out) {
+      this.out = out;
+    }
+
+    int indexOf(String string) {
+      Integer index = stringIndexes.get(string);
+      if (index == null) {
+        index = stringIndexes.size();
+        stringIndexes.put(string, index);
+      }
+      return index;
+    }
+
+    void writeStrings(DataOutputStream out) throws IOException {
+      ByteArrayOutputStream strings = new ByteArrayOutputStream();
+      DataOutputStream stringsOut = new DataOutputStream(strings);
+      out.writeInt(stringIndexes.size());
+      for (String string : stringIndexes.keySet()) {
+        out.writeInt(stringsOut.size());
+        writeUtf8(stringsOut, string);
+      }
+      out.writeInt(stringsOut.size());
+      strings.writeTo(out);
+    }
+
+    void writeSection(ResBundle<TypedResource> bundle) throws IOException {
+      out.writeInt(bundle.getValues().size());
+      for (Map.Entry<ResName, List<ResBundle.Value<TypedResource>>> entry : bundle.getValues().entrySet()) {
+        writeResName(entry.getKey());
+        out.writeInt(entry.getValue().size());
+        for (ResBundle.Value<TypedResource> value : entry.getValue()) {
+          writeString(value.getQualifiers());
+          writeTypedResource(value.getValue());
+        }
+      }
+    }
+
+    void writeString(String string) throws IOException {
+      out.writeInt(string == null ? -1 : indexOf(string));
+    }
+
+    void writeResName(ResName resName) throws IOException {
+      writeString(resName.packageName);
+      writeString(resName.type);
+      writeString(resName.name);
+    }
+
+    /**
+     * Types are written by name rather than ordinal, so adding or reordering {@link ResType}s can't change what a
+     * stored table means.
+     */
+    void writeResType(ResType resType) throws IOException {
+      writeString(resType.name());
+    }
+
+    void writeTypedResource(TypedResource typedResource) throws IOException {
+      Object data = typedResource.getData();
+      if (typedResource.getClass() == PluralResourceLoader.PluralRules.class) {
+        out.writeByte(PLURALS);
+        writeResType(typedResource.getResType());
+        List<Plural> plurals = ((PluralResourceLoader.PluralRules) typedResource).getData();
+        out.writeInt(plurals.size());
+        for (Plural plural : plurals) {
+          writeString(plural.quantity);
+          writeString(plural.string);
+        }
+      } else if (typedResource.getClass() != TypedResource.class) {
+        throw new IllegalArgumentException("can't store " + typedResource);
+      } else if (data instanceof String) {
+        out.writeByte(PLAIN);
+        writeResType(typedResource.getResType());
+        writeString((String) data);
+      } else if (data instanceof TypedResource[]) {
+        out.writeByte(ARRAY);
+        writeResType(typedResource.getResType());
+        TypedResource[] items = (TypedResource[]) data;
+        out.writeInt(items.length);
+        for (TypedResource item : items) {
+          writeTypedResource(item);
+        }
+      } else if (data instanceof AttrData) {
+        out.writeByte(ATTR);
+        AttrData attrData = (AttrData) data;
+        writeString(attrData.getName());
+        writeString(attrData.getFormat());
+        List<AttrData.Pair> pairs = attrData.getPairs();
+        out.writeInt(pairs == null ? -1 : pairs.size());
+        if (pairs != null) {
+          for (AttrData.Pair pair : pairs) {
+            writeString(pair.getName());
+            writeString(pair.getValue());
+          }
+        }
+      } else if (data instanceof StyleData) {
+        out.writeByte(STYLE);
+        StyleData styleData = (StyleData) data;
+        writeString(styleData.getPackageName());
+        writeString(styleData.getName());
+        writeString(styleData.getParent());
+        Map<ResName, AttributeResource> items = styleData.getItems();
+        out.writeInt(items.size());
+        for (Map.Entry<ResName, AttributeResource> item : items.entrySet()) {
+          writeResName(item.getKey());
+          writeResName(item.getValue().resName);
+          writeString(item.getValue().value);
+          writeString(item.getValue().contextPackageName);
+        }
+      } else {
+        throw new IllegalArgumentException("can't store " + typedResource);
+      }
+    }
+  }
+
+  private static class Reader {
+    private final ByteBuffer buffer;
+    private final Table table;
+
+    Reader(ByteBuffer buffer, Table table) {
+      this.buffer = buffer;
+      this.table = table;
+    }
+
+    String readString() {
+      int index = buffer.getInt();
+      return index == -1 ? null : table.string(index);
+    }
+
+    ResName readResName() {
+      return new ResName(readString(), readString(), readString());
+    }
+
+    ResType readResType() {
+      String name = readString();
+      if (name == null) {
+        throw new IllegalArgumentException("missing resource type");
+      }
+      // throws IllegalArgumentException for types which no longer exist
+      return ResType.valueOf(name);
+    }
+
+    TypedResource readTypedResource() {
+      byte kind = buffer.get();
+      switch (kind) {
+        case PLAIN: {
+          ResType resType = readResType();
+          return new TypedResource<>(readString(), resType);
+        }
+        case ARRAY: {
+          ResType resType = readResType();
+          TypedResource[] items = new TypedResource[buffer.getInt()];
+          for (int i = 0; i < items.length; i++) {
+            items[i] = readTypedResource();
+          }
+          return new TypedResource<>(items, resType);
+        }
+        case ATTR: {
+          String name = readString();
+          String format = readString();
+          int pairCount = buffer.getInt();
+          List<AttrData.Pair> pairs = null;
+          if (pairCount >= 0) {
+            pairs = new ArrayList<>(pairCount);
+            for (int i = 0; i < pairCount; i++) {
+              pairs.add(new AttrData.Pair(readString(), readString()));
+            }
+          }
+          return new TypedResource<>(new AttrData(name, format, pairs), ResType.ATTR_DATA);
+        }
+        case STYLE: {
+          StyleData styleData = new StyleData(readString(), readString(), readString());
+          int itemCount = buffer.getInt();
+          for (int i = 0; i < itemCount; i++) {
+            ResName attrName = readResName();
+            styleData.add(attrName, new AttributeResource(readResName(), readString(), readString()));
+          }
+          return new TypedResource<>(styleData, ResType.STYLE);
+        }
+        case PLURALS: {
+          ResType resType = readResType();
+          int pluralCount = buffer.getInt();
+          List<Plural> plurals = new ArrayList<>(pluralCount);
+          for (int i = 0; i < pluralCount; i++) {
+            plurals.add(new Plural(readString(), readString()));
+          }
+          return new PluralResourceLoader.PluralRules(plurals, resType);
+        }
+        default:
+          throw new IllegalArgumentException("bad resource kind " + kind);
+      }
+    }
+  }
+}
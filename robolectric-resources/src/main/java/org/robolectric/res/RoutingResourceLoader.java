@@ -91,6 +91,9 @@ public class RoutingResourceLoader extends ResourceLoader {
     @Override void doInitialize() {
     }
 
+    @Override void doInitialize(String type) {
+    }
+
     @Override public boolean providesFor(String namespace) {
       return true;
     }
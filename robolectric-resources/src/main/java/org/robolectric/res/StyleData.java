@@ -2,6 +2,7 @@ package org.robolectric.res;
 
 import org.robolectric.util.Strings;
 
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.regex.Pattern;
@@ -48,6 +49,10 @@ public class StyleData implements Style {
     return attributeResource;
   }
 
+  Map<ResName, AttributeResource> getItems() {
+    return Collections.unmodifiableMap(items);
+  }
+
   public boolean grep(Pattern pattern) {
     for (ResName resName : items.keySet()) {
       if (pattern.matcher(resName.getFullyQualifiedName()).find()) {
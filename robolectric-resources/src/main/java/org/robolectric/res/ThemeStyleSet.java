@@ -9,6 +9,7 @@ import java.util.List;
 public class ThemeStyleSet implements Style {
 
   private List<OverlayedStyle> styles = new ArrayList<>();
+  private int version;
 
   public AttributeResource getAttrValue(ResName attrName) {
     AttributeResource attribute = null;
@@ -32,6 +33,14 @@ public class ThemeStyleSet implements Style {
       }
     }
     styles.add(styleToAdd);
+    version++;
+  }
+
+  /**
+   * Returns a number which changes whenever a style is applied.
+   */
+  public int getVersion() {
+    return version;
   }
 
   public ThemeStyleSet copy() {
@@ -3,6 +3,7 @@ package org.robolectric.res;
 public class TypedResource<T> {
   private final T data;
   private final ResType resType;
+  private volatile ConvertedValue convertedValue;
 
   public TypedResource(T data, ResType resType) {
     this.data = data;
@@ -21,6 +22,18 @@ public class TypedResource<T> {
     return ((String) getData());
   }
 
+  /**
+   * Returns what this resource's data was converted to by {@code convertedBy}, or null if it hasn't been.
+   */
+  public ConvertedValue getConvertedValue(Object convertedBy) {
+    ConvertedValue convertedValue = this.convertedValue;
+    return convertedValue != null && convertedValue.convertedBy.equals(convertedBy) ? convertedValue : null;
+  }
+
+  public void setConvertedValue(ConvertedValue convertedValue) {
+    this.convertedValue = convertedValue;
+  }
+
   public boolean isFile() {
     return false;
   }
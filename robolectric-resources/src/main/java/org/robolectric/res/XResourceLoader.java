@@ -5,6 +5,11 @@ import org.robolectric.res.builder.XmlBlock;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 // TODO: Give me a better name
 abstract class XResourceLoader extends ResourceLoader {
@@ -13,20 +18,60 @@ abstract class XResourceLoader extends ResourceLoader {
   final ResBundle<FsFile> rawResources = new ResBundle<>();
   
   private final ResourceIndex resourceIndex;
-  private boolean isInitialized = false;
+  // written under the lock, but read without it so that lookups of loaded types never wait for other types to load
+  private final Set<String> loadedTypes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private volatile boolean isInitialized = false;
 
   XResourceLoader(ResourceIndex resourceIndex) {
     this.resourceIndex = resourceIndex;
   }
 
+  /**
+   * Loads all resources which haven't been loaded by {@link #doInitialize(String)} yet.
+   */
   abstract void doInitialize();
 
-  synchronized void initialize() {
+  /**
+   * Loads every resource of the given type into {@link #data}, {@link #xmlDocuments} and {@link #rawResources}.
+   * Called at most once per type, and never after {@link #doInitialize()}.
+   */
+  abstract void doInitialize(String type);
+
+  void initialize() {
     if (isInitialized) return;
-    doInitialize();
-    isInitialized = true;
+    synchronized (this) {
+      if (isInitialized) return;
+      doInitialize();
+      makeImmutable();
+      isInitialized = true;
+    }
+  }
 
-    makeImmutable();
+  void initialize(String type) {
+    if (isInitialized(type)) return;
+    synchronized (this) {
+      if (isInitialized(type)) return;
+      doInitialize(type);
+      loadedTypes.add(type);
+    }
+  }
+
+  boolean isInitialized(String type) {
+    return isInitialized || loadedTypes.contains(type);
+  }
+
+  /**
+   * Returns the types of resources which have been loaded so far.
+   */
+  public synchronized Set<String> getLoadedTypes() {
+    return isInitialized ? getTypes() : Collections.unmodifiableSet(new HashSet<>(loadedTypes));
+  }
+
+  synchronized Set<String> getTypes() {
+    Set<String> types = new LinkedHashSet<>(data.getBundles().keySet());
+    types.addAll(xmlDocuments.getTypes());
+    types.addAll(rawResources.getTypes());
+    return Collections.unmodifiableSet(types);
   }
 
   private void makeImmutable() {
@@ -37,20 +82,20 @@ abstract class XResourceLoader extends ResourceLoader {
   }
 
   public TypedResource getValue(@NotNull ResName resName, String qualifiers) {
-    initialize();
+    initialize(resName.type);
     ResBundle.Value<TypedResource> value = data.getValue(resName, qualifiers);
     return value == null ? null : value.getValue();
   }
 
   @Override
   public XmlBlock getXml(ResName resName, String qualifiers) {
-    initialize();
+    initialize(resName.type);
     return xmlDocuments.get(resName, qualifiers);
   }
 
   @Override
   public InputStream getRawValue(ResName resName) {
-    initialize();
+    initialize(resName.type);
 
     FsFile file = rawResources.get(resName, "");
     try {
@@ -10,6 +10,8 @@ import org.w3c.dom.Document;
  * <p>Given a resource file a concrete implementation of {@link XmlResourceParser}
  * is returned. The returned implementation is based on the current Android
  * implementation. Please see the android source code for further details.
+ *
+ * <p>Only a reference to each file is kept; it's compiled when it's first used.
  */
 public class XmlBlockLoader extends XmlLoader {
   private final String attrType;
@@ -22,7 +24,6 @@ public class XmlBlockLoader extends XmlLoader {
 
   @Override
   protected void processResourceXml(FsFile xmlFile, XpathResourceXmlLoader.XmlNode xmlNode, XmlContext xmlContext) throws Exception {
-    XmlBlock block = XmlBlock.create(parse(xmlFile), xmlFile.getPath(), xmlContext.packageName);
-    resBundle.put(attrType, xmlFile.getBaseName(), block, xmlContext);
+    resBundle.put(attrType, xmlFile.getBaseName(), XmlBlock.create(xmlFile, xmlContext.packageName), xmlContext);
   }
 }
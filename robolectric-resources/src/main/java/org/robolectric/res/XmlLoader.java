@@ -21,17 +21,26 @@ public abstract class XmlLoader {
     documentBuilderFactory.setIgnoringElementContentWhitespace(true);
   }
 
-  private DocumentBuilder documentBuilder;
+  // DocumentBuilders aren't thread-safe, and DocumentLoader parses files on several threads
+  private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>() {
+    @Override
+    protected DocumentBuilder initialValue() {
+      synchronized (documentBuilderFactory) {
+        try {
+          return documentBuilderFactory.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+  };
 
-  synchronized public Document parse(FsFile xmlFile) {
+  public Document parse(FsFile xmlFile) {
     InputStream inputStream = null;
     try {
-      if (documentBuilder == null) {
-        documentBuilder = documentBuilderFactory.newDocumentBuilder();
-      }
       inputStream = xmlFile.getInputStream();
-      return documentBuilder.parse(inputStream);
-    } catch (ParserConfigurationException | IOException | SAXException e) {
+      return documentBuilders.get().parse(inputStream);
+    } catch (IOException | SAXException e) {
       throw new RuntimeException(e);
     } finally {
       if (inputStream != null) try {
@@ -42,6 +51,20 @@ public abstract class XmlLoader {
     }
   }
 
+  /**
+   * Does whatever work on {@code xmlFile} doesn't touch anything shared, so {@link DocumentLoader} can do it for
+   * several files at once. The result is handed back to
+   * {@link #processResourceXml(FsFile, VTDNav, String, Object)}, which is called for one file at a time.
+   */
+  protected Object prepareResourceXml(FsFile xmlFile, VTDNav vtdNav, String packageName) throws Exception {
+    return null;
+  }
+
+  protected void processResourceXml(FsFile xmlFile, VTDNav vtdNav, String packageName, Object prepared)
+      throws Exception {
+    processResourceXml(xmlFile, vtdNav, packageName);
+  }
+
   protected void processResourceXml(FsFile xmlFile, VTDNav vtdNav, String packageName) throws Exception {
     processResourceXml(xmlFile, new XpathResourceXmlLoader.XmlNode(vtdNav), new XmlContext(packageName, xmlFile));
   }
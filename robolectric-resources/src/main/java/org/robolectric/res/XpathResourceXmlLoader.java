@@ -8,6 +8,8 @@ import com.ximpleware.XPathParseException;
 import org.jetbrains.annotations.NotNull;
 
 import javax.xml.xpath.XPathExpressionException;
+import java.util.ArrayList;
+import java.util.List;
 
 public abstract class XpathResourceXmlLoader extends XmlLoader {
   private final String expression;
@@ -16,8 +18,32 @@ public abstract class XpathResourceXmlLoader extends XmlLoader {
     this.expression = expression;
   }
 
+  /**
+   * Evaluates the expression, which is most of the work of loading a file, so it runs on {@link DocumentLoader}'s
+   * parser threads. Each match keeps its own copy of the navigator, positioned at the matched node.
+   */
+  @Override
+  protected Object prepareResourceXml(FsFile xmlFile, VTDNav vtdNav, String packageName) throws Exception {
+    List<XmlNode> nodes = new ArrayList<>();
+    for (XmlNode node : new XmlNode(vtdNav).selectByXpath(expression)) {
+      nodes.add(new XmlNode(node.vtdNav.cloneNav()));
+    }
+    return nodes;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  protected void processResourceXml(FsFile xmlFile, VTDNav vtdNav, String packageName, Object prepared)
+      throws Exception {
+    processNodes((List<XmlNode>) prepared, new XmlContext(packageName, xmlFile));
+  }
+
   @Override protected void processResourceXml(FsFile xmlFile, XmlNode xmlNode, XmlContext xmlContext) throws Exception {
-    for (XmlNode node : xmlNode.selectByXpath(expression)) {
+    processNodes(xmlNode.selectByXpath(expression), xmlContext);
+  }
+
+  private void processNodes(Iterable<XmlNode> nodes, XmlContext xmlContext) throws Exception {
+    for (XmlNode node : nodes) {
       String name = node.getAttrValue("name");
       processNode(name, node, xmlContext);
     }
@@ -0,0 +1,529 @@
+package org.robolectric.res.builder;
+
+import com.ximpleware.NavException;
+import com.ximpleware.VTDNav;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, immutable representation of a parsed XML file, similar in spirit to the binary XML which aapt
+ * compiles resource files into.
+ *
+ * <p>Every distinct string in the file is stored once, and the element tree is flattened into int arrays
+ * which index into those strings, so holding on to a compiled file costs a small fraction of a DOM.
+ * Nodes are numbered in document order, starting with the root element at 0; {@code -1} means no node.
+ *
+ * <p>Comments, processing instructions and text which is only whitespace are dropped, since
+ * {@link XmlResourceParserImpl} never reports them. Attributes, including namespace declarations, are
+ * ordered by their qualified name, as they are in a DOM.
+ */
+public final class CompiledXml {
+  public static final int ELEMENT = 0;
+  public static final int TEXT = 1;
+  public static final int CDATA = 2;
+
+  static final String XMLNS_NS = "http://www.w3.org/2000/xmlns/";
+  static final String XML_NS = "http://www.w3.org/XML/1998/namespace";
+
+  private static final int KIND = 0;
+  private static final int NAME = 1; // the text of TEXT and CDATA nodes
+  private static final int NAMESPACE = 2;
+  private static final int LOCAL_NAME = 3;
+  private static final int PARENT = 4;
+  private static final int FIRST_CHILD = 5;
+  private static final int NEXT_SIBLING = 6;
+  private static final int FIRST_ATTRIBUTE = 7;
+  private static final int ATTRIBUTE_COUNT = 8;
+  private static final int NODE_SIZE = 9;
+
+  private static final int ATTRIBUTE_NAMESPACE = 0;
+  private static final int ATTRIBUTE_NAME = 1;
+  private static final int ATTRIBUTE_LOCAL_NAME = 2;
+  private static final int ATTRIBUTE_VALUE = 3;
+  private static final int ATTRIBUTE_SIZE = 4;
+
+  private final String[] strings;
+  private final int[] nodes;
+  private final int[] attributes;
+  private final int byteCount;
+
+  private CompiledXml(String[] strings, int[] nodes, int[] attributes) {
+    this.strings = strings;
+    this.nodes = nodes;
+    this.attributes = attributes;
+
+    int byteCount = 64 + 4 * (strings.length + nodes.length + attributes.length);
+    for (String string : strings) {
+      byteCount += 40 + 2 * string.length();
+    }
+    this.byteCount = byteCount;
+  }
+
+  public static CompiledXml from(Document document) {
+    Builder builder = new Builder();
+    builder.addElement(document.getDocumentElement(), -1);
+    return builder.build();
+  }
+
+  /**
+   * Compiles the document which has been parsed into {@code vtdNav}, without moving its cursor.
+   */
+  public static CompiledXml from(VTDNav vtdNav) throws NavException {
+    return new VtdCompiler(vtdNav).compile();
+  }
+
+  /**
+   * Returns roughly how much heap this takes up.
+   */
+  public int getByteCount() {
+    return byteCount;
+  }
+
+  public int getNodeCount() {
+    return nodes.length / NODE_SIZE;
+  }
+
+  public int getKind(int node) {
+    return nodes[node * NODE_SIZE + KIND];
+  }
+
+  /**
+   * Returns the qualified name of an element, or {@code #text} or {@code #cdata-section} like a DOM does.
+   */
+  public String getName(int node) {
+    switch (getKind(node)) {
+      case TEXT:
+        return "#text";
+      case CDATA:
+        return "#cdata-section";
+      default:
+        return string(nodes[node * NODE_SIZE + NAME]);
+    }
+  }
+
+  public String getNamespace(int node) {
+    return string(nodes[node * NODE_SIZE + NAMESPACE]);
+  }
+
+  public String getLocalName(int node) {
+    return string(nodes[node * NODE_SIZE + LOCAL_NAME]);
+  }
+
+  /**
+   * Returns the text of a text node, or all of the text inside an element.
+   */
+  public String getText(int node) {
+    if (getKind(node) != ELEMENT) {
+      return string(nodes[node * NODE_SIZE + NAME]);
+    }
+
+    StringBuilder text = new StringBuilder();
+    appendText(node, text);
+    return text.toString();
+  }
+
+  private void appendText(int node, StringBuilder text) {
+    for (int child = getFirstChild(node); child != -1; child = getNextSibling(child)) {
+      if (getKind(child) == ELEMENT) {
+        appendText(child, text);
+      } else {
+        text.append(string(nodes[child * NODE_SIZE + NAME]));
+      }
+    }
+  }
+
+  public int getParent(int node) {
+    return nodes[node * NODE_SIZE + PARENT];
+  }
+
+  public int getFirstChild(int node) {
+    return nodes[node * NODE_SIZE + FIRST_CHILD];
+  }
+
+  public int getNextSibling(int node) {
+    return nodes[node * NODE_SIZE + NEXT_SIBLING];
+  }
+
+  public int getAttributeCount(int node) {
+    return nodes[node * NODE_SIZE + ATTRIBUTE_COUNT];
+  }
+
+  public String getAttributeNamespace(int node, int index) {
+    return string(attributes[attributeOffset(node, index) + ATTRIBUTE_NAMESPACE]);
+  }
+
+  public String getAttributeName(int node, int index) {
+    return string(attributes[attributeOffset(node, index) + ATTRIBUTE_NAME]);
+  }
+
+  public String getAttributeLocalName(int node, int index) {
+    return string(attributes[attributeOffset(node, index) + ATTRIBUTE_LOCAL_NAME]);
+  }
+
+  public String getAttributeValue(int node, int index) {
+    return string(attributes[attributeOffset(node, index) + ATTRIBUTE_VALUE]);
+  }
+
+  /**
+   * Returns the value of the attribute with the given namespace (which may be null) and local name, or null if
+   * the element doesn't have one.
+   */
+  public String getAttributeValue(int node, String namespace, String localName) {
+    int count = getAttributeCount(node);
+    for (int i = 0; i < count; i++) {
+      int offset = attributeOffset(node, i);
+      if (localName.equals(string(attributes[offset + ATTRIBUTE_LOCAL_NAME]))
+          && equal(namespace, string(attributes[offset + ATTRIBUTE_NAMESPACE]))) {
+        return string(attributes[offset + ATTRIBUTE_VALUE]);
+      }
+    }
+    return null;
+  }
+
+  private int attributeOffset(int node, int index) {
+    if (index < 0 || index >= getAttributeCount(node)) {
+      throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+    return (nodes[node * NODE_SIZE + FIRST_ATTRIBUTE] + index) * ATTRIBUTE_SIZE;
+  }
+
+  private String string(int index) {
+    return index == -1 ? null : strings[index];
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+
+  static boolean isWhitespace(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      switch (text.charAt(i)) {
+        case ' ': case '\t': case '\n': case '\u000B': case '\f': case '\r':
+          break;
+        default:
+          return false;
+      }
+    }
+    return !text.isEmpty();
+  }
+
+  private static class Attribute {
+    private static final Comparator<Attribute> BY_NAME = new Comparator<Attribute>() {
+      @Override
+      public int compare(Attribute a, Attribute b) {
+        return a.name.compareTo(b.name);
+      }
+    };
+
+    final String namespace;
+    final String name;
+    final String localName;
+    final String value;
+
+    Attribute(String namespace, String name, String localName, String value) {
+      this.namespace = namespace;
+      this.name = name;
+      this.localName = localName;
+      this.value = value;
+    }
+  }
+
+  private static class Builder {
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private int[] nodes = new int[16 * NODE_SIZE];
+    private int[] lastChildren = new int[16];
+    private int nodeCount;
+    private int[] attributes = new int[16 * ATTRIBUTE_SIZE];
+    private int attributeCount;
+
+    void addElement(Element element, int parent) {
+      int node = addNode(ELEMENT, element.getNodeName(), element.getNamespaceURI(), element.getLocalName(), parent);
+
+      NamedNodeMap attributeNodes = element.getAttributes();
+      List<Attribute> elementAttributes = new ArrayList<>(attributeNodes.getLength());
+      for (int i = 0; i < attributeNodes.getLength(); i++) {
+        Node attribute = attributeNodes.item(i);
+        String localName = attribute.getLocalName() == null ? attribute.getNodeName() : attribute.getLocalName();
+        elementAttributes.add(new Attribute(attribute.getNamespaceURI(), attribute.getNodeName(), localName, attribute.getNodeValue()));
+      }
+      setAttributes(node, elementAttributes);
+
+      for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+        switch (child.getNodeType()) {
+          case Node.ELEMENT_NODE:
+            addElement((Element) child, node);
+            break;
+          case Node.TEXT_NODE:
+            addText(TEXT, child.getNodeValue(), node);
+            break;
+          case Node.CDATA_SECTION_NODE:
+            addText(CDATA, child.getNodeValue(), node);
+            break;
+          default:
+            // comments and processing instructions are never reported
+        }
+      }
+    }
+
+    void addText(int kind, String text, int parent) {
+      if (kind != TEXT || !isWhitespace(text)) {
+        addNode(kind, text, null, null, parent);
+      }
+    }
+
+    int addNode(int kind, String name, String namespace, String localName, int parent) {
+      int node = nodeCount++;
+      if (nodeCount * NODE_SIZE > nodes.length) {
+        nodes = Arrays.copyOf(nodes, nodes.length * 2);
+        lastChildren = Arrays.copyOf(lastChildren, lastChildren.length * 2);
+      }
+
+      int offset = node * NODE_SIZE;
+      nodes[offset + KIND] = kind;
+      nodes[offset + NAME] = intern(name);
+      nodes[offset + NAMESPACE] = intern(namespace);
+      nodes[offset + LOCAL_NAME] = intern(localName);
+      nodes[offset + PARENT] = parent;
+      nodes[offset + FIRST_CHILD] = -1;
+      nodes[offset + NEXT_SIBLING] = -1;
+      nodes[offset + FIRST_ATTRIBUTE] = 0;
+      nodes[offset + ATTRIBUTE_COUNT] = kind == ELEMENT ? 0 : -1;
+      lastChildren[node] = -1;
+
+      if (parent != -1) {
+        int lastChild = lastChildren[parent];
+        if (lastChild == -1) {
+          nodes[parent * NODE_SIZE + FIRST_CHILD] = node;
+        } else {
+          nodes[lastChild * NODE_SIZE + NEXT_SIBLING] = node;
+        }
+        lastChildren[parent] = node;
+      }
+      return node;
+    }
+
+    void setAttributes(int node, List<Attribute> elementAttributes) {
+      Collections.sort(elementAttributes, Attribute.BY_NAME);
+
+      nodes[node * NODE_SIZE + FIRST_ATTRIBUTE] = attributeCount;
+      nodes[node * NODE_SIZE + ATTRIBUTE_COUNT] = elementAttributes.size();
+      for (Attribute attribute : elementAttributes) {
+        int offset = attributeCount++ * ATTRIBUTE_SIZE;
+        if (offset + ATTRIBUTE_SIZE > attributes.length) {
+          attributes = Arrays.copyOf(attributes, attributes.length * 2);
+        }
+        attributes[offset + ATTRIBUTE_NAMESPACE] = intern(attribute.namespace);
+        attributes[offset + ATTRIBUTE_NAME] = intern(attribute.name);
+        attributes[offset + ATTRIBUTE_LOCAL_NAME] = intern(attribute.localName);
+        attributes[offset + ATTRIBUTE_VALUE] = intern(attribute.value);
+      }
+    }
+
+    private int intern(String string) {
+      if (string == null) {
+        return -1;
+      }
+      Integer index = stringIndexes.get(string);
+      if (index == null) {
+        index = strings.size();
+        strings.add(string);
+        stringIndexes.put(string, index);
+      }
+      return index;
+    }
+
+    CompiledXml build() {
+      return new CompiledXml(
+          strings.toArray(new String[strings.size()]),
+          Arrays.copyOf(nodes, nodeCount * NODE_SIZE),
+          Arrays.copyOf(attributes, attributeCount * ATTRIBUTE_SIZE));
+    }
+  }
+
+  /**
+   * Walks the tokens of a VTD-parsed document, which are in document order and know the depth of the element
+   * they belong to, keeping track of the open elements and the namespaces they declare.
+   */
+  private static class VtdCompiler {
+    private final VTDNav vtdNav;
+    private final Builder builder = new Builder();
+    private final List<Integer> openElements = new ArrayList<>();
+    private final List<Map<String, String>> openNamespaces = new ArrayList<>();
+
+    VtdCompiler(VTDNav vtdNav) {
+      this.vtdNav = vtdNav;
+    }
+
+    CompiledXml compile() throws NavException {
+      int tokenCount = vtdNav.getTokenCount();
+      int token = 0;
+      while (token < tokenCount) {
+        int depth = vtdNav.getTokenDepth(token);
+        switch (vtdNav.getTokenType(token)) {
+          case VTDNav.TOKEN_STARTING_TAG:
+            token = addElement(token, depth);
+            continue;
+          case VTDNav.TOKEN_CHARACTER_DATA:
+            if (depth >= 0) {
+              closeElementsDeeperThan(depth);
+              String text = resolveReferences(normalizeLineEnds(vtdNav.toRawString(token)));
+              builder.addText(TEXT, text, openElements.get(depth));
+            }
+            break;
+          case VTDNav.TOKEN_CDATA_VAL:
+            if (depth >= 0) {
+              closeElementsDeeperThan(depth);
+              builder.addText(CDATA, normalizeLineEnds(vtdNav.toRawString(token)), openElements.get(depth));
+            }
+            break;
+          default:
+            // comments, processing instructions and the XML declaration are never reported
+        }
+        token++;
+      }
+      return builder.build();
+    }
+
+    private int addElement(int token, int depth) throws NavException {
+      closeElementsDeeperThan(depth - 1);
+      String name = vtdNav.toRawString(token);
+
+      List<String[]> rawAttributes = new ArrayList<>();
+      Map<String, String> namespaces = new HashMap<>();
+      int next = token + 1;
+      while (next < vtdNav.getTokenCount() && isAttributeName(vtdNav.getTokenType(next))) {
+        String attributeName = vtdNav.toRawString(next);
+        String value = resolveReferences(normalizeAttributeValue(vtdNav.toRawString(next + 1)));
+        if (attributeName.equals("xmlns")) {
+          namespaces.put("", value);
+        } else if (attributeName.startsWith("xmlns:")) {
+          namespaces.put(attributeName.substring("xmlns:".length()), value);
+        }
+        rawAttributes.add(new String[] {attributeName, value});
+        next += 2;
+      }
+      openNamespaces.add(namespaces);
+
+      int parent = depth == 0 ? -1 : openElements.get(depth - 1);
+      int node = builder.addNode(ELEMENT, name, resolve(prefixOf(name), true), localNameOf(name), parent);
+      openElements.add(node);
+
+      List<Attribute> attributes = new ArrayList<>(rawAttributes.size());
+      for (String[] rawAttribute : rawAttributes) {
+        String attributeName = rawAttribute[0];
+        String namespace;
+        String localName;
+        if (attributeName.equals("xmlns")) {
+          namespace = XMLNS_NS;
+          localName = attributeName;
+        } else if (attributeName.startsWith("xmlns:")) {
+          namespace = XMLNS_NS;
+          localName = localNameOf(attributeName);
+        } else {
+          String prefix = prefixOf(attributeName);
+          namespace = prefix == null ? null : resolve(prefix, false);
+          localName = localNameOf(attributeName);
+        }
+        attributes.add(new Attribute(namespace, attributeName, localName, rawAttribute[1]));
+      }
+      builder.setAttributes(node, attributes);
+      return next;
+    }
+
+    private void closeElementsDeeperThan(int depth) {
+      while (openElements.size() > depth + 1) {
+        openElements.remove(openElements.size() - 1);
+        openNamespaces.remove(openNamespaces.size() - 1);
+      }
+    }
+
+    private String resolve(String prefix, boolean useDefault) {
+      if (prefix == null && !useDefault) {
+        return null;
+      }
+      if ("xml".equals(prefix)) {
+        return XML_NS;
+      }
+      String key = prefix == null ? "" : prefix;
+      for (int i = openNamespaces.size() - 1; i >= 0; i--) {
+        String namespace = openNamespaces.get(i).get(key);
+        if (namespace != null) {
+          return namespace.isEmpty() ? null : namespace;
+        }
+      }
+      return null;
+    }
+
+    private static boolean isAttributeName(int tokenType) {
+      return tokenType == VTDNav.TOKEN_ATTR_NAME || tokenType == VTDNav.TOKEN_ATTR_NS;
+    }
+
+    private static String prefixOf(String name) {
+      int colon = name.indexOf(':');
+      return colon == -1 ? null : name.substring(0, colon);
+    }
+
+    private static String localNameOf(String name) {
+      return name.substring(name.indexOf(':') + 1);
+    }
+
+    // parsers are required to report all line ends as \n
+    private static String normalizeLineEnds(String text) {
+      return text.indexOf('\r') == -1 ? text : text.replace("\r\n", "\n").replace('\r', '\n');
+    }
+
+    // ...and whitespace in attribute values as spaces
+    private static String normalizeAttributeValue(String value) {
+      return normalizeLineEnds(value).replace('\n', ' ').replace('\t', ' ');
+    }
+
+    // ...which happens before references are resolved, so "a&#10;b" keeps its newline
+    private static String resolveReferences(String text) {
+      int ampersand = text.indexOf('&');
+      if (ampersand == -1) {
+        return text;
+      }
+
+      StringBuilder resolved = new StringBuilder(text.length());
+      int start = 0;
+      while (ampersand != -1) {
+        int semicolon = text.indexOf(';', ampersand);
+        if (semicolon == -1) {
+          throw new IllegalArgumentException("unterminated reference in \"" + text + "\"");
+        }
+        resolved.append(text, start, ampersand).append(resolveReference(text.substring(ampersand + 1, semicolon)));
+        start = semicolon + 1;
+        ampersand = text.indexOf('&', start);
+      }
+      return resolved.append(text, start, text.length()).toString();
+    }
+
+    private static String resolveReference(String reference) {
+      switch (reference) {
+        case "lt": return "<";
+        case "gt": return ">";
+        case "amp": return "&";
+        case "quot": return "\"";
+        case "apos": return "'";
+        default:
+          if (reference.startsWith("#x")) {
+            return new String(Character.toChars(Integer.parseInt(reference.substring(2), 16)));
+          } else if (reference.startsWith("#")) {
+            return new String(Character.toChars(Integer.parseInt(reference.substring(1))));
+          }
+          throw new IllegalArgumentException("unknown entity &" + reference + ";");
+      }
+    }
+  }
+}
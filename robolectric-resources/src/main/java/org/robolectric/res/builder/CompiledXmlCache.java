@@ -0,0 +1,115 @@
+package org.robolectric.res.builder;
+
+import com.ximpleware.VTDGen;
+import org.robolectric.res.FileFsFile;
+import org.robolectric.res.FsFile;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least recently used cache of compiled XML files, bounded by their approximate size in bytes.
+ *
+ * The limit is set by the {@code robolectric.xmlCache.bytes} system property, and defaults to 32MB.
+ * The cache is shared by every {@link XmlBlock} in the JVM, so it doesn't grow with the number of SDK
+ * environments tests run against.
+ */
+public class CompiledXmlCache {
+  private static final CompiledXmlCache INSTANCE =
+      new CompiledXmlCache(Long.getLong("robolectric.xmlCache.bytes", 32L * 1024 * 1024));
+
+  private static final ThreadLocal<VTDGen> vtdGens = new ThreadLocal<VTDGen>() {
+    @Override
+    protected VTDGen initialValue() {
+      return new VTDGen();
+    }
+  };
+
+  private final long capacity;
+  // keyed by absolute path; FsFile's equals and hashCode can mean resolving the canonical file on every lookup
+  private final LinkedHashMap<String, CompiledXml> compiledFiles = new LinkedHashMap<>(16, 0.75f, true);
+  private long size;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public CompiledXmlCache(long capacity) {
+    this.capacity = capacity;
+  }
+
+  public static CompiledXmlCache getInstance() {
+    return INSTANCE;
+  }
+
+  public CompiledXml get(FsFile file) {
+    String key = keyFor(file);
+    synchronized (this) {
+      CompiledXml compiledXml = compiledFiles.get(key);
+      if (compiledXml != null) {
+        hits++;
+        return compiledXml;
+      }
+      misses++;
+    }
+
+    // compiled outside the lock, so a slow file doesn't hold up other threads
+    CompiledXml compiledXml = compile(file);
+    synchronized (this) {
+      CompiledXml previous = compiledFiles.put(key, compiledXml);
+      if (previous != null) {
+        size -= previous.getByteCount();
+      }
+      size += compiledXml.getByteCount();
+      evict();
+    }
+    return compiledXml;
+  }
+
+  public synchronized long getSize() {
+    return size;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized void clear() {
+    compiledFiles.clear();
+    size = 0;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<String, CompiledXml>> iterator = compiledFiles.entrySet().iterator();
+    while (size > capacity && iterator.hasNext()) {
+      size -= iterator.next().getValue().getByteCount();
+      iterator.remove();
+      evictions++;
+    }
+  }
+
+  private static String keyFor(FsFile file) {
+    // paths of jar entries already name their jar
+    return file instanceof FileFsFile ? new File(file.getPath()).getAbsolutePath() : file.getPath();
+  }
+
+  private static CompiledXml compile(FsFile file) {
+    try {
+      VTDGen vtdGen = vtdGens.get();
+      vtdGen.setDoc(file.getBytes());
+      vtdGen.parse(true);
+      return CompiledXml.from(vtdGen.getNav());
+    } catch (Exception e) {
+      throw new RuntimeException("couldn't compile " + file.getPath(), e);
+    }
+  }
+}
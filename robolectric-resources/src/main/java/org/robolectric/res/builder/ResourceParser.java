@@ -9,7 +9,7 @@ import org.w3c.dom.Document;
 public class ResourceParser {
 
   public static XmlResourceParser from(XmlBlock block, String applicationPackageName, ResourceLoader resourceLoader) {
-    return new XmlResourceParserImpl(block.getDocument(), block.getFilename(), block.getPackageName(),
+    return new XmlResourceParserImpl(block.getCompiledXml(), block.getFilename(), block.getPackageName(),
         applicationPackageName, resourceLoader);
   }
 
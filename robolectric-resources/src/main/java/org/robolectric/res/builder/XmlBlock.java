@@ -1,22 +1,35 @@
 package org.robolectric.res.builder;
 
+import org.robolectric.res.FsFile;
 import org.w3c.dom.Document;
 
 /**
  * An XML block is a parsed representation of a resource XML file. Similar in nature
  * to Android's XmlBlock class.
+ *
+ * <p>Blocks created from a file are compiled the first time they're used, and kept in the
+ * {@link CompiledXmlCache} rather than by the block, so loading resources doesn't hold on to every XML file.
  */
 public class XmlBlock {
-  private final Document document;
+  private final CompiledXml compiledXml;
+  private final FsFile file;
   private final String filename;
   private final String packageName;
 
   public static XmlBlock create(Document document, String file, String packageName) {
-    return new XmlBlock(document, file, packageName);
+    return create(CompiledXml.from(document), file, packageName);
   }
 
-  public Document getDocument() {
-    return document;
+  public static XmlBlock create(CompiledXml compiledXml, String file, String packageName) {
+    return new XmlBlock(compiledXml, null, file, packageName);
+  }
+
+  public static XmlBlock create(FsFile file, String packageName) {
+    return new XmlBlock(null, file, file.getPath(), packageName);
+  }
+
+  public CompiledXml getCompiledXml() {
+    return compiledXml != null ? compiledXml : CompiledXmlCache.getInstance().get(file);
   }
 
   public String getFilename() {
@@ -27,8 +40,9 @@ public class XmlBlock {
     return packageName;
   }
 
-  private XmlBlock(Document document, String filename, String packageName) {
-    this.document = document;
+  private XmlBlock(CompiledXml compiledXml, FsFile file, String filename, String packageName) {
+    this.compiledXml = compiledXml;
+    this.file = file;
     this.filename = filename;
     this.packageName = packageName;
   }
@@ -7,9 +7,6 @@ import org.robolectric.res.AttributeResource;
 import org.robolectric.res.ResName;
 import org.robolectric.res.ResourceLoader;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
@@ -17,13 +14,14 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Concrete implementation of the {@link XmlResourceParser}.
  *
  * <p>Clients expects a pull parser while the resource loader
- * initialise this object with a {@link Document}.
- * This implementation navigates the dom and emulates a pull
+ * initialise this object with a {@link CompiledXml}.
+ * This implementation navigates the compiled tree and emulates a pull
  * parser by raising all the opportune events.
  *
  * <p>Note that the original android implementation is based on
@@ -47,13 +45,13 @@ public class XmlResourceParserImpl implements XmlResourceParser {
       XmlResourceParser.FEATURE_VALIDATION
   };
 
-  private final Document document;
+  private final CompiledXml xml;
   private final String fileName;
   private final String packageName;
   private final ResourceLoader resourceLoader;
   private final String applicationNamespace;
 
-  private Node currentNode;
+  private int currentNode = -1;
 
   private boolean mStarted = false;
   private boolean mDecNextDepth = false;
@@ -62,7 +60,12 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   public XmlResourceParserImpl(Document document, String fileName, String packageName,
                                String applicationPackageName, ResourceLoader resourceLoader) {
-    this.document = document;
+    this(CompiledXml.from(document), fileName, packageName, applicationPackageName, resourceLoader);
+  }
+
+  public XmlResourceParserImpl(CompiledXml xml, String fileName, String packageName,
+                               String applicationPackageName, ResourceLoader resourceLoader) {
+    this.xml = xml;
     this.fileName = fileName;
     this.packageName = packageName;
     this.resourceLoader = resourceLoader;
@@ -165,10 +168,10 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   @Override
   public String getText() {
-    if (currentNode == null) {
+    if (currentNode == -1) {
       return "";
     }
-    return currentNode.getTextContent();
+    return xml.getText(currentNode);
   }
 
   @Override
@@ -221,7 +224,7 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   @Override
   public String getNamespace() {
-    String namespace = currentNode != null ? currentNode.getNamespaceURI() : null;
+    String namespace = currentNode != -1 ? xml.getNamespace(currentNode) : null;
     if (namespace == null) {
       return "";
     }
@@ -231,46 +234,34 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   @Override
   public String getName() {
-    if (currentNode == null) {
+    if (currentNode == -1) {
       return "";
     }
-    return currentNode.getNodeName();
+    return xml.getName(currentNode);
   }
 
-  Node getAttributeAt(int index) {
-    if (currentNode == null) {
-      throw new IndexOutOfBoundsException(String.valueOf(index));
-    }
-    NamedNodeMap map = currentNode.getAttributes();
-    if (index >= map.getLength()) {
+  private void checkAttributeIndex(int index) {
+    if (currentNode == -1 || index < 0 || index >= xml.getAttributeCount(currentNode)) {
       throw new IndexOutOfBoundsException(String.valueOf(index));
     }
-    return map.item(index);
   }
 
   String getAttribute(String namespace, String name) {
-    if (currentNode == null) {
+    if (currentNode == -1 || xml.getKind(currentNode) != CompiledXml.ELEMENT) {
       return null;
     }
 
-    Element element = (Element) currentNode;
-    if (element.hasAttributeNS(namespace, name)) {
-      return element.getAttributeNS(namespace, name).trim();
-    } else if (applicationNamespace.equals(namespace)
-        && element.hasAttributeNS(AttributeResource.RES_AUTO_NS_URI, name)) {
-      return element.getAttributeNS(AttributeResource.RES_AUTO_NS_URI, name).trim();
+    String value = xml.getAttributeValue(currentNode, namespace, name);
+    if (value == null && applicationNamespace.equals(namespace)) {
+      value = xml.getAttributeValue(currentNode, AttributeResource.RES_AUTO_NS_URI, name);
     }
-
-    return null;
+    return value == null ? null : value.trim();
   }
 
   @Override
   public String getAttributeNamespace(int index) {
-    Node attr = getAttributeAt(index);
-    if (attr == null) {
-      return null;
-    }
-    return maybeReplaceNamespace(attr.getNamespaceURI());
+    checkAttributeIndex(index);
+    return maybeReplaceNamespace(xml.getAttributeNamespace(currentNode, index));
   }
 
   private String maybeReplaceNamespace(String namespace) {
@@ -284,11 +275,11 @@ public class XmlResourceParserImpl implements XmlResourceParser {
   @Override
   public String getAttributeName(int index) {
     try {
-      Node attr = getAttributeAt(index);
-      String namespace = maybeReplaceNamespace(attr.getNamespaceURI());
+      checkAttributeIndex(index);
+      String namespace = maybeReplaceNamespace(xml.getAttributeNamespace(currentNode, index));
       return applicationNamespace.equals(namespace) ?
-        attr.getLocalName() :
-        attr.getNodeName();
+        xml.getAttributeLocalName(currentNode, index) :
+        xml.getAttributeName(currentNode, index);
     } catch (IndexOutOfBoundsException ex) {
       return null;
     }
@@ -308,15 +299,16 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   @Override
   public int getAttributeCount() {
-    if (currentNode == null) {
+    if (currentNode == -1) {
       return -1;
     }
-    return currentNode.getAttributes().getLength();
+    return xml.getAttributeCount(currentNode);
   }
 
   @Override
   public String getAttributeValue(int index) {
-    return qualify(getAttributeAt(index).getNodeValue());
+    checkAttributeIndex(index);
+    return qualify(xml.getAttributeValue(currentNode, index));
   }
 
   // for testing only...
@@ -428,14 +420,14 @@ public class XmlResourceParserImpl implements XmlResourceParser {
             "PROCESSING_INSTRUCTION");
       }
       case (START_DOCUMENT): {
-        currentNode = document.getDocumentElement();
+        currentNode = 0;
         return START_TAG;
       }
       case (START_TAG): {
-        if (currentNode.hasChildNodes()) {
+        int firstChild = xml.getFirstChild(currentNode);
+        if (firstChild != -1) {
           // The node has children, navigate down
-          return processNextNodeType(
-              currentNode.getFirstChild());
+          return processNextNodeType(firstChild);
         } else {
           // The node has no children
           return END_TAG;
@@ -454,56 +446,24 @@ public class XmlResourceParserImpl implements XmlResourceParser {
 
   }
 
-  /*protected*/ int processNextNodeType(Node node)
+  /*protected*/ int processNextNodeType(int node)
       throws XmlPullParserException {
-    switch (node.getNodeType()) {
-      case (Node.ATTRIBUTE_NODE): {
-        throw new IllegalArgumentException("ATTRIBUTE_NODE");
-      }
-      case (Node.CDATA_SECTION_NODE): {
+    switch (xml.getKind(node)) {
+      case (CompiledXml.CDATA): {
         return navigateToNextNode(node);
       }
-      case (Node.COMMENT_NODE): {
-        return navigateToNextNode(node);
-      }
-      case (Node.DOCUMENT_FRAGMENT_NODE): {
-        throw new IllegalArgumentException("DOCUMENT_FRAGMENT_NODE");
-      }
-      case (Node.DOCUMENT_NODE): {
-        throw new IllegalArgumentException("DOCUMENT_NODE");
-      }
-      case (Node.DOCUMENT_TYPE_NODE): {
-        throw new IllegalArgumentException("DOCUMENT_TYPE_NODE");
-      }
-      case (Node.ELEMENT_NODE): {
+      case (CompiledXml.ELEMENT): {
         currentNode = node;
         return START_TAG;
       }
-      case (Node.ENTITY_NODE): {
-        throw new IllegalArgumentException("ENTITY_NODE");
-      }
-      case (Node.ENTITY_REFERENCE_NODE): {
-        throw new IllegalArgumentException("ENTITY_REFERENCE_NODE");
-      }
-      case (Node.NOTATION_NODE): {
-        throw new IllegalArgumentException("DOCUMENT_TYPE_NODE");
-      }
-      case (Node.PROCESSING_INSTRUCTION_NODE): {
-        throw new IllegalArgumentException("DOCUMENT_TYPE_NODE");
-      }
-      case (Node.TEXT_NODE): {
-        if (isWhitespace(node.getNodeValue())) {
-          // Skip whitespaces
-          return navigateToNextNode(node);
-        } else {
-          currentNode = node;
-          return TEXT;
-        }
+      case (CompiledXml.TEXT): {
+        currentNode = node;
+        return TEXT;
       }
       default: {
         throw new RuntimeException(
             "Robolectric -> Unknown node type: " +
-                node.getNodeType() + ".");
+                xml.getKind(node) + ".");
       }
     }
   }
@@ -524,19 +484,19 @@ public class XmlResourceParserImpl implements XmlResourceParser {
    * @throws XmlPullParserException if the parser fails to
    *                                parse the next node.
    */
-  int navigateToNextNode(Node node)
+  int navigateToNextNode(int node)
       throws XmlPullParserException {
-    Node nextNode = node.getNextSibling();
-    if (nextNode != null) {
+    int nextNode = xml.getNextSibling(node);
+    if (nextNode != -1) {
       // Move to the next siblings
       return processNextNodeType(nextNode);
     } else {
       // Goes back to the parent
-      if (document.getDocumentElement().equals(node)) {
-        currentNode = null;
+      if (node == 0) {
+        currentNode = -1;
         return END_DOCUMENT;
       }
-      currentNode = node.getParentNode();
+      currentNode = xml.getParent(node);
       return END_TAG;
     }
   }
@@ -810,6 +770,50 @@ public class XmlResourceParserImpl implements XmlResourceParser {
     return resourceLoader;
   }
 
+  /**
+   * Returns an object which is equal for any parsers positioned at the same node of the same document, which read its
+   * attributes the same way, or null before the parser has reached a node.
+   */
+  public Object getNodeKey() {
+    return currentNode == -1 ? null : new NodeKey(this);
+  }
+
+  private static final class NodeKey {
+    private final CompiledXml xml;
+    private final int node;
+    private final String packageName;
+    private final String applicationNamespace;
+    private final ResourceLoader resourceLoader;
+
+    NodeKey(XmlResourceParserImpl parser) {
+      this.xml = parser.xml;
+      this.node = parser.currentNode;
+      this.packageName = parser.packageName;
+      this.applicationNamespace = parser.applicationNamespace;
+      this.resourceLoader = parser.resourceLoader;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof NodeKey)) return false;
+      NodeKey nodeKey = (NodeKey) o;
+      return xml == nodeKey.xml
+          && node == nodeKey.node
+          && resourceLoader == nodeKey.resourceLoader
+          && Objects.equals(packageName, nodeKey.packageName)
+          && applicationNamespace.equals(nodeKey.applicationNamespace);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = System.identityHashCode(xml);
+      result = 31 * result + node;
+      result = 31 * result + Objects.hashCode(packageName);
+      return result;
+    }
+  }
+
   /**
    * Tell is a given feature is supported by android.
    *
@@ -94,7 +94,7 @@ public class Converter<T> {
             continue;
           }
           if (resolveRefs) {
-            getConverter(dereferencedRef.getResType()).fillTypedValue(attribute.value, outValue);
+            getConverter(dereferencedRef.getResType()).fillTypedValueFrom(dereferencedRef, outValue);
             return;
           }
         }
@@ -107,20 +107,42 @@ public class Converter<T> {
       return;
     }
 
+    ConvertedValue convertedValue = attribute.getConvertedValue(attrData);
+    if (convertedValue != null) {
+      fill(convertedValue, outValue);
+      return;
+    }
+
     String format = attrData.getFormat();
     String[] types = format.split("\\|");
+    boolean anyFailed = false;
     for (String type : types) {
       if ("reference".equals(type)) continue; // already handled above
       Converter converter = getConverterFor(attrData, type);
 
       if (converter != null) {
         if (converter.fillTypedValue(attribute.value, outValue)) {
+          // failed conversions may have changed outValue too, so only remember the first one
+          convertedValue = anyFailed ? null : converter.remember(attrData, outValue);
+          if (convertedValue != null) {
+            attribute.setConvertedValue(convertedValue);
+          }
           return;
         }
+        anyFailed = true;
       }
     }
   }
 
+  private static void fill(ConvertedValue convertedValue, TypedValue typedValue) {
+    typedValue.type = convertedValue.type;
+    typedValue.data = convertedValue.data;
+    if (convertedValue.clearsStringAndCookie) {
+      typedValue.assetCookie = 0;
+      typedValue.string = null;
+    }
+  }
+
   private static Converter getConverterFor(AttrData attrData, String type) {
     switch (type) {
       case "enum":
@@ -195,6 +217,36 @@ public class Converter<T> {
     return false;
   }
 
+  /**
+   * Like {@link #fillTypedValue(Object, TypedValue)}, but if this converter's results only depend on the data,
+   * converts it just once and remembers the result on {@code typedResource}. Results are keyed by class name, since
+   * resources are shared by every SDK and mustn't hold on to the class loaders converters come from.
+   */
+  public boolean fillTypedValueFrom(TypedResource<T> typedResource, TypedValue typedValue) {
+    ConvertedValue convertedValue = typedResource.getConvertedValue(getClass().getName());
+    if (convertedValue != null) {
+      fill(convertedValue, typedValue);
+      return true;
+    }
+
+    if (!fillTypedValue(typedResource.getData(), typedValue)) {
+      return false;
+    }
+    convertedValue = remember(getClass().getName(), typedValue);
+    if (convertedValue != null) {
+      typedResource.setConvertedValue(convertedValue);
+    }
+    return true;
+  }
+
+  /**
+   * Returns what to remember about {@code typedValue} after this converter has filled it in successfully, or null if
+   * it has to be converted again each time.
+   */
+  protected ConvertedValue remember(Object convertedBy, TypedValue typedValue) {
+    return null;
+  }
+
   private UnsupportedOperationException cantDo(String operation) {
     return new UnsupportedOperationException(getClass().getName() + " doesn't support " + operation);
   }
@@ -233,7 +285,27 @@ public class Converter<T> {
     }
   }
 
-  public static class FromColor extends Converter<String> {
+  /**
+   * Converts strings to numbers, which only depend on the string so they can be remembered.
+   */
+  abstract static class NumberConverter extends Converter<String> {
+    private final boolean clearsStringAndCookie;
+
+    NumberConverter(boolean clearsStringAndCookie) {
+      this.clearsStringAndCookie = clearsStringAndCookie;
+    }
+
+    @Override
+    protected ConvertedValue remember(Object convertedBy, TypedValue typedValue) {
+      return new ConvertedValue(convertedBy, typedValue.type, typedValue.data, clearsStringAndCookie);
+    }
+  }
+
+  public static class FromColor extends NumberConverter {
+    public FromColor() {
+      super(true);
+    }
+
     @Override
     public boolean fillTypedValue(String data, TypedValue typedValue) {
       try {
@@ -273,7 +345,11 @@ public class Converter<T> {
     }
   }
 
-  private static class FromInt extends Converter<String> {
+  private static class FromInt extends NumberConverter {
+    FromInt() {
+      super(true);
+    }
+
     @Override
     public boolean fillTypedValue(String data, TypedValue typedValue) {
       try {
@@ -293,7 +369,11 @@ public class Converter<T> {
     }
   }
 
-  private static class FromFraction extends Converter<String> {
+  private static class FromFraction extends NumberConverter {
+    FromFraction() {
+      super(false);
+    }
+
     @Override
     public boolean fillTypedValue(String data, TypedValue typedValue) {
       return ResourceHelper.parseFloatAttribute(null, data, typedValue, false);
@@ -311,14 +391,22 @@ public class Converter<T> {
     }
   }
 
-  private static class FromFloat extends Converter<String> {
+  private static class FromFloat extends NumberConverter {
+    FromFloat() {
+      super(false);
+    }
+
     @Override
     public boolean fillTypedValue(String data, TypedValue typedValue) {
       return ResourceHelper.parseFloatAttribute(null, data, typedValue, false);
     }
   }
 
-  private static class FromBoolean extends Converter<String> {
+  private static class FromBoolean extends NumberConverter {
+    FromBoolean() {
+      super(true);
+    }
+
     @Override
     public boolean fillTypedValue(String data, TypedValue typedValue) {
       typedValue.type = TypedValue.TYPE_INT_BOOLEAN;
@@ -341,7 +429,11 @@ public class Converter<T> {
     }
   }
 
-  private static class FromDimen extends Converter<String> {
+  private static class FromDimen extends NumberConverter {
+    FromDimen() {
+      super(false);
+    }
+
     @Override
     public boolean fillTypedValue(String data, TypedValue typedValue) {
       return ResourceHelper.parseFloatAttribute(null, data, typedValue, false);
@@ -404,10 +496,11 @@ public class Converter<T> {
     }
   }
 
-  private static class EnumOrFlagConverter extends Converter<String> {
+  private static class EnumOrFlagConverter extends NumberConverter {
     private final AttrData attrData;
 
     public EnumOrFlagConverter(AttrData attrData) {
+      super(true);
       this.attrData = attrData;
     }
 
@@ -20,18 +20,18 @@ import android.util.TypedValue;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.res.ResName;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Helper class to provide various conversion method used in handling android resources.
+ *
+ * Parsing doesn't use any shared state, so it's safe to call from any thread.
  */
 public final class ResourceHelper {
 
-  private final static Pattern sFloatPattern = Pattern.compile("(-?[0-9]+(?:\\.[0-9]+)?)(.*)");
-  private final static float[] sFloatOut = new float[1];
-
-  private final static TypedValue mValue = new TypedValue();
+  // floats which represent 10^n exactly
+  private final static float[] sPowersOfTen = {
+      1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+  };
+  private final static long sMaxExactMantissa = 1 << 24;
 
   /**
    * Returns the color value represented by the given string value
@@ -46,45 +46,49 @@ public final class ResourceHelper {
             String.format("Color value '%s' must start with #", value));
       }
 
-      value = value.substring(1);
+      int length = value.length() - 1;
 
       // make sure it's not longer than 32bit
-      if (value.length() > 8) {
+      if (length > 8) {
         throw new NumberFormatException(String.format(
             "Color value '%s' is too long. Format is either" +
             "#AARRGGBB, #RRGGBB, #RGB, or #ARGB",
-            value));
+            value.substring(1)));
       }
 
-      if (value.length() == 3) { // RGB format
-        char[] color = new char[8];
-        color[0] = color[1] = 'F';
-        color[2] = color[3] = value.charAt(0);
-        color[4] = color[5] = value.charAt(1);
-        color[6] = color[7] = value.charAt(2);
-        value = new String(color);
-      } else if (value.length() == 4) { // ARGB format
-        char[] color = new char[8];
-        color[0] = color[1] = value.charAt(0);
-        color[2] = color[3] = value.charAt(1);
-        color[4] = color[5] = value.charAt(2);
-        color[6] = color[7] = value.charAt(3);
-        value = new String(color);
-      } else if (value.length() == 6) {
-        value = "FF" + value;
+      if (length == 0) {
+        throw new NumberFormatException(String.format("Color value '%s' is empty", value));
       }
 
-      // this is a RRGGBB or AARRGGBB value
+      int color = 0;
+      for (int i = 1; i <= length; i++) {
+        int digit = Character.digit(value.charAt(i), 16);
+        if (digit < 0) {
+          throw new NumberFormatException(
+              String.format("Color value '%s' must be hexadecimal", value));
+        }
+        color = (color << 4) | digit;
+      }
 
-      // Integer.parseInt will fail to parse strings like "ff191919", so we use
-      // a Long, but cast the result back into an int, since we know that we're only
-      // dealing with 32 bit values.
-      return (int)Long.parseLong(value, 16);
+      if (length == 3) { // RGB format
+        return 0xff000000 | expandRgb(color);
+      } else if (length == 4) { // ARGB format
+        return (color >>> 12) * 0x11000000 | expandRgb(color & 0xfff);
+      } else if (length == 6) {
+        return 0xff000000 | color;
+      }
+
+      // this is a RRGGBB or AARRGGBB value
+      return color;
     }
 
     throw new NumberFormatException();
   }
 
+  private static int expandRgb(int rgb) {
+    return ((rgb >> 8) & 0xf) * 0x110000 | ((rgb >> 4) & 0xf) * 0x1100 | (rgb & 0xf) * 0x11;
+  }
+
   public static int getInternalResourceId(String idName) {
     return RuntimeEnvironment.getAppResourceLoader().getResourceIndex()
         .getResourceId(new ResName("android", "id", idName));
@@ -316,7 +320,6 @@ public final class ResourceHelper {
 
   /**
    * Returns the raw value from the given attribute float-type value string.
-   * This object is only valid until the next call on to {@link ResourceHelper}.
    *
    * @param attribute Attribute name.
    * @param value Attribute value.
@@ -324,8 +327,9 @@ public final class ResourceHelper {
    * @return The typed value.
    */
   public static TypedValue getValue(String attribute, String value, boolean requireUnit) {
-    if (parseFloatAttribute(attribute, value, mValue, requireUnit)) {
-      return mValue;
+    TypedValue typedValue = new TypedValue();
+    if (parseFloatAttribute(attribute, value, typedValue, requireUnit)) {
+      return typedValue;
     }
 
     return null;
@@ -344,74 +348,98 @@ public final class ResourceHelper {
     assert requireUnit == false || attribute != null;
 
     // remove the space before and after
-    value = value.trim();
-    int len = value.length();
+    int start = 0;
+    int end = value.length();
+    while (start < end && value.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && value.charAt(end - 1) <= ' ') {
+      end--;
+    }
 
-    if (len <= 0) {
+    if (start == end) {
       return false;
     }
 
-    // check that there's no non ascii characters.
-    char[] buf = value.toCharArray();
-    for (int i = 0 ; i < len ; i++) {
-      if (buf[i] > 255) {
-        return false;
-      }
+    // the float is -?[0-9]+(\.[0-9]+)?
+    int i = start;
+    boolean negative = value.charAt(i) == '-';
+    if (negative) {
+      i++;
     }
 
-    // check the first character
-    if (buf[0] < '0' && buf[0] > '9' && buf[0] != '.' && buf[0] != '-') {
+    int digitsStart = i;
+    long mantissa = 0;
+    while (i < end && isDigit(value.charAt(i))) {
+      mantissa = accumulate(mantissa, value.charAt(i++));
+    }
+    if (i == digitsStart) {
       return false;
     }
 
-    // now look for the string that is after the float...
-    Matcher m = sFloatPattern.matcher(value);
-    if (m.matches()) {
-      String f_str = m.group(1);
-      String end = m.group(2);
-
-      float f;
-      try {
-        f = Float.parseFloat(f_str);
-      } catch (NumberFormatException e) {
-        // this shouldn't happen with the regexp above.
-        return false;
+    int fractionDigits = 0;
+    if (i + 1 < end && value.charAt(i) == '.' && isDigit(value.charAt(i + 1))) {
+      i++;
+      while (i < end && isDigit(value.charAt(i))) {
+        mantissa = accumulate(mantissa, value.charAt(i++));
+        fractionDigits++;
       }
+    }
 
-      if (end.length() > 0 && end.charAt(0) != ' ') {
-        // Might be a unit...
-        if (parseUnit(end, outValue, sFloatOut)) {
-          computeTypedValue(outValue, f, sFloatOut[0]);
-          return true;
-        }
+    float f;
+    if (mantissa <= sMaxExactMantissa && fractionDigits < sPowersOfTen.length) {
+      // both operands are exact, so the division is correctly rounded just like Float.parseFloat()
+      f = mantissa / sPowersOfTen[fractionDigits];
+    } else {
+      f = Float.parseFloat(value.substring(digitsStart, i));
+    }
+    if (negative) {
+      f = -f;
+    }
+
+    if (i < end) {
+      if (value.charAt(i) == ' ') {
         return false;
       }
 
-      // make sure it's only spaces at the end.
-      end = end.trim();
-
-      if (end.length() == 0) {
-        if (outValue != null) {
-          if (requireUnit == false) {
-            outValue.type = TypedValue.TYPE_FLOAT;
-            outValue.data = Float.floatToIntBits(f);
-          } else {
-            // no unit when required? Use dp and out an error.
-            applyUnit(sUnitNames[1], outValue, sFloatOut);
-            computeTypedValue(outValue, f, sFloatOut[0]);
-
-            System.out.println(String.format(
-                "Dimension \"%1$s\" in attribute \"%2$s\" is missing unit!",
-                    value, attribute));
-          }
-          return true;
-        }
+      // Might be a unit...
+      UnitEntry unit = parseUnit(value, i, end);
+      if (unit != null) {
+        applyUnit(unit, outValue);
+        computeTypedValue(outValue, f, unit.scale);
+        return true;
+      }
+      return false;
+    }
+
+    if (outValue != null) {
+      if (requireUnit == false) {
+        outValue.type = TypedValue.TYPE_FLOAT;
+        outValue.data = Float.floatToIntBits(f);
+      } else {
+        // no unit when required? Use dp and out an error.
+        applyUnit(sUnitNames[1], outValue);
+        computeTypedValue(outValue, f, sUnitNames[1].scale);
+
+        System.out.println(String.format(
+            "Dimension \"%1$s\" in attribute \"%2$s\" is missing unit!",
+                value, attribute));
       }
+      return true;
     }
 
     return false;
   }
 
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  // stops accumulating once the mantissa is too big to be exact; Float.parseFloat() is used then
+  private static long accumulate(long mantissa, char digit) {
+    return mantissa > sMaxExactMantissa ? mantissa : mantissa * 10 + (digit - '0');
+  }
+
   private static void computeTypedValue(TypedValue outValue, float value, float scale) {
     value *= scale;
     boolean neg = value < 0;
@@ -453,23 +481,22 @@ public final class ResourceHelper {
       | (mantissa<<TypedValue.COMPLEX_MANTISSA_SHIFT);
   }
 
-  private static boolean parseUnit(String str, TypedValue outValue, float[] outScale) {
-    str = str.trim();
+  private static UnitEntry parseUnit(String str, int start, int end) {
+    while (start < end && str.charAt(start) <= ' ') {
+      start++;
+    }
 
     for (UnitEntry unit : sUnitNames) {
-      if (unit.name.equals(str)) {
-        applyUnit(unit, outValue, outScale);
-        return true;
+      if (unit.name.length() == end - start && str.regionMatches(start, unit.name, 0, end - start)) {
+        return unit;
       }
     }
 
-    return false;
+    return null;
   }
 
-  private static void applyUnit(UnitEntry unit, TypedValue outValue, float[] outScale) {
+  private static void applyUnit(UnitEntry unit, TypedValue outValue) {
     outValue.type = unit.type;
     outValue.data = unit.unit << TypedValue.COMPLEX_UNIT_SHIFT;
-    outScale[0] = unit.scale;
   }
 }
-
@@ -60,4 +60,35 @@ public class QualifiersTest {
     assertThat(Qualifiers.addScreenWidth("v7", 320)).isEqualTo("v7-w320dp");
     assertThat(Qualifiers.addScreenWidth("w320dp-v7", 480)).isEqualTo("w320dp-v7");
   }
+
+  @Test public void matches() {
+    assertThat(Qualifiers.parse("en").matches(Qualifiers.parse("en-rUS-port"))).isTrue();
+    assertThat(Qualifiers.parse("en-rGB").matches(Qualifiers.parse("en-rUS-port"))).isFalse();
+    assertThat(Qualifiers.parse("b+en+US").matches(Qualifiers.parse("en-rUS-port"))).isTrue();
+    assertThat(Qualifiers.parse("land").matches(Qualifiers.parse("en-rUS-port"))).isFalse();
+    assertThat(Qualifiers.parse("night").matches(Qualifiers.parse("en-rUS-port"))).isFalse();
+    assertThat(Qualifiers.parse("xxhdpi").matches(Qualifiers.parse("mdpi"))).isTrue();
+    assertThat(Qualifiers.parse("large").matches(Qualifiers.parse("normal"))).isFalse();
+    assertThat(Qualifiers.parse("normal").matches(Qualifiers.parse("large"))).isTrue();
+    assertThat(Qualifiers.parse("custom").matches(Qualifiers.parse("en-custom"))).isTrue();
+    assertThat(Qualifiers.parse("custom").matches(Qualifiers.parse("en-other"))).isFalse();
+  }
+
+  @Test public void isBetterThan_shouldFollowQualifierPrecedence() {
+    Qualifiers context = Qualifiers.parse("mcc310-en-rUS-ldrtl-sw320dp-port-night-hdpi-finger-v21");
+    assertThat(Qualifiers.parse("mcc310").isBetterThan(Qualifiers.parse("en-rUS"), context)).isTrue();
+    assertThat(Qualifiers.parse("en").isBetterThan(Qualifiers.parse("ldrtl-sw320dp"), context)).isTrue();
+    assertThat(Qualifiers.parse("en-rUS").isBetterThan(Qualifiers.parse("en"), context)).isTrue();
+    assertThat(Qualifiers.parse("sw300dp").isBetterThan(Qualifiers.parse("sw200dp-port"), context)).isTrue();
+    assertThat(Qualifiers.parse("port").isBetterThan(Qualifiers.parse("night-hdpi"), context)).isTrue();
+    assertThat(Qualifiers.parse("hdpi").isBetterThan(Qualifiers.parse("finger"), context)).isTrue();
+    assertThat(Qualifiers.parse("finger").isBetterThan(Qualifiers.parse("v21"), context)).isTrue();
+    assertThat(Qualifiers.parse("v21").isBetterThan(Qualifiers.parse("v14"), context)).isTrue();
+    assertThat(Qualifiers.parse("port").isBetterThan(Qualifiers.parse("port"), context)).isFalse();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void parse_shouldNotAllowTwoVersions() {
+    Qualifiers.parse("v11-en-v12");
+  }
 }
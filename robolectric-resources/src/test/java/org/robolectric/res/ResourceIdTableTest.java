@@ -0,0 +1,45 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class ResourceIdTableTest {
+  @Test public void shouldMapNamesAndIdsBothWays() {
+    ResourceIdTable.Builder builder = new ResourceIdTable.Builder();
+    for (int i = 0; i < 1000; i++) {
+      builder.put(new ResName("pkg", "id", "id" + i), 0x7f010000 + i * 7);
+    }
+    ResourceIdTable resourceIdTable = builder.build();
+
+    assertThat(resourceIdTable.size()).isEqualTo(1000);
+    assertThat(resourceIdTable.getMaxId()).isEqualTo(0x7f010000 + 999 * 7);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(resourceIdTable.getId(new ResName("pkg", "id", "id" + i))).isEqualTo(0x7f010000 + i * 7);
+      assertThat(resourceIdTable.getName(0x7f010000 + i * 7)).isEqualTo(new ResName("pkg", "id", "id" + i));
+    }
+    assertThat(resourceIdTable.getId(new ResName("pkg", "id", "id1000"))).isNull();
+    assertThat(resourceIdTable.getId(new ResName("other", "id", "id1"))).isNull();
+    assertThat(resourceIdTable.getName(0x7f010001)).isNull();
+  }
+
+  @Test public void shouldIterateInIdOrder() {
+    ResourceIdTable resourceIdTable = new ResourceIdTable.Builder()
+        .put(new ResName("pkg", "string", "b"), 0x7f020002)
+        .put(new ResName("pkg", "string", "a"), 0x7f020001)
+        .build();
+
+    assertThat(resourceIdTable.getIdAt(0)).isEqualTo(0x7f020001);
+    assertThat(resourceIdTable.getNameAt(0)).isEqualTo(new ResName("pkg", "string", "a"));
+    assertThat(resourceIdTable.getIdAt(1)).isEqualTo(0x7f020002);
+  }
+
+  @Test public void emptyTableShouldFindNothing() {
+    assertThat(ResourceIdTable.EMPTY.getId(new ResName("pkg", "id", "a"))).isNull();
+    assertThat(ResourceIdTable.EMPTY.getName(1)).isNull();
+    assertThat(ResourceIdTable.EMPTY.getMaxId()).isEqualTo(0);
+  }
+}
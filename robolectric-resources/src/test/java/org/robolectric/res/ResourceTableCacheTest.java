@@ -0,0 +1,161 @@
+package org.robolectric.res;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class ResourceTableCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ResourcePath resourcePath;
+  private ResourceTableCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    File resDir = temporaryFolder.newFolder("res");
+    writeValues(resDir, "values", "<string name=\"greeting\">hello</string>"
+        + "<style name=\"Theme_Mine\" parent=\"Theme\"><item name=\"android:textColor\">#fff</item></style>");
+    writeValues(resDir, "values-fr", "<string name=\"greeting\">bonjour</string>");
+    resourcePath = new ResourcePath(null, "my.pkg", Fs.newFile(resDir), null);
+    cache = new ResourceTableCache(temporaryFolder.newFolder("tables"));
+  }
+
+  @Test
+  public void shouldReloadStoredValues() throws Exception {
+    String key = cache.keyFor(resourcePath);
+    cache.store(key, parse());
+
+    ResBunch reloaded = new ResBunch();
+    assertThat(cache.load(key, reloaded)).isTrue();
+
+    ResName greeting = new ResName("my.pkg", "string", "greeting");
+    assertThat(reloaded.get(greeting, "").getData()).isEqualTo("hello");
+    assertThat(reloaded.get(greeting, "fr").getData()).isEqualTo("bonjour");
+
+    StyleData style = (StyleData) reloaded.get(new ResName("my.pkg", "style", "Theme_Mine"), "").getData();
+    assertThat(style.getParent()).isEqualTo("Theme");
+    assertThat(style.getAttrValue(new ResName("android", "attr", "textColor")).value).isEqualTo("#fff");
+  }
+
+  @Test
+  public void shouldDecodeOnlyTheTypesAskedFor() throws Exception {
+    String key = cache.keyFor(resourcePath);
+    cache.store(key, parse());
+
+    ResourceTableCache.Table table = cache.open(key);
+    assertThat(table.getTypes()).containsOnly("string", "style");
+    assertThat(table.getLoadedTypes()).isEmpty();
+
+    ResBunch data = new ResBunch();
+    table.load("string", data);
+    assertThat(table.getLoadedTypes()).containsOnly("string");
+    assertThat(data.getBundles().keySet()).containsOnly("string");
+    assertThat(data.get(new ResName("my.pkg", "string", "greeting"), "fr").getData()).isEqualTo("bonjour");
+
+    table.loadAll(data);
+    assertThat(table.getLoadedTypes()).containsOnly("string", "style");
+    assertThat(data.getBundles().keySet()).containsOnly("string", "style");
+    assertThat(data.getBundles().get("string").getValues().get(new ResName("my.pkg", "string", "greeting"))).hasSize(2);
+  }
+
+  @Test
+  public void shouldNotLoadMissingTable() throws Exception {
+    ResBunch data = new ResBunch();
+    assertThat(cache.load(cache.keyFor(resourcePath), data)).isFalse();
+    assertThat(data.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void keyShouldChangeWhenValuesChange() throws Exception {
+    String key = cache.keyFor(resourcePath);
+    writeValues(new File(resourcePath.getResourceBase().getPath()), "values", "<string name=\"greeting\">hi</string>");
+
+    assertThat(cache.keyFor(resourcePath)).isNotEqualTo(key);
+  }
+
+  @Test
+  public void keyShouldChangeWithRobolectricVersion() throws Exception {
+    File dir = temporaryFolder.newFolder("versioned");
+
+    String key = new ResourceTableCache(dir, "3.1").keyFor(resourcePath);
+    assertThat(new ResourceTableCache(dir, "3.1").keyFor(resourcePath)).isEqualTo(key);
+    assertThat(new ResourceTableCache(dir, "3.2").keyFor(resourcePath)).isNotEqualTo(key);
+  }
+
+  @Test
+  public void shouldKeyValuesInJarsByTheirChecksums() throws Exception {
+    File jar = writeJar("android-all.jar", "<string name=\"ok\">OK</string>");
+    File sameJar = writeJar("android-all-copy.jar", "<string name=\"ok\">OK</string>");
+    File otherJar = writeJar("android-all-other.jar", "<string name=\"ok\">Okay</string>");
+
+    String key = cache.keyFor(jarResourcePath(jar));
+    assertThat(cache.keyFor(jarResourcePath(sameJar))).isEqualTo(key);
+    assertThat(cache.keyFor(jarResourcePath(otherJar))).isNotEqualTo(key);
+  }
+
+  @Test
+  public void shouldKeepSystemResourceTablesInTheRobolectricCacheDir() throws Exception {
+    File jar = writeJar("android-all.jar", "<string name=\"ok\">OK</string>");
+    File robolectricCacheDir = temporaryFolder.newFolder("robolectric");
+    ResourcePath systemResourcePath = jarResourcePath(jar);
+    ResourceTableCache systemCache = ResourceTableCache.forSystemResources(robolectricCacheDir, "3.1");
+    String key = systemCache.keyFor(systemResourcePath);
+
+    ResBunch data = new ResBunch();
+    new DocumentLoader(systemResourcePath).load("values",
+        new ValueResourceLoader(data, "/resources/string", "string", ResType.CHAR_SEQUENCE));
+    systemCache.store(key, data);
+
+    assertThat(new File(robolectricCacheDir, "resource-tables/" + key + ".rtable")).exists();
+    assertThat(jar.getParentFile().list()).doesNotContain("resource-tables");
+    ResBunch reloaded = new ResBunch();
+    assertThat(ResourceTableCache.forSystemResources(robolectricCacheDir, "3.1").load(key, reloaded)).isTrue();
+    assertThat(reloaded.get(new ResName("android", "string", "ok"), "").getData()).isEqualTo("OK");
+  }
+
+  private ResBunch parse() throws Exception {
+    ResBunch data = new ResBunch();
+    new DocumentLoader(resourcePath).load("values",
+        new ValueResourceLoader(data, "/resources/string", "string", ResType.CHAR_SEQUENCE),
+        new StyleResourceLoader(data));
+    return data;
+  }
+
+  private File writeJar(String name, String contents) throws Exception {
+    File jar = new File(temporaryFolder.getRoot(), name);
+    try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+      out.putNextEntry(new JarEntry("res/"));
+      out.putNextEntry(new JarEntry("res/values/"));
+      out.putNextEntry(new JarEntry("res/values/values.xml"));
+      out.write(("<resources>" + contents + "</resources>").getBytes(StandardCharsets.UTF_8));
+      out.closeEntry();
+    }
+    return jar;
+  }
+
+  private static ResourcePath jarResourcePath(File jar) throws Exception {
+    return new ResourcePath(null, "android", Fs.fromJar(jar.toURI().toURL()).join("res"), null);
+  }
+
+  private static void writeValues(File resDir, String folder, String contents) throws Exception {
+    File dir = new File(resDir, folder);
+    dir.mkdirs();
+    try (Writer writer = new FileWriter(new File(dir, "values.xml"))) {
+      writer.write("<resources>" + contents + "</resources>");
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package org.robolectric.res;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.res.builder.XmlBlock;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class StyleResolverTest {
+  private final StyleLoader resourceLoader = new StyleLoader();
+
+  @Test
+  public void shouldFindAttributesInParents() throws Exception {
+    StyleData grandparent = resourceLoader.style("Grandparent", null, "textColor", "#000", "textSize", "12sp");
+    resourceLoader.style("Parent", "Grandparent", "textColor", "#111");
+    StyleData child = resourceLoader.style("Child", "@style/Parent", "background", "#222");
+
+    StyleResolver styleResolver = new StyleResolver(resourceLoader, child, null, null, "");
+    assertThat(styleResolver.getAttrValue(attr("background")).value).isEqualTo("#222");
+    assertThat(styleResolver.getAttrValue(attr("textColor")).value).isEqualTo("#111");
+    assertThat(styleResolver.getAttrValue(attr("textSize")).value).isEqualTo("12sp");
+    assertThat(styleResolver.getAttrValue(attr("missing"))).isNull();
+    assertThat(new StyleResolver(resourceLoader, grandparent, null, null, "").getAttrValue(attr("textColor")).value).isEqualTo("#000");
+  }
+
+  @Test
+  public void shouldResolveEachStyleOnlyOncePerQualifiers() throws Exception {
+    resourceLoader.style("Parent", null, "textColor", "#111");
+    StyleData child = resourceLoader.style("Child", "Parent", "background", "#222");
+
+    new StyleResolver(resourceLoader, child, null, null, "").getAttrValue(attr("textColor"));
+    new StyleResolver(resourceLoader, child, null, null, "").getAttrValue(attr("textColor"));
+    assertThat(resourceLoader.lookups).isEqualTo(1);
+
+    new StyleResolver(resourceLoader, child, null, null, "land").getAttrValue(attr("textColor"));
+    assertThat(resourceLoader.lookups).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldFallBackToTheTheme() throws Exception {
+    StyleData child = resourceLoader.style("Child", null, "background", "#222");
+    StyleData theme = resourceLoader.style("Theme", null, "textColor", "#333");
+
+    StyleResolver styleResolver = new StyleResolver(resourceLoader, child, theme, null, "");
+    assertThat(styleResolver.getAttrValue(attr("background")).value).isEqualTo("#222");
+    assertThat(styleResolver.getAttrValue(attr("textColor")).value).isEqualTo("#333");
+  }
+
+  @Test
+  public void shouldOnlyComplainAboutMissingParentsWhenAttributesAreMissing() throws Exception {
+    StyleData child = resourceLoader.style("Child", "NoSuchParent", "background", "#222");
+
+    StyleResolver styleResolver = new StyleResolver(resourceLoader, child, null, null, "");
+    assertThat(styleResolver.getAttrValue(attr("background")).value).isEqualTo("#222");
+    try {
+      styleResolver.getAttrValue(attr("textColor"));
+      fail("expected an exception");
+    } catch (RuntimeException e) {
+      assertThat(e).hasMessageContaining("NoSuchParent");
+    }
+  }
+
+  private static ResName attr(String name) {
+    return new ResName("my.pkg", "attr", name);
+  }
+
+  private static class StyleLoader extends ResourceLoader {
+    private final Map<ResName, TypedResource> styles = new HashMap<>();
+    private int lookups;
+
+    StyleData style(String name, String parent, String... attributes) {
+      StyleData styleData = new StyleData("my.pkg", name, parent);
+      for (int i = 0; i < attributes.length; i += 2) {
+        styleData.add(attr(attributes[i]), new AttributeResource(attr(attributes[i]), attributes[i + 1], "my.pkg"));
+      }
+      styles.put(new ResName("my.pkg", "style", name), new TypedResource<>(styleData, ResType.STYLE));
+      return styleData;
+    }
+
+    @Override public TypedResource getValue(@NotNull ResName resName, String qualifiers) {
+      lookups++;
+      return styles.get(resName);
+    }
+
+    @Override public XmlBlock getXml(ResName resName, String qualifiers) {
+      return null;
+    }
+
+    @Override public InputStream getRawValue(ResName resName) {
+      return null;
+    }
+
+    @Override public ResourceIndex getResourceIndex() {
+      return null;
+    }
+
+    @Override public boolean providesFor(String namespace) {
+      return "my.pkg".equals(namespace);
+    }
+
+    @Override public void receive(Visitor visitor) {
+    }
+  }
+}
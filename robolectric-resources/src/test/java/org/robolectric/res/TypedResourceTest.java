@@ -0,0 +1,22 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(JUnit4.class)
+public class TypedResourceTest {
+
+  @Test
+  public void getConvertedValue_shouldMatchConvertersByName() {
+    TypedResource<String> typedResource = new TypedResource<>("#ff000000", ResType.COLOR);
+    ConvertedValue convertedValue = new ConvertedValue(new String("Converter$FromColor"), 28, 0xff000000, true);
+    typedResource.setConvertedValue(convertedValue);
+
+    // the same converter loaded by another SDK's class loader has a different class, but the same name
+    assertThat(typedResource.getConvertedValue(new String("Converter$FromColor"))).isSameAs(convertedValue);
+    assertThat(typedResource.getConvertedValue("Converter$FromInt")).isNull();
+  }
+}
@@ -64,6 +64,8 @@ public final class ShadowAssetManager {
   public static final int STYLE_DENSITY = 5;
 
   boolean strictErrors = false;
+  private final TypedArrayCache typedArrayCache =
+      new TypedArrayCache(Integer.getInteger("robolectric.typedArrayCache.size", 512));
 
   private static long nextInternalThemeId = 1000;
   private static final Map<Long, WeakReference<Resources.Theme>> themes = new HashMap<>();
@@ -127,7 +129,7 @@ public final class ShadowAssetManager {
     TypedResource value = getAndResolve(ident, RuntimeEnvironment.getQualifiers(), resolveRefs);
     if (value == null) return false;
 
-    getConverter(value).fillTypedValue(value.getData(), outValue);
+    getConverter(value).fillTypedValueFrom(value, outValue);
     return true;
   }
 
@@ -537,15 +539,44 @@ public final class ShadowAssetManager {
   }
 
   TypedArray attrsToTypedArray(Resources resources, AttributeSet set, int[] attrs, int defStyleAttr, Resources.Theme theme, int defStyleRes) {
+    ThemeStyleSet themeStyleSet = theme == null ? null : shadowOf(theme).getThemeStyleSet();
+
+    TypedArrayCache.Key key = typedArrayCacheKey(set, attrs, defStyleAttr, themeStyleSet, defStyleRes);
+    TypedArrayCache.Entry entry = key == null ? null : typedArrayCache.get(key);
+    if (entry == null) {
+      entry = resolveAttributes(set, attrs, defStyleAttr, themeStyleSet == null ? new EmptyStyle() : themeStyleSet, defStyleRes);
+      if (key != null) {
+        typedArrayCache.put(key, entry);
+      }
+    }
+
+    TypedArray typedArray = ShadowTypedArray.create(resources, attrs, entry.data.clone(), entry.indices.clone(),
+        entry.length, entry.stringData.clone());
+    if (set != null) {
+      shadowOf(typedArray).positionDescription = set.getPositionDescription();
+    }
+    return typedArray;
+  }
+
+  private TypedArrayCache.Key typedArrayCacheKey(AttributeSet set, int[] attrs, int defStyleAttr, ThemeStyleSet themeStyleSet, int defStyleRes) {
+    if (!typedArrayCache.isEnabled()) return null;
+
+    Object node = null;
+    if (set != null) {
+      // other attribute sets, such as mocks, can't be told apart
+      if (!(set instanceof XmlResourceParserImpl)) return null;
+      node = ((XmlResourceParserImpl) set).getNodeKey();
+      if (node == null) return null;
+    }
+    return new TypedArrayCache.Key(node, attrs, defStyleAttr, defStyleRes, themeStyleSet, RuntimeEnvironment.getQualifiers(), strictErrors);
+  }
+
+  private TypedArrayCache.Entry resolveAttributes(AttributeSet set, int[] attrs, int defStyleAttr, Style themeStyleSet, int defStyleRes) {
     CharSequence[] stringData = new CharSequence[attrs.length];
     int[] data = new int[attrs.length * ShadowAssetManager.STYLE_NUM_ENTRIES];
     int[] indices = new int[attrs.length + 1];
     int nextIndex = 0;
 
-    Style themeStyleSet = theme == null
-        ? new EmptyStyle()
-        : shadowOf(theme).getThemeStyleSet();
-
     for (int i = 0; i < attrs.length; i++) {
       int offset = i * ShadowAssetManager.STYLE_NUM_ENTRIES;
 
@@ -573,11 +604,7 @@ public final class ShadowAssetManager {
 
     indices[0] = nextIndex;
 
-    TypedArray typedArray = ShadowTypedArray.create(resources, attrs, data, indices, nextIndex, stringData);
-    if (set != null) {
-      shadowOf(typedArray).positionDescription = set.getPositionDescription();
-    }
-    return typedArray;
+    return new TypedArrayCache.Entry(data, indices, nextIndex, stringData);
   }
 
   private AttributeResource findAttributeValue(int resId, AttributeSet attributeSet, Style styleAttrStyle, Style defStyleFromAttr, Style defStyleFromRes, @NotNull Style themeStyleSet) {
@@ -0,0 +1,109 @@
+package org.robolectric.shadows;
+
+import org.robolectric.res.ThemeStyleSet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Remembers the data {@link ShadowAssetManager} resolved for a {@code TypedArray}, so that inflating the same layout
+ * again, e.g. for every row of a list, doesn't walk the attribute set, styles and theme for each attribute again.
+ */
+final class TypedArrayCache {
+  private final int capacity;
+  private final Map<Key, Entry> entries;
+
+  TypedArrayCache(final int capacity) {
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  boolean isEnabled() {
+    return capacity > 0;
+  }
+
+  synchronized Entry get(Key key) {
+    return entries.get(key);
+  }
+
+  synchronized void put(Key key, Entry entry) {
+    entries.put(key, entry);
+  }
+
+  /**
+   * Everything the resolved data depends on. The attribute set is identified by the node it's positioned at, and
+   * {@code attrs} by identity, since they're usually constant arrays from {@code R.styleable}.
+   */
+  static final class Key {
+    private final Object node;
+    private final int[] attrs;
+    private final int defStyleAttr;
+    private final int defStyleRes;
+    private final ThemeStyleSet theme;
+    private final int themeVersion;
+    private final String qualifiers;
+    private final boolean strictErrors;
+
+    Key(Object node, int[] attrs, int defStyleAttr, int defStyleRes, ThemeStyleSet theme, String qualifiers, boolean strictErrors) {
+      this.node = node;
+      this.attrs = attrs;
+      this.defStyleAttr = defStyleAttr;
+      this.defStyleRes = defStyleRes;
+      this.theme = theme;
+      this.themeVersion = theme == null ? 0 : theme.getVersion();
+      this.qualifiers = qualifiers;
+      this.strictErrors = strictErrors;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return attrs == key.attrs
+          && defStyleAttr == key.defStyleAttr
+          && defStyleRes == key.defStyleRes
+          && theme == key.theme
+          && themeVersion == key.themeVersion
+          && strictErrors == key.strictErrors
+          && Objects.equals(node, key.node)
+          && Objects.equals(qualifiers, key.qualifiers);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = Objects.hashCode(node);
+      result = 31 * result + System.identityHashCode(attrs);
+      result = 31 * result + defStyleAttr;
+      result = 31 * result + defStyleRes;
+      result = 31 * result + System.identityHashCode(theme);
+      result = 31 * result + themeVersion;
+      result = 31 * result + Objects.hashCode(qualifiers);
+      return result;
+    }
+  }
+
+  /**
+   * The arrays backing a {@code TypedArray}. They must be copied for each {@code TypedArray}, since recycled
+   * {@code TypedArray}s are reused.
+   */
+  static final class Entry {
+    final int[] data;
+    final int[] indices;
+    final int length;
+    final CharSequence[] stringData;
+
+    Entry(int[] data, int[] indices, int length, CharSequence[] stringData) {
+      this.data = data;
+      this.indices = indices;
+      this.length = length;
+      this.stringData = stringData;
+    }
+  }
+}
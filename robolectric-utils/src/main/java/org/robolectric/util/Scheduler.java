@@ -1,9 +1,8 @@
 package org.robolectric.util;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import static org.robolectric.util.Scheduler.IdleState.*;
@@ -50,7 +49,9 @@ public class Scheduler {
   private long currentTime = 100;
   private boolean isExecutingRunnable = false;
   private final Thread associatedThread = Thread.currentThread();
-  private final List<ScheduledRunnable> runnables = new ArrayList<>();
+  private final ScheduledRunnableQueue runnables = new ScheduledRunnableQueue();
+  private long nextSequence = 0;
+  private long nextFrontSequence = -1;
   private IdleState idleState = UNPAUSED;
 
   /**
@@ -160,7 +161,7 @@ public class Scheduler {
    */
   public synchronized void postAtFrontOfQueue(Runnable runnable) {
     if (isPaused() || Thread.currentThread() != associatedThread) {
-      runnables.add(0, new ScheduledRunnable(runnable, currentTime));
+      runnables.add(new ScheduledRunnable(runnable, currentTime, nextFrontSequence--));
     } else {
       runOrQueueRunnable(runnable, currentTime);
     }
@@ -172,13 +173,7 @@ public class Scheduler {
    * @param runnable  Runnable to remove.
    */
   public synchronized void remove(Runnable runnable) {
-    ListIterator<ScheduledRunnable> iterator = runnables.listIterator();
-    while (iterator.hasNext()) {
-      ScheduledRunnable next = iterator.next();
-      if (next.runnable == runnable) {
-        iterator.remove();
-      }
-    }
+    runnables.removeAll(runnable);
   }
 
   /**
@@ -187,7 +182,7 @@ public class Scheduler {
    * @return  True if a runnable was executed.
    */
   public synchronized boolean advanceToLastPostedRunnable() {
-    return size() >= 1 && advanceTo(runnables.get(runnables.size() - 1).scheduledTime);
+    return size() >= 1 && advanceTo(runnables.lastScheduledTime());
   }
 
   /**
@@ -196,7 +191,7 @@ public class Scheduler {
    * @return  True if a runnable was executed.
    */
   public synchronized boolean advanceToNextPostedRunnable() {
-    return size() >= 1 && advanceTo(runnables.get(0).scheduledTime);
+    return size() >= 1 && advanceTo(runnables.peek().scheduledTime);
   }
 
   /**
@@ -251,7 +246,7 @@ public class Scheduler {
       return false;
     }
 
-    ScheduledRunnable postedRunnable = runnables.remove(0);
+    ScheduledRunnable postedRunnable = runnables.poll();
     currentTime = postedRunnable.scheduledTime;
     postedRunnable.run();
     return true;
@@ -299,7 +294,7 @@ public class Scheduler {
   }
 
   private boolean nextTaskIsScheduledBefore(long endingTime) {
-    return size() > 0 && runnables.get(0).scheduledTime <= endingTime;
+    return size() > 0 && runnables.peek().scheduledTime <= endingTime;
   }
 
   private void runOrQueueRunnable(Runnable runnable, long scheduledTime) {
@@ -330,22 +325,33 @@ public class Scheduler {
   }
 
   private void queueRunnableAndSort(Runnable runnable, long scheduledTime) {
-    runnables.add(new ScheduledRunnable(runnable, scheduledTime));
-    Collections.sort(runnables);
+    runnables.add(new ScheduledRunnable(runnable, scheduledTime, nextSequence++));
   }
 
   private class ScheduledRunnable implements Comparable<ScheduledRunnable> {
     private final Runnable runnable;
     private final long scheduledTime;
+    private final long sequence;
+
+    // position in the queue's heap, and links to other queued entries for the same runnable
+    private int index;
+    private ScheduledRunnable previousForRunnable;
+    private ScheduledRunnable nextForRunnable;
 
-    private ScheduledRunnable(Runnable runnable, long scheduledTime) {
+    private ScheduledRunnable(Runnable runnable, long scheduledTime, long sequence) {
       this.runnable = runnable;
       this.scheduledTime = scheduledTime;
+      this.sequence = sequence;
     }
 
+    /**
+     * Runnables are ordered by scheduled time, then in the order they were posted, except that runnables posted
+     * to the front of the queue come before everything else scheduled for the same time.
+     */
     @Override
     public int compareTo(ScheduledRunnable runnable) {
-      return (int) (scheduledTime - runnable.scheduledTime);
+      int result = Long.compare(scheduledTime, runnable.scheduledTime);
+      return result != 0 ? result : Long.compare(sequence, runnable.sequence);
     }
 
     public void run() {
@@ -357,4 +363,164 @@ public class Scheduler {
       }
     }
   }
+
+  /**
+   * Binary heap of {@link ScheduledRunnable}s, indexed by runnable identity so they can be removed without
+   * scanning the queue.
+   */
+  private class ScheduledRunnableQueue {
+    private ScheduledRunnable[] heap = new ScheduledRunnable[16];
+    private int size;
+    private final Map<Runnable, ScheduledRunnable> byRunnable = new IdentityHashMap<>();
+    private long lastScheduledTime;
+    private int lastScheduledCount;
+
+    int size() {
+      return size;
+    }
+
+    ScheduledRunnable peek() {
+      return size == 0 ? null : heap[0];
+    }
+
+    ScheduledRunnable poll() {
+      if (size == 0) {
+        return null;
+      }
+      ScheduledRunnable first = heap[0];
+      removeAt(0);
+      return first;
+    }
+
+    void add(ScheduledRunnable scheduledRunnable) {
+      if (size == heap.length) {
+        heap = Arrays.copyOf(heap, size * 2);
+      }
+      scheduledRunnable.index = size;
+      heap[size++] = scheduledRunnable;
+      siftUp(scheduledRunnable.index);
+
+      ScheduledRunnable head = byRunnable.put(scheduledRunnable.runnable, scheduledRunnable);
+      if (head != null) {
+        scheduledRunnable.nextForRunnable = head;
+        head.previousForRunnable = scheduledRunnable;
+      }
+
+      // a count of zero means the last scheduled time is stale and will be recomputed when it's needed
+      if (size == 1 || lastScheduledCount > 0 && scheduledRunnable.scheduledTime > lastScheduledTime) {
+        lastScheduledTime = scheduledRunnable.scheduledTime;
+        lastScheduledCount = 1;
+      } else if (lastScheduledCount > 0 && scheduledRunnable.scheduledTime == lastScheduledTime) {
+        lastScheduledCount++;
+      }
+    }
+
+    void removeAll(Runnable runnable) {
+      ScheduledRunnable scheduledRunnable = byRunnable.get(runnable);
+      while (scheduledRunnable != null) {
+        ScheduledRunnable next = scheduledRunnable.nextForRunnable;
+        removeAt(scheduledRunnable.index);
+        scheduledRunnable = next;
+      }
+    }
+
+    /**
+     * Returns the latest time any queued runnable is scheduled for.
+     */
+    long lastScheduledTime() {
+      if (lastScheduledCount == 0) {
+        for (int i = 0; i < size; i++) {
+          long scheduledTime = heap[i].scheduledTime;
+          if (lastScheduledCount == 0 || scheduledTime > lastScheduledTime) {
+            lastScheduledTime = scheduledTime;
+            lastScheduledCount = 1;
+          } else if (scheduledTime == lastScheduledTime) {
+            lastScheduledCount++;
+          }
+        }
+      }
+      return lastScheduledTime;
+    }
+
+    void clear() {
+      Arrays.fill(heap, 0, size, null);
+      size = 0;
+      byRunnable.clear();
+      lastScheduledCount = 0;
+    }
+
+    private void removeAt(int index) {
+      ScheduledRunnable removed = heap[index];
+      unlink(removed);
+      if (removed.scheduledTime == lastScheduledTime && lastScheduledCount > 0) {
+        lastScheduledCount--;
+      }
+
+      ScheduledRunnable last = heap[--size];
+      heap[size] = null;
+      if (index < size) {
+        heap[index] = last;
+        last.index = index;
+        siftDown(index);
+        if (heap[index] == last) {
+          siftUp(index);
+        }
+      }
+    }
+
+    private void unlink(ScheduledRunnable scheduledRunnable) {
+      ScheduledRunnable previous = scheduledRunnable.previousForRunnable;
+      ScheduledRunnable next = scheduledRunnable.nextForRunnable;
+      if (previous != null) {
+        previous.nextForRunnable = next;
+      } else if (next != null) {
+        byRunnable.put(scheduledRunnable.runnable, next);
+      } else {
+        byRunnable.remove(scheduledRunnable.runnable);
+      }
+      if (next != null) {
+        next.previousForRunnable = previous;
+      }
+      scheduledRunnable.previousForRunnable = null;
+      scheduledRunnable.nextForRunnable = null;
+    }
+
+    private void siftUp(int index) {
+      ScheduledRunnable scheduledRunnable = heap[index];
+      while (index > 0) {
+        int parentIndex = (index - 1) >>> 1;
+        ScheduledRunnable parent = heap[parentIndex];
+        if (scheduledRunnable.compareTo(parent) >= 0) {
+          break;
+        }
+        heap[index] = parent;
+        parent.index = index;
+        index = parentIndex;
+      }
+      heap[index] = scheduledRunnable;
+      scheduledRunnable.index = index;
+    }
+
+    private void siftDown(int index) {
+      ScheduledRunnable scheduledRunnable = heap[index];
+      int half = size >>> 1;
+      while (index < half) {
+        int childIndex = 2 * index + 1;
+        ScheduledRunnable child = heap[childIndex];
+        int rightIndex = childIndex + 1;
+        if (rightIndex < size && heap[rightIndex].compareTo(child) < 0) {
+          childIndex = rightIndex;
+          child = heap[childIndex];
+        }
+        if (scheduledRunnable.compareTo(child) <= 0) {
+          break;
+        }
+        heap[index] = child;
+        child.index = index;
+        index = childIndex;
+      }
+      heap[index] = scheduledRunnable;
+      scheduledRunnable.index = index;
+    }
+  }
 }
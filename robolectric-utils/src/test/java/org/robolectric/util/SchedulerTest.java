@@ -234,6 +234,65 @@ public class SchedulerTest {
     assertThat(runnable.wasRun).isFalse();
   }
 
+  @Test
+  public void remove_shouldKeepOrderOfRemainingRunnables() throws Exception {
+    TestRunnable runnable = new TestRunnable();
+    for (int i = 0; i < 20; i++) {
+      scheduler.postDelayed(new AddToTranscript("event" + i), i % 3);
+      scheduler.postDelayed(runnable, i % 5);
+    }
+    scheduler.remove(runnable);
+    assertThat(scheduler.size()).isEqualTo(20);
+
+    scheduler.advanceToLastPostedRunnable();
+    List<String> expected = new ArrayList<>();
+    for (int delay = 0; delay < 3; delay++) {
+      for (int i = delay; i < 20; i += 3) {
+        expected.add("event" + i);
+      }
+    }
+    assertThat(transcript.getEvents()).isEqualTo(expected);
+    assertThat(runnable.wasRun).isFalse();
+  }
+
+  @Test
+  public void postDelayed_shouldRunRunnablesScheduledForTheSameTimeInTheOrderTheyWerePosted() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      scheduler.postDelayed(new AddToTranscript("event" + i), 1000);
+    }
+
+    scheduler.advanceBy(1000);
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      expected.add("event" + i);
+    }
+    assertThat(transcript.getEvents()).isEqualTo(expected);
+  }
+
+  @Test
+  public void postDelayed_shouldOrderRunnablesWhoseDelaysDifferByMoreThanAnInt() throws Exception {
+    scheduler.postDelayed(new AddToTranscript("later"), 3L * Integer.MAX_VALUE);
+    scheduler.postDelayed(new AddToTranscript("sooner"), 1);
+
+    scheduler.runOneTask();
+    transcript.assertEventsSoFar("sooner");
+    scheduler.runOneTask();
+    transcript.assertEventsSoFar("later");
+  }
+
+  @Test
+  public void advanceToLastPostedRunnable_shouldRunEverythingAfterTheLatestRunnableIsRemoved() throws Exception {
+    TestRunnable latest = new TestRunnable();
+    scheduler.postDelayed(new AddToTranscript("one"), 100);
+    scheduler.postDelayed(latest, 300);
+    scheduler.postDelayed(new AddToTranscript("two"), 200);
+    scheduler.remove(latest);
+
+    scheduler.advanceToLastPostedRunnable();
+    transcript.assertEventsSoFar("one", "two");
+    assertThat(scheduler.getCurrentTime()).isEqualTo(startTime + 200);
+  }
+
   @Test
   public void reset_shouldUnPause() throws Exception {
     scheduler.pause();
@@ -23,6 +23,7 @@ import org.robolectric.internal.InstrumentingClassLoaderFactory;
 import org.robolectric.internal.ManifestFactory;
 import org.robolectric.internal.ManifestIdentifier;
 import org.robolectric.internal.MavenManifestFactory;
+import org.robolectric.internal.ParallelRunnerScheduler;
 import org.robolectric.internal.ParallelUniverse;
 import org.robolectric.internal.ParallelUniverseInterface;
 import org.robolectric.internal.SdkConfig;
@@ -33,10 +34,10 @@ import org.robolectric.internal.bytecode.InvokeDynamic;
 import org.robolectric.internal.bytecode.RobolectricInternals;
 import org.robolectric.internal.bytecode.ShadowInvalidator;
 import org.robolectric.internal.bytecode.ShadowMap;
-import org.robolectric.internal.bytecode.ShadowWrangler;
-import org.robolectric.internal.dependency.CachedDependencyResolver;
+import org.robolectric.internal.dependency.ArtifactStoreDependencyResolver;
+import org.robolectric.internal.dependency.DependencyJar;
 import org.robolectric.internal.dependency.DependencyResolver;
-import org.robolectric.internal.dependency.LocalDependencyResolver;
+import org.robolectric.internal.dependency.IndexedDependencyResolver;
 import org.robolectric.internal.dependency.MavenDependencyResolver;
 import org.robolectric.internal.dependency.PropertiesDependencyResolver;
 import org.robolectric.manifest.AndroidManifest;
@@ -61,13 +62,15 @@ import java.lang.reflect.Method;
 import java.net.URL;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.collect.Lists.reverse;
 
@@ -77,17 +80,21 @@ import static com.google.common.collect.Lists.reverse;
  */
 public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   private static final String CONFIG_PROPERTIES = "robolectric.properties";
+  private static final String PARALLEL_WORKERS = "robolectric.parallel.workers";
+  private static final String PREWARM = "robolectric.prewarm";
   private static final Map<Pair<AndroidManifest, SdkConfig>, ResourceLoader> resourceLoadersCache = new HashMap<>();
   private static final Map<ManifestIdentifier, AndroidManifest> appManifestsCache = new HashMap<>();
 
-  private TestLifecycle<Application> testLifecycle;
-  private DependencyResolver dependencyResolver;
+  private static DependencyResolver dependencyResolver;
+
+  private final Map<Thread, TestLifecycle<Application>> testLifecycles = new ConcurrentHashMap<>();
 
   static {
     new SecureRandom(); // this starts up the Poller SunPKCS11-Darwin thread early, outside of any Robolectric classloader
   }
 
-  private final HashSet<Class<?>> loadedTestClasses = new HashSet<>();
+  private final int workerCount;
+  private final Set<Class<?>> loadedTestClasses = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
   private final Map<String, Config> packageConfigCache = new LinkedHashMap<String, Config>() {
     @Override
     protected boolean removeEldestEntry(Map.Entry eldest) {
@@ -104,44 +111,67 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
    */
   public RobolectricTestRunner(final Class<?> testClass) throws InitializationError {
     super(testClass);
+
+    workerCount = Integer.getInteger(PARALLEL_WORKERS, 1);
+    if (workerCount > 1) {
+      setScheduler(new ParallelRunnerScheduler(testClass.getSimpleName(), workerCount));
+    }
   }
 
   @SuppressWarnings("unchecked")
   private void assureTestLifecycle(SdkEnvironment sdkEnvironment) {
     try {
       ClassLoader robolectricClassLoader = sdkEnvironment.getRobolectricClassLoader();
-      testLifecycle = (TestLifecycle) robolectricClassLoader.loadClass(getTestLifecycleClass().getName()).newInstance();
+      testLifecycles.put(Thread.currentThread(),
+          (TestLifecycle) robolectricClassLoader.loadClass(getTestLifecycleClass().getName()).newInstance());
     } catch (InstantiationException | IllegalAccessException | ClassNotFoundException e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Returns the resolver for Android and Robolectric jars, which is shared by every runner in the process.
+   */
   protected DependencyResolver getJarResolver() {
-    if (dependencyResolver == null) {
-      if (Boolean.getBoolean("robolectric.offline")) {
-        String dependencyDir = System.getProperty("robolectric.dependency.dir", ".");
-        dependencyResolver = new LocalDependencyResolver(new File(dependencyDir));
+    synchronized (RobolectricTestRunner.class) {
+      if (dependencyResolver == null) {
+        dependencyResolver = createJarResolver();
+      }
+      return dependencyResolver;
+    }
+  }
+
+  private DependencyResolver createJarResolver() {
+    DependencyResolver dependencyResolver;
+    if (Boolean.getBoolean("robolectric.offline")) {
+      String dependencyDir = System.getProperty("robolectric.dependency.dir", ".");
+      dependencyResolver = new ArtifactStoreDependencyResolver(new File(dependencyDir), null);
+    } else {
+      File cacheDir = new File(new File(System.getProperty("java.io.tmpdir")), "robolectric");
+
+      if (cacheDir.exists() || cacheDir.mkdir()) {
+        Logger.info("Dependency cache location: %s", cacheDir.getAbsolutePath());
+        dependencyResolver = new IndexedDependencyResolver(new MavenDependencyResolver(), new File(cacheDir, "dependencies.index"));
       } else {
-        File cacheDir = new File(new File(System.getProperty("java.io.tmpdir")), "robolectric");
+        dependencyResolver = new IndexedDependencyResolver(new MavenDependencyResolver(), null);
+      }
 
-        if (cacheDir.exists() || cacheDir.mkdir()) {
-          Logger.info("Dependency cache location: %s", cacheDir.getAbsolutePath());
-          dependencyResolver = new CachedDependencyResolver(new MavenDependencyResolver(), cacheDir, 60 * 60 * 24 * 1000);
-        } else {
-          dependencyResolver = new MavenDependencyResolver();
-        }
+      // keep a copy of every jar resolved, so later runs can be offline
+      String dependencyDir = System.getProperty("robolectric.dependency.dir");
+      if (dependencyDir != null) {
+        dependencyResolver = new ArtifactStoreDependencyResolver(new File(dependencyDir), dependencyResolver);
       }
+    }
 
-      URL buildPathPropertiesUrl = getClass().getClassLoader().getResource("robolectric-deps.properties");
-      if (buildPathPropertiesUrl != null) {
-        Logger.info("Using Robolectric classes from %s", buildPathPropertiesUrl.getPath());
+    URL buildPathPropertiesUrl = getClass().getClassLoader().getResource("robolectric-deps.properties");
+    if (buildPathPropertiesUrl != null) {
+      Logger.info("Using Robolectric classes from %s", buildPathPropertiesUrl.getPath());
 
-        FsFile propertiesFile = Fs.fileFromPath(buildPathPropertiesUrl.getFile());
-        try {
-          dependencyResolver = new PropertiesDependencyResolver(propertiesFile, dependencyResolver);
-        } catch (IOException e) {
-          throw new RuntimeException("couldn't read " + buildPathPropertiesUrl, e);
-        }
+      FsFile propertiesFile = Fs.fileFromPath(buildPathPropertiesUrl.getFile());
+      try {
+        dependencyResolver = new PropertiesDependencyResolver(propertiesFile, dependencyResolver);
+      } catch (IOException e) {
+        throw new RuntimeException("couldn't read " + buildPathPropertiesUrl, e);
       }
     }
 
@@ -170,6 +200,11 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     return new Statement() {
       @Override
       public void evaluate() throws Throwable {
+        Set<Pair<InstrumentationConfiguration, SdkConfig>> environments = getSdkEnvironmentsToRun();
+        resolveDependencies(environments);
+        if (Boolean.getBoolean(PREWARM)) {
+          prewarmSdkEnvironments(environments);
+        }
         try {
           statement.evaluate();
           for (Class<?> testClass : loadedTestClasses) {
@@ -183,6 +218,81 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     };
   }
 
+  /**
+   * Returns the environments this runner's tests are going to need, or none if that can't be worked out up front;
+   * the tests will report the problem when they run.
+   */
+  private Set<Pair<InstrumentationConfiguration, SdkConfig>> getSdkEnvironmentsToRun() {
+    Set<Pair<InstrumentationConfiguration, SdkConfig>> environments = new LinkedHashSet<>();
+    try {
+      for (FrameworkMethod method : getChildren()) {
+        Config config = getConfig(method.getMethod());
+        if (!shouldIgnore(method, config) && shouldRunApiVersion(config)) {
+          SdkConfig sdkConfig = new SdkConfig(pickSdkVersion(config, getAppManifest(config)));
+          environments.add(Pair.create(createClassLoaderConfig(config), sdkConfig));
+        }
+      }
+    } catch (RuntimeException e) {
+      Logger.info("Couldn't determine SDK environments for %s: %s", getTestClass().getName(), e);
+      return Collections.emptySet();
+    }
+    return environments;
+  }
+
+  /**
+   * Starts resolving the jars for all the given environments in the background, together, rather than one at a
+   * time as each test first needs them.
+   */
+  private void resolveDependencies(Set<Pair<InstrumentationConfiguration, SdkConfig>> environments) {
+    Set<SdkConfig> sdkConfigs = new LinkedHashSet<>();
+    for (Pair<InstrumentationConfiguration, SdkConfig> environment : environments) {
+      sdkConfigs.add(environment.second);
+    }
+    if (sdkConfigs.isEmpty()) {
+      return;
+    }
+
+    final List<DependencyJar> dependencies = new ArrayList<>();
+    for (SdkConfig sdkConfig : sdkConfigs) {
+      dependencies.add(sdkConfig.getAndroidSdkDependency());
+      dependencies.add(sdkConfig.getCoreShadowsDependency());
+    }
+    final DependencyResolver jarResolver = getJarResolver();
+    InstrumentingClassLoaderFactory.getEnvironmentPool().prewarm(new Runnable() {
+      @Override
+      public void run() {
+        jarResolver.getLocalArtifactUrls(dependencies.toArray(new DependencyJar[dependencies.size()]));
+      }
+    });
+  }
+
+  /**
+   * Starts building and loading the given environments in the background, so they're warm by the time the tests
+   * ask for them.
+   */
+  private void prewarmSdkEnvironments(Set<Pair<InstrumentationConfiguration, SdkConfig>> environments) {
+    final DependencyResolver jarResolver = getJarResolver();
+    final Class<?> testClass = getTestClass().getJavaClass();
+
+    // worker threads claim slots starting at 1; everything else uses slot 0
+    int firstSlot = workerCount > 1 ? 1 : 0;
+    int lastSlot = workerCount > 1 ? workerCount : 0;
+    for (final Pair<InstrumentationConfiguration, SdkConfig> environment : environments) {
+      final InstrumentingClassLoaderFactory factory = new InstrumentingClassLoaderFactory(environment.first, jarResolver);
+      for (int slot = firstSlot; slot <= lastSlot; slot++) {
+        final int environmentSlot = slot;
+        InstrumentingClassLoaderFactory.getEnvironmentPool().prewarm(new Runnable() {
+          @Override
+          public void run() {
+            SdkEnvironment sdkEnvironment = factory.getSdkEnvironment(environment.second, environmentSlot);
+            sdkEnvironment.bootstrappedClass(testClass);
+            sdkEnvironment.getSystemResourceLoader(jarResolver);
+          }
+        });
+      }
+    }
+  }
+
   private static void invokeAfterClass(final Class<?> clazz) throws Throwable {
     final TestClass testClass = new TestClass(clazz);
     final List<FrameworkMethod> afters = testClass.getAnnotatedMethods(AfterClass.class);
@@ -204,7 +314,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
       try {
         AndroidManifest appManifest = getAppManifest(config);
         InstrumentingClassLoaderFactory instrumentingClassLoaderFactory = new InstrumentingClassLoaderFactory(createClassLoaderConfig(config), getJarResolver());
-        SdkEnvironment sdkEnvironment = instrumentingClassLoaderFactory.getSdkEnvironment(new SdkConfig(pickSdkVersion(config, appManifest)));
+        SdkEnvironment sdkEnvironment = instrumentingClassLoaderFactory.getSdkEnvironment(new SdkConfig(pickSdkVersion(config, appManifest)), ParallelRunnerScheduler.currentSlot());
         methodBlock(method, config, appManifest, sdkEnvironment).evaluate();
       } catch (AssumptionViolatedException e) {
         eachNotifier.addFailedAssumption(e);
@@ -224,7 +334,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     return method.getAnnotation(Ignore.class) != null;
   }
 
-  private ParallelUniverseInterface parallelUniverseInterface;
+  private final ThreadLocal<ParallelUniverseInterface> parallelUniverseInterface = new ThreadLocal<>();
 
   Statement methodBlock(final FrameworkMethod method, final Config config, final AndroidManifest appManifest, final SdkEnvironment sdkEnvironment) {
     return new Statement() {
@@ -248,13 +358,12 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
           throw new RuntimeException(e);
         }
 
-        parallelUniverseInterface = getHooksInterface(sdkEnvironment);
+        ParallelUniverseInterface parallelUniverseInterface = getHooksInterface(sdkEnvironment);
+        RobolectricTestRunner.this.parallelUniverseInterface.set(parallelUniverseInterface);
         try {
           try {
             // Only invoke @BeforeClass once per class
-            if (!loadedTestClasses.contains(bootstrappedTestClass)) {
-              invokeBeforeClass(bootstrappedTestClass);
-            }
+            invokeBeforeClass(bootstrappedTestClass);
             assureTestLifecycle(sdkEnvironment);
 
             parallelUniverseInterface.resetStaticState(config);
@@ -267,8 +376,8 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
             ReflectionHelpers.setStaticField(androidBuildVersionClass, "RELEASE", sdkConfig.getAndroidVersion());
 
             ResourceLoader systemResourceLoader = sdkEnvironment.getSystemResourceLoader(getJarResolver());
-            parallelUniverseInterface.setUpApplicationState(bootstrappedMethod, testLifecycle, systemResourceLoader, appManifest, config);
-            testLifecycle.beforeTest(bootstrappedMethod);
+            parallelUniverseInterface.setUpApplicationState(bootstrappedMethod, testLifecycle(), systemResourceLoader, appManifest, config);
+            testLifecycle().beforeTest(bootstrappedMethod);
           } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException(e);
@@ -293,16 +402,14 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
             }
           }
         } finally {
-          parallelUniverseInterface = null;
+          RobolectricTestRunner.this.parallelUniverseInterface.remove();
         }
       }
     };
   }
 
   private void invokeBeforeClass(final Class clazz) throws Throwable {
-    if (!loadedTestClasses.contains(clazz)) {
-      loadedTestClasses.add(clazz);
-
+    if (loadedTestClasses.add(clazz)) {
       final TestClass testClass = new TestClass(clazz);
       final List<FrameworkMethod> befores = testClass.getAnnotatedMethods(BeforeClass.class);
       for (FrameworkMethod before : befores) {
@@ -479,21 +586,10 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
       sdkEnvironment.getShadowInvalidator().invalidateClasses(invalidatedClasses);
     }
 
-    ClassHandler classHandler = getClassHandler(sdkEnvironment, shadowMap);
+    ClassHandler classHandler = sdkEnvironment.getClassHandler(shadowMap);
     injectEnvironment(sdkEnvironment.getRobolectricClassLoader(), classHandler, sdkEnvironment.getShadowInvalidator());
   }
 
-  private ClassHandler getClassHandler(SdkEnvironment sdkEnvironment, ShadowMap shadowMap) {
-    ClassHandler classHandler;
-    synchronized (sdkEnvironment) {
-      classHandler = sdkEnvironment.classHandlersByShadowMap.get(shadowMap);
-      if (classHandler == null) {
-        classHandler = new ShadowWrangler(shadowMap, sdkEnvironment.getSdkConfig().getApiLevel());
-      }
-    }
-    return classHandler;
-  }
-
   protected int pickSdkVersion(Config config, AndroidManifest manifest) {
     if (config != null && config.sdk().length > 1) {
       throw new IllegalArgumentException("RobolectricTestRunner does not support multiple values for @Config.sdk");
@@ -517,16 +613,20 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   }
 
   public void internalAfterTest(final Method method) {
-    testLifecycle.afterTest(method);
+    testLifecycle().afterTest(method);
+  }
+
+  private TestLifecycle<Application> testLifecycle() {
+    return testLifecycles.get(Thread.currentThread());
   }
 
   private void afterClass() {
-    testLifecycle = null;
+    testLifecycles.clear();
   }
 
   @TestOnly
   boolean allStateIsCleared() {
-    return testLifecycle == null;
+    return testLifecycles.isEmpty();
   }
 
   @Override
@@ -536,6 +636,12 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
 
   public final ResourceLoader getAppResourceLoader(SdkConfig sdkConfig, ResourceLoader systemResourceLoader, final AndroidManifest appManifest) {
     Pair<AndroidManifest, SdkConfig> androidManifestSdkConfigPair = new Pair<>(appManifest, sdkConfig);
+    synchronized (resourceLoadersCache) {
+      return getAppResourceLoader(androidManifestSdkConfigPair, systemResourceLoader, appManifest);
+    }
+  }
+
+  private ResourceLoader getAppResourceLoader(Pair<AndroidManifest, SdkConfig> androidManifestSdkConfigPair, ResourceLoader systemResourceLoader, AndroidManifest appManifest) {
     ResourceLoader resourceLoader = resourceLoadersCache.get(androidManifestSdkConfigPair);
     if (resourceLoader == null) {
       Map<String, ResourceLoader> resourceLoaders = new HashMap<>();
@@ -564,7 +670,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
 
     @Override protected Object createTest() throws Exception {
       Object test = super.createTest();
-      testLifecycle.prepareTest(test);
+      testLifecycle().prepareTest(test);
       return test;
     }
 
@@ -582,6 +688,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
       return new Statement() {
         @Override
         public void evaluate() throws Throwable {
+          ParallelUniverseInterface parallelUniverseInterface = RobolectricTestRunner.this.parallelUniverseInterface.get();
           Thread orig = parallelUniverseInterface.getMainThread();
           parallelUniverseInterface.setMainThread(Thread.currentThread());
           try {
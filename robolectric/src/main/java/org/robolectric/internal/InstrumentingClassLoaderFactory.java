@@ -1,30 +1,27 @@
 package org.robolectric.internal;
 
 import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+import org.robolectric.internal.bytecode.InstrumentedClassCache;
 import org.robolectric.internal.bytecode.InstrumentingClassLoader;
+import org.robolectric.internal.bytecode.PreinstrumentedJar;
 import org.robolectric.internal.dependency.DependencyJar;
 import org.robolectric.internal.dependency.DependencyResolver;
-import org.robolectric.util.Pair;
 
+import java.io.File;
 import java.net.URL;
-import java.util.LinkedHashMap;
-import java.util.Map;
 
 public class InstrumentingClassLoaderFactory {
 
-  /** The factor for cache size. See {@link #CACHE_SIZE} for details. */
-  private static final int CACHE_SIZE_FACTOR = 3;
+  /** The factor for pool size. See {@link #DEFAULT_POOL_SIZE} for details. */
+  private static final int POOL_SIZE_FACTOR = 3;
 
-  /** We need to set the cache size of class loaders more than the number of supported APIs as different tests may have different configurations. */
-  private static final int CACHE_SIZE = SdkConfig.getSupportedApis().size() * CACHE_SIZE_FACTOR;
+  /** We need to set the pool size more than the number of supported APIs as different tests may have different configurations. */
+  private static final int DEFAULT_POOL_SIZE = SdkConfig.getSupportedApis().size() * POOL_SIZE_FACTOR;
 
-  // Simple LRU Cache. SdkEnvironments are unique across InstrumentingClassloaderConfig and SdkConfig
-  private static final LinkedHashMap<Pair<InstrumentationConfiguration, SdkConfig>, SdkEnvironment> sdkToEnvironment = new LinkedHashMap<Pair<InstrumentationConfiguration, SdkConfig>, SdkEnvironment>() {
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<Pair<InstrumentationConfiguration, SdkConfig>, SdkEnvironment> eldest) {
-      return size() > CACHE_SIZE;
-    }
-  };
+  // SdkEnvironments are unique across InstrumentingClassloaderConfig, SdkConfig and environment slot
+  private static final SdkEnvironmentPool environmentPool =
+      new SdkEnvironmentPool(Integer.getInteger("robolectric.environmentPool.size", DEFAULT_POOL_SIZE),
+          Math.max(1, Integer.getInteger("robolectric.parallel.workers", 1)));
 
   private final InstrumentationConfiguration instrumentationConfig;
   private final DependencyResolver dependencyResolver;
@@ -34,20 +31,59 @@ public class InstrumentingClassLoaderFactory {
     this.dependencyResolver = dependencyResolver;
   }
 
-  public synchronized SdkEnvironment getSdkEnvironment(SdkConfig sdkConfig) {
+  public static SdkEnvironmentPool getEnvironmentPool() {
+    return environmentPool;
+  }
+
+  public InstrumentationConfiguration getInstrumentationConfig() {
+    return instrumentationConfig;
+  }
+
+  public SdkEnvironment getSdkEnvironment(SdkConfig sdkConfig) {
+    return getSdkEnvironment(sdkConfig, 0);
+  }
+
+  /**
+   * Returns the environment for {@code sdkConfig} in the given slot. Environments in different slots have
+   * separate class loaders, so tests using them can run concurrently.
+   *
+   * @see ParallelRunnerScheduler
+   */
+  public SdkEnvironment getSdkEnvironment(SdkConfig sdkConfig, int slot) {
+    return environmentPool.get(this, sdkConfig, slot);
+  }
+
+  SdkEnvironment createSdkEnvironment(SdkConfig sdkConfig) {
+    URL[] urls = dependencyResolver.getLocalArtifactUrls(
+        sdkConfig.getAndroidSdkDependency(),
+        sdkConfig.getCoreShadowsDependency());
 
-    Pair<InstrumentationConfiguration, SdkConfig> key = Pair.create(instrumentationConfig, sdkConfig);
+    ClassLoader robolectricClassLoader = new InstrumentingClassLoader(instrumentationConfig,
+        createClassCache(urls), openPreinstrumentedJar(sdkConfig), urls);
+    return new SdkEnvironment(sdkConfig, robolectricClassLoader);
+  }
 
-    SdkEnvironment sdkEnvironment = sdkToEnvironment.get(key);
-    if (sdkEnvironment == null) {
-      URL[] urls = dependencyResolver.getLocalArtifactUrls(
-          sdkConfig.getAndroidSdkDependency(),
-          sdkConfig.getCoreShadowsDependency());
+  /**
+   * Instrumented classes are cached on disk when the {@code robolectric.classCache.dir} system property is set.
+   */
+  private InstrumentedClassCache createClassCache(URL[] urls) {
+    String cacheDir = System.getProperty("robolectric.classCache.dir");
+    if (cacheDir == null) {
+      return null;
+    }
+    return InstrumentedClassCache.create(new File(cacheDir), instrumentationConfig, urls, SdkConfig.getRobolectricVersion());
+  }
 
-      ClassLoader robolectricClassLoader = new InstrumentingClassLoader(instrumentationConfig, urls);
-      sdkEnvironment = new SdkEnvironment(sdkConfig, robolectricClassLoader);
-      sdkToEnvironment.put(key, sdkEnvironment);
+  /**
+   * Classes instrumented ahead of time by {@link PreinstrumentedJar} are used when the
+   * {@code robolectric.preinstrumentedJars.dir} system property is set.
+   */
+  private PreinstrumentedJar openPreinstrumentedJar(SdkConfig sdkConfig) {
+    String jarsDir = System.getProperty("robolectric.preinstrumentedJars.dir");
+    if (jarsDir == null) {
+      return null;
     }
-    return sdkEnvironment;
+    URL androidAllUrl = dependencyResolver.getLocalArtifactUrl(sdkConfig.getAndroidSdkDependency());
+    return PreinstrumentedJar.open(new File(jarsDir), androidAllUrl, instrumentationConfig, SdkConfig.getRobolectricVersion());
   }
 }
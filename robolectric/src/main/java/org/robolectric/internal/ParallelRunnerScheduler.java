@@ -0,0 +1,117 @@
+package org.robolectric.internal;
+
+import org.junit.runners.model.RunnerScheduler;
+
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the children of a test runner concurrently on a fixed number of worker threads.
+ *
+ * Each worker claims an environment slot for as long as it's alive, and
+ * {@link InstrumentingClassLoaderFactory} gives each slot its own {@link SdkEnvironment}, so tests running
+ * at the same time never share Robolectric's static state. Slot 0 belongs to threads which aren't workers.
+ */
+public class ParallelRunnerScheduler implements RunnerScheduler {
+  private static final ThreadLocal<Integer> currentSlot = new ThreadLocal<Integer>() {
+    @Override
+    protected Integer initialValue() {
+      return 0;
+    }
+  };
+  private static final BitSet slotsInUse = new BitSet();
+
+  static {
+    slotsInUse.set(0);
+  }
+
+  private final String name;
+  private final int workerCount;
+  private ExecutorService executor;
+
+  public ParallelRunnerScheduler(String name, int workerCount) {
+    this.name = name;
+    this.workerCount = workerCount;
+  }
+
+  /**
+   * Returns the environment slot claimed by the current thread.
+   */
+  public static int currentSlot() {
+    return currentSlot.get();
+  }
+
+  @Override
+  public synchronized void schedule(Runnable childStatement) {
+    if (executor == null) {
+      executor = createExecutor();
+    }
+    executor.execute(childStatement);
+  }
+
+  /**
+   * Waits for the scheduled children to finish and stops the workers. The next {@link #schedule(Runnable)} starts
+   * new ones, so a runner can be run again.
+   */
+  @Override
+  public void finished() {
+    ExecutorService executor;
+    synchronized (this) {
+      executor = this.executor;
+      this.executor = null;
+    }
+    if (executor == null) {
+      return;
+    }
+
+    executor.shutdown();
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private ExecutorService createExecutor() {
+    return Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+      private final AtomicInteger threadCount = new AtomicInteger();
+
+      @Override
+      public Thread newThread(final Runnable runnable) {
+        Thread thread = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            int slot = claimSlot();
+            currentSlot.set(slot);
+            try {
+              runnable.run();
+            } finally {
+              releaseSlot(slot);
+            }
+          }
+        }, name + "-worker-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  private static int claimSlot() {
+    synchronized (slotsInUse) {
+      int slot = slotsInUse.nextClearBit(1);
+      slotsInUse.set(slot);
+      return slot;
+    }
+  }
+
+  private static void releaseSlot(int slot) {
+    synchronized (slotsInUse) {
+      slotsInUse.clear(slot);
+    }
+  }
+}
@@ -14,7 +14,7 @@ import java.util.Properties;
 import java.util.Set;
 
 public class SdkConfig {
-  private static final String ROBOLECTRIC_VERSION = getRobolectricVersion();
+  private static final String ROBOLECTRIC_VERSION = readRobolectricVersion();
 
   private static final Map<Integer, SdkVersion> SUPPORTED_APIS = Collections.unmodifiableMap(new HashMap<Integer, SdkVersion>() {
     private final double jdkVersion = Double.parseDouble(System.getProperty("java.specification.version"));
@@ -49,6 +49,10 @@ public class SdkConfig {
     return SUPPORTED_APIS.keySet();
   }
 
+  public static String getRobolectricVersion() {
+    return ROBOLECTRIC_VERSION;
+  }
+
   public SdkConfig(int apiLevel) {
     this.apiLevel = apiLevel;
     sdkVersion = SUPPORTED_APIS.get(apiLevel);
@@ -92,7 +96,7 @@ public class SdkConfig {
     return new DependencyJar(groupId, artifactId, version, classifier);
   }
 
-  private static String getRobolectricVersion() {
+  private static String readRobolectricVersion() {
     ClassLoader classLoader = SdkVersion.class.getClassLoader();
     try (InputStream is = classLoader.getResourceAsStream("robolectric-version.properties")) {
       final Properties properties = new Properties();
@@ -9,6 +9,7 @@ import org.robolectric.res.PackageResourceLoader;
 import org.robolectric.res.ResourceExtractor;
 import org.robolectric.res.ResourceLoader;
 import org.robolectric.res.ResourcePath;
+import org.robolectric.res.ResourceTableCache;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -40,7 +41,9 @@ public class SdkEnvironment {
       }
 
       ResourceExtractor resourceExtractor = new ResourceExtractor(resourcePath);
-      systemResourceLoader = new PackageResourceLoader(resourcePath, resourceExtractor);
+      // framework resources never change for a given jar, so their parsed values are shared by every JVM
+      ResourceTableCache resourceTableCache = ResourceTableCache.forSystemResources(SdkConfig.getRobolectricVersion());
+      systemResourceLoader = new PackageResourceLoader(resourcePath, resourceExtractor, resourceTableCache);
     }
     return systemResourceLoader;
   }
@@ -65,6 +68,54 @@ public class SdkEnvironment {
     return sdkConfig;
   }
 
+  /**
+   * Returns the class handler for {@code shadowMap}, creating it if necessary. Class handlers are shared by
+   * every test in this environment which uses an equal shadow map, so their caches stay warm.
+   */
+  public synchronized ShadowWrangler getClassHandler(ShadowMap shadowMap) {
+    ShadowWrangler classHandler = classHandlersByShadowMap.get(shadowMap);
+    if (classHandler == null) {
+      classHandler = new ShadowWrangler(shadowMap, sdkConfig.getApiLevel());
+      classHandlersByShadowMap.put(shadowMap, classHandler);
+    }
+    return classHandler;
+  }
+
+  /**
+   * Returns how many method invocations were dispatched using a cached plan, across all of this environment's
+   * class handlers.
+   */
+  public synchronized long getPlanCacheHitCount() {
+    long hitCount = 0;
+    for (ShadowWrangler classHandler : classHandlersByShadowMap.values()) {
+      hitCount += classHandler.getPlanCacheHitCount();
+    }
+    return hitCount;
+  }
+
+  /**
+   * Returns how many method invocations needed a plan to be calculated, across all of this environment's
+   * class handlers.
+   */
+  public synchronized long getPlanCacheMissCount() {
+    long missCount = 0;
+    for (ShadowWrangler classHandler : classHandlersByShadowMap.values()) {
+      missCount += classHandler.getPlanCacheMissCount();
+    }
+    return missCount;
+  }
+
+  /**
+   * Returns how many plans were evicted from this environment's class handlers' plan caches.
+   */
+  public synchronized long getPlanCacheEvictionCount() {
+    long evictionCount = 0;
+    for (ShadowWrangler classHandler : classHandlersByShadowMap.values()) {
+      evictionCount += classHandler.getPlanCacheEvictionCount();
+    }
+    return evictionCount;
+  }
+
   public ShadowMap replaceShadowMap(ShadowMap shadowMap) {
     ShadowMap oldMap = this.shadowMap;
     this.shadowMap = shadowMap;
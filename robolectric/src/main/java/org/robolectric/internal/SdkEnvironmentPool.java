@@ -0,0 +1,282 @@
+package org.robolectric.internal;
+
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+import org.robolectric.util.Logger;
+import org.robolectric.util.Pair;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of {@link SdkEnvironment}s, which are expensive to build and get faster the longer they're used.
+ *
+ * The most recently used environments are held strongly, up to {@code capacity} per environment slot (see
+ * {@link ParallelRunnerScheduler}). Environments evicted from there are only softly held, so they're
+ * reused if a later test asks for them again unless the garbage collector needed their memory first.
+ */
+public class SdkEnvironmentPool {
+  private final int capacity;
+  private final LinkedHashMap<Key, SdkEnvironment> environments = new LinkedHashMap<Key, SdkEnvironment>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, SdkEnvironment> eldest) {
+      if (size() > capacity * (maxSlot + 1)) {
+        softEnvironments.put(eldest.getKey(), new SoftEnvironment(eldest.getKey(), eldest.getValue(), collectedEnvironments));
+        evictions++;
+        return true;
+      }
+      return false;
+    }
+  };
+  private final Map<Key, SoftEnvironment> softEnvironments = new HashMap<>();
+  private final ReferenceQueue<SdkEnvironment> collectedEnvironments = new ReferenceQueue<>();
+  private final ConcurrentMap<Key, FutureTask<SdkEnvironment>> builds = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor prewarmExecutor;
+
+  private int maxSlot = 0;
+  private long hits;
+  private long softHits;
+  private long misses;
+  private long evictions;
+  private long collections;
+  private long buildTimeNanos;
+
+  public SdkEnvironmentPool(int capacity) {
+    this(capacity, 1);
+  }
+
+  /**
+   * @param prewarmThreads how many environments to prewarm at once, usually the number of environment slots
+   */
+  public SdkEnvironmentPool(int capacity, int prewarmThreads) {
+    this.capacity = capacity;
+    this.prewarmExecutor = new ThreadPoolExecutor(prewarmThreads, prewarmThreads, 30, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "robolectric-prewarm");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    prewarmExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Returns the pooled environment for the given configuration, building it if necessary.
+   *
+   * Environments are built without holding the pool's lock, so requests for environments which are already built
+   * never wait for other environments to be built. Requests for an environment which is being built wait for that
+   * build rather than starting another one.
+   */
+  public SdkEnvironment get(final InstrumentingClassLoaderFactory factory, final SdkConfig sdkConfig, final int slot) {
+    final Key key = new Key(factory.getInstrumentationConfig(), sdkConfig, slot);
+    SdkEnvironment sdkEnvironment = getBuilt(key, slot);
+    if (sdkEnvironment != null) {
+      return sdkEnvironment;
+    }
+
+    FutureTask<SdkEnvironment> newBuild = new FutureTask<>(new Callable<SdkEnvironment>() {
+      @Override
+      public SdkEnvironment call() throws Exception {
+        // another build may have finished since we looked
+        SdkEnvironment sdkEnvironment = getBuilt(key, slot);
+        if (sdkEnvironment != null) {
+          return sdkEnvironment;
+        }
+
+        long startTime = System.nanoTime();
+        sdkEnvironment = factory.createSdkEnvironment(sdkConfig);
+        long buildTime = System.nanoTime() - startTime;
+        synchronized (SdkEnvironmentPool.this) {
+          misses++;
+          buildTimeNanos += buildTime;
+          environments.put(key, sdkEnvironment);
+        }
+        return sdkEnvironment;
+      }
+    });
+
+    FutureTask<SdkEnvironment> build = builds.putIfAbsent(key, newBuild);
+    if (build == null) {
+      build = newBuild;
+      try {
+        build.run();
+      } finally {
+        builds.remove(key, build);
+      }
+    }
+    return await(build);
+  }
+
+  private synchronized SdkEnvironment getBuilt(Key key, int slot) {
+    expungeCollectedEnvironments();
+    maxSlot = Math.max(maxSlot, slot);
+
+    SdkEnvironment sdkEnvironment = environments.get(key);
+    if (sdkEnvironment != null) {
+      hits++;
+      return sdkEnvironment;
+    }
+
+    SoftEnvironment softEnvironment = softEnvironments.remove(key);
+    sdkEnvironment = softEnvironment == null ? null : softEnvironment.get();
+    if (sdkEnvironment != null) {
+      softHits++;
+      environments.put(key, sdkEnvironment);
+    }
+    return sdkEnvironment;
+  }
+
+  private static SdkEnvironment await(FutureTask<SdkEnvironment> build) {
+    try {
+      return build.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+  }
+
+  /**
+   * Runs {@code warmer} in the background, typically to build and exercise environments which tests are going
+   * to need before the tests ask for them.
+   */
+  public void prewarm(final Runnable warmer) {
+    prewarmExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          warmer.run();
+        } catch (Throwable e) {
+          Logger.info("Couldn't prewarm SDK environment: %s", e);
+        }
+      }
+    });
+  }
+
+  public synchronized Statistics getStatistics() {
+    expungeCollectedEnvironments();
+    return new Statistics(environments.size(), softEnvironments.size(), hits, softHits, misses, evictions, collections, buildTimeNanos);
+  }
+
+  private void expungeCollectedEnvironments() {
+    SoftEnvironment collected;
+    while ((collected = (SoftEnvironment) collectedEnvironments.poll()) != null) {
+      if (softEnvironments.get(collected.key) == collected) {
+        softEnvironments.remove(collected.key);
+        collections++;
+      }
+    }
+  }
+
+  /**
+   * A snapshot of how well the pool is doing.
+   */
+  public static class Statistics {
+    private final int size;
+    private final int softSize;
+    private final long hits;
+    private final long softHits;
+    private final long misses;
+    private final long evictions;
+    private final long collections;
+    private final long buildTimeNanos;
+
+    Statistics(int size, int softSize, long hits, long softHits, long misses, long evictions, long collections, long buildTimeNanos) {
+      this.size = size;
+      this.softSize = softSize;
+      this.hits = hits;
+      this.softHits = softHits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.collections = collections;
+      this.buildTimeNanos = buildTimeNanos;
+    }
+
+    /** Environments which are strongly held. */
+    public int getSize() {
+      return size;
+    }
+
+    /** Evicted environments which haven't been garbage collected yet. */
+    public int getSoftSize() {
+      return softSize;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    /** Requests satisfied by an evicted environment which hadn't been garbage collected yet. */
+    public long getSoftHits() {
+      return softHits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    public long getEvictions() {
+      return evictions;
+    }
+
+    /** Evicted environments which were garbage collected. */
+    public long getCollections() {
+      return collections;
+    }
+
+    /** Total time spent building environments. */
+    public long getBuildTimeNanos() {
+      return buildTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+      return "SdkEnvironmentPool.Statistics{" +
+          "size=" + size +
+          ", softSize=" + softSize +
+          ", hits=" + hits +
+          ", softHits=" + softHits +
+          ", misses=" + misses +
+          ", evictions=" + evictions +
+          ", collections=" + collections +
+          ", buildTimeMillis=" + buildTimeNanos / 1000000 +
+          '}';
+    }
+  }
+
+  private static class Key extends Pair<Pair<InstrumentationConfiguration, SdkConfig>, Integer> {
+    Key(InstrumentationConfiguration instrumentationConfig, SdkConfig sdkConfig, int slot) {
+      super(Pair.create(instrumentationConfig, sdkConfig), slot);
+    }
+  }
+
+  private static class SoftEnvironment extends SoftReference<SdkEnvironment> {
+    private final Key key;
+
+    SoftEnvironment(Key key, SdkEnvironment sdkEnvironment, ReferenceQueue<SdkEnvironment> queue) {
+      super(sdkEnvironment, queue);
+      this.key = key;
+    }
+  }
+}
@@ -4,6 +4,7 @@ import android.R;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.TestLifecycle;
 import org.robolectric.annotation.Config;
@@ -20,10 +21,13 @@ import org.robolectric.internal.fakes.RoboResponseSource;
 import org.robolectric.manifest.AndroidManifest;
 import org.robolectric.res.ResourceLoader;
 import org.robolectric.res.ResourcePath;
+import org.robolectric.res.builder.CompiledXml;
+import org.robolectric.res.builder.CompiledXmlCache;
 import org.robolectric.res.builder.XmlBlock;
 import org.robolectric.util.TempDirectory;
 import org.robolectric.util.Transcript;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -113,6 +117,8 @@ public class InstrumentationConfiguration {
           ResourcePath.class,
           ResourceLoader.class,
           XmlBlock.class,
+          CompiledXml.class,
+          CompiledXmlCache.class,
           ClassHandler.class,
           ClassHandler.Plan.class,
           ShadowInvalidator.class,
@@ -248,6 +254,44 @@ public class InstrumentationConfiguration {
     return Collections.unmodifiableMap(classNameTranslations);
   }
 
+  /**
+   * Classes which are never instrumented, even if they're in an instrumented package.
+   *
+   * @return Set of fully-qualified class names.
+   */
+  Set<String> classesToNotInstrument() {
+    return classesToNotInstrument;
+  }
+
+  /**
+   * Feeds everything in this configuration to {@code hasher}, in a stable order, so configurations which differ
+   * in any way hash differently.
+   */
+  void putContents(Hasher hasher) {
+    putStrings(hasher, instrumentedPackages);
+    putStrings(hasher, new TreeSet<>(instrumentedClasses));
+    putStrings(hasher, new TreeSet<>(classesToNotInstrument));
+    TreeSet<String> translations = new TreeSet<>();
+    for (Map.Entry<String, String> translation : classNameTranslations.entrySet()) {
+      translations.add(translation.getKey() + "=" + translation.getValue());
+    }
+    putStrings(hasher, translations);
+    TreeSet<String> methods = new TreeSet<>();
+    for (MethodRef methodRef : interceptedMethods) {
+      methods.add(methodRef.className + "#" + methodRef.methodName);
+    }
+    putStrings(hasher, methods);
+    putStrings(hasher, new TreeSet<>(classesToNotAcquire));
+    putStrings(hasher, new TreeSet<>(packagesToNotAcquire));
+  }
+
+  private static void putStrings(Hasher hasher, Collection<String> strings) {
+    hasher.putInt(strings.size());
+    for (String string : strings) {
+      hasher.putInt(string.length()).putString(string, StandardCharsets.UTF_8);
+    }
+  }
+
   public boolean containsStubs(ClassInfo classInfo) {
     return classInfo.getName().startsWith("com.google.android.maps.");
   }
@@ -0,0 +1,125 @@
+package org.robolectric.internal.bytecode;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.robolectric.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * On-disk cache of the bytecode produced by {@link InstrumentingClassLoader}, shared by every JVM which uses
+ * the same cache directory.
+ *
+ * Entries are kept in a subdirectory named for a digest of the Robolectric version, the
+ * {@link InstrumentationConfiguration}, and the jars classes are loaded from, so changing any of those
+ * starts over with an empty cache. Cached classes are memory-mapped when they're read back.
+ */
+public class InstrumentedClassCache {
+  private final Path dir;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  InstrumentedClassCache(Path dir) {
+    this.dir = dir;
+  }
+
+  /**
+   * Returns a cache for classes instrumented with {@code config} from {@code urls}, or null if the
+   * classes can't be safely cached, e.g. because some of them come from a directory rather than a jar.
+   */
+  public static InstrumentedClassCache create(File baseDir, InstrumentationConfiguration config, URL[] urls, String robolectricVersion) {
+    Hasher hasher = Hashing.sha1().newHasher()
+        .putString(robolectricVersion, StandardCharsets.UTF_8)
+        .putBoolean(InvokeDynamic.ENABLED);
+    config.putContents(hasher);
+
+    for (URL url : urls) {
+      File jarFile;
+      try {
+        jarFile = new File(url.toURI());
+      } catch (URISyntaxException | IllegalArgumentException e) {
+        return null;
+      }
+
+      if (!jarFile.isFile()) {
+        return null;
+      }
+
+      hasher.putString(jarFile.getAbsolutePath(), StandardCharsets.UTF_8)
+          .putLong(jarFile.length())
+          .putLong(jarFile.lastModified());
+    }
+
+    Path dir = baseDir.toPath().resolve(hasher.hash().toString());
+    try {
+      Files.createDirectories(dir);
+    } catch (IOException e) {
+      Logger.info("Couldn't create instrumented class cache at %s: %s", dir, e.getMessage());
+      return null;
+    }
+    Logger.debug("Instrumented class cache location: %s", dir);
+    return new InstrumentedClassCache(dir);
+  }
+
+  /**
+   * Returns the cached bytecode for a class, or null if it hasn't been cached.
+   */
+  public ByteBuffer load(String className) {
+    Path file = fileFor(className);
+    if (Files.isRegularFile(file)) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        hits.incrementAndGet();
+        return buffer;
+      } catch (IOException e) {
+        Logger.debug("Couldn't read cached class %s: %s", className, e.getMessage());
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Stores bytecode for a class. The entry is written to a temporary file and renamed into place so
+   * concurrent readers in other JVMs never see a partial class.
+   */
+  public void store(String className, byte[] bytes) {
+    Path tmpFile = null;
+    try {
+      tmpFile = Files.createTempFile(dir, className, ".tmp");
+      Files.write(tmpFile, bytes);
+      Files.move(tmpFile, fileFor(className), StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      Logger.debug("Couldn't cache class %s: %s", className, e.getMessage());
+      if (tmpFile != null) {
+        try {
+          Files.deleteIfExists(tmpFile);
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  private Path fileFor(String className) {
+    return dir.resolve(className + ".class");
+  }
+}
@@ -28,6 +28,7 @@ import org.robolectric.internal.ShadowConstants;
 import org.robolectric.internal.ShadowedObject;
 import org.robolectric.util.Logger;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.invoke.CallSite;
@@ -37,6 +38,8 @@ import java.lang.invoke.MethodType;
 import java.lang.reflect.Modifier;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.security.ProtectionDomain;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -44,6 +47,8 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static java.lang.invoke.MethodType.methodType;
 import static org.objectweb.asm.Type.ARRAY;
@@ -54,7 +59,7 @@ import static org.robolectric.util.Util.readBytes;
 /**
  * Class loader that modifies the bytecode of Android classes to insert calls to Robolectric's shadow classes.
  */
-public class InstrumentingClassLoader extends ClassLoader implements Opcodes {
+public class InstrumentingClassLoader extends ClassLoader implements Opcodes, Closeable {
   private static final Type OBJECT_TYPE = Type.getType(Object.class);
   private static final Type ROBOLECTRIC_INTERNALS_TYPE = Type.getType(RobolectricInternals.class);
   private static final Type PLAN_TYPE = Type.getType(ClassHandler.Plan.class);
@@ -74,6 +79,9 @@ public class InstrumentingClassLoader extends ClassLoader implements Opcodes {
   private static final Handle BOOTSTRAP_INTRINSIC;
 
   static {
+    // classes are locked individually in loadClass, so independent classes can be loaded concurrently
+    registerAsParallelCapable();
+
     String className = Type.getInternalName(InvokeDynamicSupport.class);
 
     MethodType bootstrap =
@@ -91,13 +99,21 @@ public class InstrumentingClassLoader extends ClassLoader implements Opcodes {
 
   private final URLClassLoader urls;
   private final InstrumentationConfiguration config;
-  private final Map<String, Class> classes = new HashMap<>();
+  private final ConcurrentMap<String, Class> classes = new ConcurrentHashMap<>();
   private final Map<String, String> classesToRemap;
   private final Set<MethodRef> methodsToIntercept;
+  private final InstrumentedClassCache classCache;
+  private final PreinstrumentedJar preinstrumentedJar;
 
   public InstrumentingClassLoader(InstrumentationConfiguration config, URL... urls) {
+    this(config, null, null, urls);
+  }
+
+  public InstrumentingClassLoader(InstrumentationConfiguration config, InstrumentedClassCache classCache, PreinstrumentedJar preinstrumentedJar, URL... urls) {
     super(InstrumentingClassLoader.class.getClassLoader());
     this.config = config;
+    this.classCache = classCache;
+    this.preinstrumentedJar = preinstrumentedJar;
     this.urls = new URLClassLoader(urls, null);
     classesToRemap = convertToSlashes(config.classNameTranslations());
     methodsToIntercept = convertToSlashes(config.methodsToIntercept());
@@ -107,16 +123,25 @@ public class InstrumentingClassLoader extends ClassLoader implements Opcodes {
   }
 
   @Override
-  synchronized public Class loadClass(String name) throws ClassNotFoundException {
+  public Class loadClass(String name) throws ClassNotFoundException {
     Class<?> theClass = classes.get(name);
-    if (theClass != null) {
-      if (theClass == MissingClassMarker.class) {
-        throw new ClassNotFoundException(name);
-      } else {
-        return theClass;
+    if (theClass == null) {
+      synchronized (getClassLoadingLock(name)) {
+        theClass = classes.get(name);
+        if (theClass == null) {
+          theClass = acquireClass(name);
+        }
       }
     }
 
+    if (theClass == MissingClassMarker.class) {
+      throw new ClassNotFoundException(name);
+    }
+    return theClass;
+  }
+
+  private Class<?> acquireClass(String name) throws ClassNotFoundException {
+    Class<?> theClass;
     try {
       if (config.shouldAcquire(name)) {
         theClass = findClass(name);
@@ -141,29 +166,49 @@ public class InstrumentingClassLoader extends ClassLoader implements Opcodes {
     return super.getResourceAsStream(resName);
   }
 
+  /**
+   * Closes the jars this class loader reads classes from. Classes which haven't been loaded yet can't be loaded
+   * afterwards.
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      urls.close();
+    } finally {
+      if (preinstrumentedJar != null) {
+        preinstrumentedJar.close();
+      }
+    }
+  }
+
+  /**
+   * Returns the on-disk cache of instrumented classes used by this class loader, or null if there is none.
+   */
+  public InstrumentedClassCache getClassCache() {
+    return classCache;
+  }
+
   @Override
   protected Class<?> findClass(final String className) throws ClassNotFoundException {
     if (config.shouldAcquire(className)) {
-      final byte[] origClassBytes = getByteCode(className);
-
-      ClassNode classNode = new ClassNode(Opcodes.ASM4) {
-        @Override
-        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
-          desc = remapParamType(desc);
-          return super.visitField(access, name, desc, signature, value);
+      if (preinstrumentedJar != null) {
+        byte[] preinstrumentedBytes = preinstrumentedJar.load(className);
+        if (preinstrumentedBytes != null) {
+          ensurePackage(className);
+          return defineClass(className, preinstrumentedBytes, 0, preinstrumentedBytes.length);
         }
+      }
 
-        @Override
-        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-          MethodVisitor methodVisitor = super.visitMethod(access, name, remapParams(desc), signature, exceptions);
-          return new JSRInlinerAdapter(methodVisitor, access, name, desc, signature, exceptions);
+      if (classCache != null) {
+        ByteBuffer cachedBytes = classCache.load(className);
+        if (cachedBytes != null) {
+          ensurePackage(className);
+          return defineClass(className, cachedBytes, (ProtectionDomain) null);
         }
-      };
-
-      final ClassReader classReader = new ClassReader(origClassBytes);
-      classReader.accept(classNode, 0);
+      }
 
-      classNode.interfaces.add(Type.getInternalName(ShadowedObject.class));
+      final byte[] origClassBytes = getByteCode(className);
+      ClassNode classNode = readClassNode(origClassBytes);
 
       try {
         byte[] bytes;
@@ -173,6 +218,9 @@ public class InstrumentingClassLoader extends ClassLoader implements Opcodes {
         } else {
           bytes = origClassBytes;
         }
+        if (classCache != null && isFromUrls(className)) {
+          classCache.store(className, bytes);
+        }
         ensurePackage(className);
         return defineClass(className, bytes, 0, bytes.length);
       } catch (Exception e) {
@@ -186,6 +234,53 @@ public class InstrumentingClassLoader extends ClassLoader implements Opcodes {
     }
   }
 
+  /**
+   * Instruments a class without loading it.
+   *
+   * @param className The fully-qualified class name.
+   * @return The instrumented bytecode, or null if the class isn't one which should be instrumented.
+   * @throws ClassNotFoundException If the class can't be found or instrumented.
+   */
+  public byte[] instrumentClass(String className) throws ClassNotFoundException {
+    if (!config.shouldAcquire(className)) {
+      return null;
+    }
+
+    ClassNode classNode = readClassNode(getByteCode(className));
+    ClassInfo classInfo = new ClassInfo(className, classNode);
+    if (!config.shouldInstrument(classInfo)) {
+      return null;
+    }
+
+    try {
+      return getInstrumentedBytes(classNode, config.containsStubs(classInfo));
+    } catch (Exception e) {
+      throw new ClassNotFoundException("couldn't instrument " + className, e);
+    }
+  }
+
+  private ClassNode readClassNode(byte[] origClassBytes) {
+    ClassNode classNode = new ClassNode(Opcodes.ASM4) {
+      @Override
+      public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+        desc = remapParamType(desc);
+        return super.visitField(access, name, desc, signature, value);
+      }
+
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        MethodVisitor methodVisitor = super.visitMethod(access, name, remapParams(desc), signature, exceptions);
+        return new JSRInlinerAdapter(methodVisitor, access, name, desc, signature, exceptions);
+      }
+    };
+
+    final ClassReader classReader = new ClassReader(origClassBytes);
+    classReader.accept(classNode, 0);
+
+    classNode.interfaces.add(Type.getInternalName(ShadowedObject.class));
+    return classNode;
+  }
+
   protected byte[] getByteCode(String className) throws ClassNotFoundException {
     String classFilename = className.replace('.', '/') + ".class";
     try (InputStream classBytesStream = getResourceAsStream(classFilename)) {
@@ -197,13 +292,22 @@ public class InstrumentingClassLoader extends ClassLoader implements Opcodes {
     }
   }
 
+  // only classes from our own jars can be cached; anything else may change between runs
+  private boolean isFromUrls(String className) {
+    return urls.findResource(className.replace('.', '/') + ".class") != null;
+  }
+
   private void ensurePackage(final String className) {
     int lastDotIndex = className.lastIndexOf('.');
     if (lastDotIndex != -1) {
       String pckgName = className.substring(0, lastDotIndex);
       Package pckg = getPackage(pckgName);
       if (pckg == null) {
-        definePackage(pckgName, null, null, null, null, null, null, null);
+        try {
+          definePackage(pckgName, null, null, null, null, null, null, null);
+        } catch (IllegalArgumentException e) {
+          // another thread defined it first
+        }
       }
     }
   }
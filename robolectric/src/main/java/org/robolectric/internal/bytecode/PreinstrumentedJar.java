@@ -0,0 +1,215 @@
+package org.robolectric.internal.bytecode;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.robolectric.internal.SdkConfig;
+import org.robolectric.util.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.robolectric.util.Util.readBytes;
+
+/**
+ * A jar of classes which were instrumented ahead of time, so {@link InstrumentingClassLoader} can define them
+ * without doing any bytecode manipulation.
+ *
+ * Jars are built from {@code android-all} jars by running this class:
+ * <pre>
+ *   java org.robolectric.internal.bytecode.PreinstrumentedJar &lt;output dir&gt; &lt;android-all jar&gt;...
+ * </pre>
+ * or the {@code preinstrumentAndroidAll} Gradle task, and are used at runtime when the
+ * {@code robolectric.preinstrumentedJars.dir} system property points at the output directory.
+ *
+ * Only classes which are instrumented are stored. A jar records the Robolectric version, source jar, and the
+ * parts of the {@link InstrumentationConfiguration} which affect the bytecode of instrumented classes; it's
+ * ignored if any of them don't match.
+ */
+public class PreinstrumentedJar implements Closeable {
+  private static final String KEY_ATTRIBUTE = "Robolectric-Instrumentation-Key";
+
+  private final JarFile jarFile;
+
+  PreinstrumentedJar(JarFile jarFile) {
+    this.jarFile = jarFile;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 2) {
+      System.err.println("Usage: PreinstrumentedJar <output dir> <android-all jar>...");
+      System.exit(1);
+    }
+
+    File outputDir = new File(args[0]);
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IOException("couldn't create " + outputDir);
+    }
+
+    InstrumentationConfiguration config = InstrumentationConfiguration.newBuilder().build();
+    for (int i = 1; i < args.length; i++) {
+      File sourceJar = new File(args[i]);
+      File outputJar = new File(outputDir, fileNameFor(sourceJar));
+      System.out.println("Instrumenting " + sourceJar + " to " + outputJar);
+      write(config, sourceJar, outputJar, SdkConfig.getRobolectricVersion());
+    }
+  }
+
+  /**
+   * Instruments every class in {@code sourceJar} which {@code config} says should be instrumented,
+   * and writes them to {@code outputJar}.
+   */
+  public static void write(InstrumentationConfiguration config, File sourceJar, File outputJar, String robolectricVersion) throws IOException {
+    InstrumentingClassLoader classLoader = new InstrumentingClassLoader(config, sourceJar.toURI().toURL());
+
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().putValue(KEY_ATTRIBUTE, instrumentationKey(config, sourceJar.getName(), robolectricVersion));
+
+    File tmpJar = new File(outputJar.getPath() + ".tmp");
+    int instrumentedCount = 0;
+    try (JarFile in = new JarFile(sourceJar);
+         JarOutputStream out = new JarOutputStream(new FileOutputStream(tmpJar), manifest)) {
+      Enumeration<JarEntry> entries = in.entries();
+      while (entries.hasMoreElements()) {
+        String entryName = entries.nextElement().getName();
+        if (!entryName.endsWith(".class")) continue;
+
+        String className = entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.');
+        byte[] bytes;
+        try {
+          bytes = classLoader.instrumentClass(className);
+        } catch (ClassNotFoundException e) {
+          Logger.info("Couldn't instrument %s, it will be instrumented at runtime: %s", className, e.getMessage());
+          continue;
+        }
+
+        if (bytes != null) {
+          out.putNextEntry(new JarEntry(entryName));
+          out.write(bytes);
+          out.closeEntry();
+          instrumentedCount++;
+        }
+      }
+    }
+
+    if (!tmpJar.renameTo(outputJar)) {
+      outputJar.delete();
+      if (!tmpJar.renameTo(outputJar)) {
+        throw new IOException("couldn't rename " + tmpJar + " to " + outputJar);
+      }
+    }
+    Logger.info("Instrumented %d classes from %s", instrumentedCount, sourceJar);
+  }
+
+  /**
+   * Opens the pre-instrumented version of {@code sourceJarUrl} from {@code dir}.
+   *
+   * @return The jar, or null if there isn't one or it was built for a different configuration.
+   */
+  public static PreinstrumentedJar open(File dir, URL sourceJarUrl, InstrumentationConfiguration config, String robolectricVersion) {
+    String sourceJarName;
+    try {
+      sourceJarName = new File(sourceJarUrl.toURI()).getName();
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      Logger.info("Can't use pre-instrumented classes for %s: %s", sourceJarUrl, e.getMessage());
+      return null;
+    }
+    File file = new File(dir, fileNameFor(new File(sourceJarName)));
+    if (!file.isFile()) {
+      Logger.debug("No pre-instrumented jar at %s", file);
+      return null;
+    }
+
+    JarFile jarFile = null;
+    try {
+      jarFile = new JarFile(file);
+      Manifest manifest = jarFile.getManifest();
+      String key = manifest == null ? null : manifest.getMainAttributes().getValue(KEY_ATTRIBUTE);
+      if (!instrumentationKey(config, sourceJarName, robolectricVersion).equals(key)) {
+        Logger.info("Ignoring %s, it was instrumented for a different configuration", file);
+        jarFile.close();
+        return null;
+      }
+      Logger.debug("Loading pre-instrumented classes from: %s", file);
+      return new PreinstrumentedJar(jarFile);
+    } catch (IOException e) {
+      Logger.info("Couldn't read %s: %s", file, e.getMessage());
+      if (jarFile != null) {
+        try {
+          jarFile.close();
+        } catch (IOException ignored) {
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Returns the instrumented bytecode for a class, or null if it isn't in this jar.
+   */
+  public byte[] load(String className) {
+    JarEntry entry = jarFile.getJarEntry(className.replace('.', '/') + ".class");
+    if (entry == null) {
+      return null;
+    }
+
+    try (InputStream in = jarFile.getInputStream(entry)) {
+      return readBytes(in);
+    } catch (IOException e) {
+      Logger.debug("Couldn't read pre-instrumented class %s: %s", className, e.getMessage());
+      return null;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    jarFile.close();
+  }
+
+  static String instrumentationKey(InstrumentationConfiguration config, String sourceJarName, String robolectricVersion) {
+    Hasher hasher = Hashing.sha1().newHasher()
+        .putString(robolectricVersion, StandardCharsets.UTF_8)
+        .putString(sourceJarName, StandardCharsets.UTF_8)
+        .putBoolean(InvokeDynamic.ENABLED);
+
+    for (Map.Entry<String, String> translation : new TreeMap<>(config.classNameTranslations()).entrySet()) {
+      hasher.putString(translation.getKey(), StandardCharsets.UTF_8).putString(translation.getValue(), StandardCharsets.UTF_8);
+    }
+
+    TreeSet<String> interceptedMethods = new TreeSet<>();
+    for (MethodRef methodRef : config.methodsToIntercept()) {
+      interceptedMethods.add(methodRef.className + "#" + methodRef.methodName);
+    }
+    for (String interceptedMethod : interceptedMethods) {
+      hasher.putString(interceptedMethod, StandardCharsets.UTF_8);
+    }
+
+    for (String className : new TreeSet<>(config.classesToNotInstrument())) {
+      hasher.putString(className, StandardCharsets.UTF_8);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static String fileNameFor(File sourceJar) {
+    String name = sourceJar.getName();
+    if (name.endsWith(".jar")) {
+      name = name.substring(0, name.length() - ".jar".length());
+    }
+    return name + "-instrumented.jar";
+  }
+}
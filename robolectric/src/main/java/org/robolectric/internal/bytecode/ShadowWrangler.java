@@ -17,6 +17,7 @@ import org.robolectric.util.ReflectionHelpers.ClassParameter;
 import java.lang.reflect.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.lang.invoke.MethodHandles.constant;
 import static java.lang.invoke.MethodHandles.dropArguments;
@@ -50,16 +51,18 @@ public class ShadowWrangler implements ClassHandler {
   private static final ShadowConfig NO_SHADOW_CONFIG = new ShadowConfig(Object.class.getName(), true, false, false, -1, -1);
   private static final Object NO_SHADOW = new Object();
   private static final MethodHandle NO_SHADOW_HANDLE = constant(Object.class, NO_SHADOW);
+  /** Stands in for {@link #CALL_REAL_CODE_PLAN} in the plan cache, which can't hold nulls. */
+  private static final Object CALL_REAL_CODE_MARKER = new Object();
+  /** The maximum number of plans to cache per wrangler, or 0 for no limit. */
+  private static final int DEFAULT_PLAN_CACHE_SIZE = Integer.getInteger("robolectric.planCache.size", 0);
   private final ShadowMap shadowMap;
-  private int apiLevel;
+  private final int apiLevel;
   private final Map<Class, MetaShadow> metaShadowMap = new HashMap<>();
-  private final Map<String, Plan> planCache =
-      Collections.synchronizedMap(new LinkedHashMap<String, Plan>() {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
-          return size() > 500;
-        }
-      });
+  private final int planCacheSize;
+  private final ConcurrentHashMap<String, Object> planCache = new ConcurrentHashMap<>();
+  private final AtomicLong planCacheHits = new AtomicLong();
+  private final AtomicLong planCacheMisses = new AtomicLong();
+  private final AtomicLong planCacheEvictions = new AtomicLong();
   private final Map<Class, ShadowConfig> shadowConfigCache = new ConcurrentHashMap<>();
   private final ClassValue<ShadowConfig> shadowConfigs = new ClassValue<ShadowConfig>() {
     @Override protected ShadowConfig computeValue(Class<?> type) {
@@ -68,8 +71,13 @@ public class ShadowWrangler implements ClassHandler {
   };
 
   public ShadowWrangler(ShadowMap shadowMap, int apiLevel) {
+    this(shadowMap, apiLevel, DEFAULT_PLAN_CACHE_SIZE);
+  }
+
+  public ShadowWrangler(ShadowMap shadowMap, int apiLevel, int planCacheSize) {
     this.shadowMap = shadowMap;
     this.apiLevel = apiLevel;
+    this.planCacheSize = planCacheSize;
   }
 
   public static Class<?> loadClass(String paramType, ClassLoader classLoader) {
@@ -126,14 +134,46 @@ public class ShadowWrangler implements ClassHandler {
 
   @Override
   public Plan methodInvoked(String signature, boolean isStatic, Class<?> theClass) {
-    if (planCache.containsKey(signature)) {
-      return planCache.get(signature);
+    Object cached = planCache.get(signature);
+    if (cached != null) {
+      planCacheHits.incrementAndGet();
+      return cached == CALL_REAL_CODE_MARKER ? CALL_REAL_CODE_PLAN : (Plan) cached;
     }
+    planCacheMisses.incrementAndGet();
     Plan plan = calculatePlan(signature, isStatic, theClass);
-    planCache.put(signature, plan);
+    Object previous = planCache.putIfAbsent(signature, plan == CALL_REAL_CODE_PLAN ? CALL_REAL_CODE_MARKER : plan);
+    if (previous == null && planCacheSize > 0 && planCache.size() > planCacheSize) {
+      evictPlans(signature);
+    }
     return plan;
   }
 
+  /**
+   * Plans are cheap to recalculate, so when the cache is bounded we evict arbitrary entries rather than
+   * track usage on every call.
+   */
+  private void evictPlans(String keep) {
+    Iterator<String> signatures = planCache.keySet().iterator();
+    while (planCache.size() > planCacheSize && signatures.hasNext()) {
+      if (!signatures.next().equals(keep)) {
+        signatures.remove();
+        planCacheEvictions.incrementAndGet();
+      }
+    }
+  }
+
+  public long getPlanCacheHitCount() {
+    return planCacheHits.get();
+  }
+
+  public long getPlanCacheMissCount() {
+    return planCacheMisses.get();
+  }
+
+  public long getPlanCacheEvictionCount() {
+    return planCacheEvictions.get();
+  }
+
   @Override public MethodHandle findShadowMethod(Class<?> caller, String name, MethodType type,
       boolean isStatic) throws IllegalAccessException {
     ShadowConfig shadowConfig = shadowConfigs.get(caller);
@@ -533,11 +573,16 @@ public class ShadowWrangler implements ClassHandler {
     }
   }
 
+  /**
+   * Calls a shadow method reflectively. Once the JVM has generated an accessor for the method, that's faster than
+   * invoking a MethodHandle held in a field, which can't be inlined.
+   */
   private static class ShadowMethodPlan implements Plan {
     private final Method shadowMethod;
 
     public ShadowMethodPlan(Method shadowMethod) {
       this.shadowMethod = shadowMethod;
+      shadowMethod.setAccessible(true);
     }
 
     @Override
@@ -0,0 +1,378 @@
+package org.robolectric.internal.dependency;
+
+import org.robolectric.util.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps dependency jars in a local directory, so tests can run without going to the network.
+ *
+ * Jars are named the way {@link LocalDependencyResolver} expects, so jars put in the directory by hand are found
+ * too. Missing jars are fetched through another resolver, if there is one. Each fetched jar is checked against the
+ * SHA-1 Maven downloaded with it, if there is one, then renamed into the store in one step, so other processes never
+ * see a partial jar. While the store is being changed, a file lock keeps other processes out.
+ *
+ * The manifest has a line per stored jar: its file name, size, modification time and SHA-1, separated by tabs. Jars
+ * put in the store by hand are hashed and added to it the first time they're used, unless the store is read-only, in
+ * which case they're trusted without being read. A jar whose size and modification
+ * time still match is trusted without reading it. Otherwise it's hashed again, and fetched again if it no longer
+ * matches.
+ */
+public class ArtifactStoreDependencyResolver implements DependencyResolver {
+  static final String MANIFEST_FILE_NAME = "artifacts.manifest";
+  private static final String LOCK_FILE_NAME = ".artifacts.lock";
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  // file locks are held by the whole process, so threads need locking out separately
+  private static final Object PROCESS_LOCK = new Object();
+
+  private final File storeDir;
+  private final DependencyResolver dependencyResolver;
+  private volatile Map<String, Entry> manifest;
+  // set once the manifest turns out not to be writable, so jars put in the store by hand are just trusted
+  private volatile boolean readOnly;
+
+  /**
+   * @param dependencyResolver resolves jars which aren't in the store yet, or null to only use what's in it
+   */
+  public ArtifactStoreDependencyResolver(File storeDir, DependencyResolver dependencyResolver) {
+    this.storeDir = storeDir;
+    this.dependencyResolver = dependencyResolver;
+    this.manifest = readManifest();
+  }
+
+  @Override
+  public URL getLocalArtifactUrl(DependencyJar dependency) {
+    return getLocalArtifactUrls(dependency)[0];
+  }
+
+  @Override
+  public URL[] getLocalArtifactUrls(DependencyJar... dependencies) {
+    File[] files = new File[dependencies.length];
+    List<DependencyJar> missing = new ArrayList<>();
+    List<File> unrecorded = new ArrayList<>();
+    for (int i = 0; i < dependencies.length; i++) {
+      files[i] = new File(storeDir, fileName(dependencies[i]));
+      if (!isIntact(files[i])) {
+        missing.add(dependencies[i]);
+      } else if (!manifest.containsKey(files[i].getName())) {
+        unrecorded.add(files[i]);
+      }
+    }
+
+    if (!unrecorded.isEmpty() && !readOnly) {
+      record(unrecorded);
+    }
+
+    if (!missing.isEmpty()) {
+      if (dependencyResolver == null) {
+        StringBuilder problems = new StringBuilder();
+        for (DependencyJar dependency : missing) {
+          if (problems.length() > 0) {
+            problems.append("\n");
+          }
+          problems.append(describeProblem(new File(storeDir, fileName(dependency))));
+        }
+        throw new IllegalArgumentException(problems.toString());
+      }
+      fetch(missing);
+    }
+
+    URL[] urls = new URL[dependencies.length];
+    for (int i = 0; i < dependencies.length; i++) {
+      urls[i] = fileToUrl(files[i]);
+    }
+    return urls;
+  }
+
+  /**
+   * Returns the name {@link LocalDependencyResolver} expects the jar for {@code dependency} to have.
+   */
+  static String fileName(DependencyJar dependency) {
+    return dependency.getArtifactId() + "-" + dependency.getVersion()
+        + (dependency.getClassifier() == null ? "" : "-" + dependency.getClassifier())
+        + "." + dependency.getType();
+  }
+
+  private boolean isIntact(File file) {
+    if (!file.isFile() || !file.canRead()) {
+      return false;
+    }
+
+    Entry entry = manifest.get(file.getName());
+    if (entry == null) {
+      // put in the store by hand; it's recorded in the manifest before it's used
+      return true;
+    }
+    if (entry.matches(file)) {
+      return true;
+    }
+
+    // it changed since we read the manifest; it may have been fetched again by another process
+    Map<String, Entry> manifest = readManifest();
+    this.manifest = manifest;
+    entry = manifest.get(file.getName());
+    if (entry == null || entry.matches(file)) {
+      return true;
+    }
+    try {
+      if (!entry.sha1.equals(sha1(file))) {
+        return false;
+      }
+    } catch (IOException e) {
+      return false;
+    }
+
+    // only touched; don't hash it again in this process
+    manifest = new TreeMap<>(manifest);
+    manifest.put(file.getName(), new Entry(file.length(), file.lastModified(), entry.sha1));
+    this.manifest = manifest;
+    return true;
+  }
+
+  private String describeProblem(File file) {
+    if (!file.isFile()) {
+      return "Path is not a file: " + file;
+    } else if (!file.canRead()) {
+      return "Unable to read file: " + file;
+    } else {
+      return "File doesn't match its SHA-1 in " + MANIFEST_FILE_NAME + ": " + file;
+    }
+  }
+
+  private void fetch(List<DependencyJar> dependencies) {
+    URL[] sourceUrls = dependencyResolver.getLocalArtifactUrls(dependencies.toArray(new DependencyJar[dependencies.size()]));
+
+    if (!storeDir.isDirectory() && !storeDir.mkdirs()) {
+      throw new RuntimeException("couldn't create artifact store " + storeDir);
+    }
+
+    synchronized (PROCESS_LOCK) {
+      try (FileChannel channel = new RandomAccessFile(new File(storeDir, LOCK_FILE_NAME), "rw").getChannel();
+           FileLock ignored = channel.lock()) {
+        Map<String, Entry> manifest = readManifest();
+        this.manifest = manifest;
+        for (int i = 0; i < sourceUrls.length; i++) {
+          if (sourceUrls[i] == null) {
+            throw new RuntimeException("no artifacts found for " + dependencies.get(i));
+          }
+          File file = new File(storeDir, fileName(dependencies.get(i)));
+          // another process may have stored it while we were waiting for the lock
+          if (!isIntact(file) || !manifest.containsKey(file.getName())) {
+            manifest.put(file.getName(), store(urlToFile(sourceUrls[i]), file));
+          }
+        }
+        writeManifest(manifest);
+        this.manifest = manifest;
+      } catch (IOException e) {
+        throw new RuntimeException("couldn't store " + dependencies + " in " + storeDir, e);
+      }
+    }
+  }
+
+  /**
+   * Adds jars which were put in the store by hand to the manifest, so they're checked like fetched jars from now on.
+   * If the manifest can't be written, the jars are trusted instead; hashing them in every process would cost more
+   * than it's worth.
+   */
+  private void record(List<File> files) {
+    synchronized (PROCESS_LOCK) {
+      if (readOnly) {
+        return;
+      }
+      if (!storeDir.canWrite()) {
+        trustUnrecordedJars("it isn't writable");
+        return;
+      }
+      try (FileChannel channel = new RandomAccessFile(new File(storeDir, LOCK_FILE_NAME), "rw").getChannel();
+           FileLock ignored = channel.lock()) {
+        Map<String, Entry> manifest = readManifest();
+        for (File file : files) {
+          // another process may have recorded it while we were waiting for the lock
+          if (!manifest.containsKey(file.getName())) {
+            manifest.put(file.getName(), new Entry(file.length(), file.lastModified(), sha1(file)));
+          }
+        }
+        writeManifest(manifest);
+        this.manifest = manifest;
+      } catch (IOException e) {
+        trustUnrecordedJars(e.toString());
+      }
+    }
+  }
+
+  private void trustUnrecordedJars(String reason) {
+    readOnly = true;
+    Logger.strict("Can't record jars put in %s by hand, so they won't be checked: %s", storeDir, reason);
+  }
+
+  private Entry store(File source, File file) throws IOException {
+    File tempFile = File.createTempFile(file.getName(), ".tmp", storeDir);
+    try {
+      String sha1;
+      try (InputStream in = new FileInputStream(source);
+           OutputStream out = new FileOutputStream(tempFile)) {
+        sha1 = copy(in, out);
+      }
+
+      String expectedSha1 = readSha1File(new File(source.getPath() + ".sha1"));
+      if (expectedSha1 == null) {
+        Logger.strict("No SHA-1 to check %s against; storing it as %s", source, sha1);
+      } else if (!expectedSha1.equals(sha1)) {
+        throw new IOException(source + " has SHA-1 " + sha1 + " but " + expectedSha1 + " was expected");
+      }
+
+      moveAtomically(tempFile, file);
+      return new Entry(file.length(), file.lastModified(), sha1);
+    } finally {
+      tempFile.delete();
+    }
+  }
+
+  private Map<String, Entry> readManifest() {
+    Map<String, Entry> manifest = new TreeMap<>();
+    File manifestFile = new File(storeDir, MANIFEST_FILE_NAME);
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifestFile), UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t");
+        if (fields.length == 4) {
+          try {
+            manifest.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+          } catch (NumberFormatException e) {
+            // skip it; the jar will be hashed again
+          }
+        }
+      }
+    } catch (FileNotFoundException e) {
+      // nothing has been stored yet
+    } catch (IOException e) {
+      throw new RuntimeException("couldn't read " + manifestFile, e);
+    }
+    return manifest;
+  }
+
+  private void writeManifest(Map<String, Entry> manifest) throws IOException {
+    File tempFile = File.createTempFile(MANIFEST_FILE_NAME, ".tmp", storeDir);
+    try {
+      try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), UTF_8)) {
+        for (Map.Entry<String, Entry> entry : manifest.entrySet()) {
+          Entry value = entry.getValue();
+          writer.write(entry.getKey() + "\t" + value.size + "\t" + value.lastModified + "\t" + value.sha1 + "\n");
+        }
+      }
+      moveAtomically(tempFile, new File(storeDir, MANIFEST_FILE_NAME));
+    } finally {
+      tempFile.delete();
+    }
+  }
+
+  private static void moveAtomically(File from, File to) throws IOException {
+    try {
+      Files.move(from.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static String readSha1File(File sha1File) throws IOException {
+    if (!sha1File.isFile()) {
+      return null;
+    }
+    // usually just the hash, but sometimes followed by the file name
+    String contents = new String(Files.readAllBytes(sha1File.toPath()), UTF_8).trim();
+    String[] fields = contents.split("\\s+");
+    return fields[0].isEmpty() ? null : fields[0].toLowerCase();
+  }
+
+  static String sha1(File file) throws IOException {
+    try (InputStream in = new FileInputStream(file)) {
+      return copy(in, null);
+    }
+  }
+
+  /**
+   * Copies {@code in} to {@code out} if it isn't null, and returns the SHA-1 of what was copied.
+   */
+  private static String copy(InputStream in, OutputStream out) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+
+    byte[] buffer = new byte[64 * 1024];
+    int count;
+    while ((count = in.read(buffer)) != -1) {
+      digest.update(buffer, 0, count);
+      if (out != null) {
+        out.write(buffer, 0, count);
+      }
+    }
+
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  private static File urlToFile(URL url) {
+    try {
+      return new File(url.toURI());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return new File(url.getPath());
+    }
+  }
+
+  private static URL fileToUrl(File file) {
+    try {
+      return file.toURI().toURL();
+    } catch (MalformedURLException e) {
+      throw new IllegalArgumentException(
+          String.format("File \"%s\" cannot be represented as a URL: %s", file, e));
+    }
+  }
+
+  private static class Entry {
+    final long size;
+    final long lastModified;
+    final String sha1;
+
+    Entry(long size, long lastModified, String sha1) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.sha1 = sha1;
+    }
+
+    boolean matches(File file) {
+      return file.length() == size && file.lastModified() == lastModified;
+    }
+  }
+}
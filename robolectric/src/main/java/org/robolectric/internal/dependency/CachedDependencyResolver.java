@@ -8,6 +8,9 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Date;
 import java.util.zip.CRC32;
 
@@ -141,12 +144,23 @@ public class CachedDependencyResolver implements DependencyResolver {
 
     @Override
     public <T extends Serializable> boolean write(String id, T object) {
+      File tempFile = null;
       try {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(new File(dir, id)))) {
+        // written aside and moved into place, so other processes never load a partly written object
+        tempFile = Files.createTempFile(dir.toPath(), id, ".tmp").toFile();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(tempFile))) {
           out.writeObject(object);
-          return true;
         }
+        try {
+          Files.move(tempFile.toPath(), new File(dir, id).toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(tempFile.toPath(), new File(dir, id).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return true;
       } catch (IOException e) {
+        if (tempFile != null) {
+          tempFile.delete();
+        }
         return false;
       }
     }
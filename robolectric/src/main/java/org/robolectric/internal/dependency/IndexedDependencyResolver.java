@@ -0,0 +1,240 @@
+package org.robolectric.internal.dependency;
+
+import org.robolectric.util.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Resolves each dependency through another resolver (usually Maven) at most once per process, and remembers where
+ * it was found in an index file so later processes don't need the other resolver at all.
+ *
+ * Dependencies which are requested together are resolved in a single call to the other resolver. Requests for a
+ * dependency which is already being resolved wait for that resolution rather than starting another one. Calls to
+ * the other resolver are never made concurrently, since Maven's Ant tasks share state which isn't thread-safe.
+ *
+ * The index is a text file with a line per dependency: its coordinates (see {@link DependencyJar#getShortName()}),
+ * a tab, and the URL it was resolved to. Entries whose files have gone are resolved again.
+ */
+public class IndexedDependencyResolver implements DependencyResolver {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  // held while calling the other resolver; shared by every instance, since Maven's state is global
+  private static final Object RESOLVER_LOCK = new Object();
+
+  private final DependencyResolver dependencyResolver;
+  private final File indexFile;
+  private final Map<String, Resolution> resolutions = new HashMap<>();
+  // held while writing the index, so lookups don't wait for file I/O
+  private final Object indexLock = new Object();
+
+  /**
+   * @param indexFile where to read and write the index, or null to only remember dependencies in memory
+   */
+  public IndexedDependencyResolver(DependencyResolver dependencyResolver, File indexFile) {
+    this.dependencyResolver = dependencyResolver;
+    this.indexFile = indexFile;
+
+    if (indexFile != null) {
+      for (Map.Entry<String, URL> entry : readIndex(indexFile).entrySet()) {
+        resolutions.put(entry.getKey(), new Resolution(entry.getValue()));
+      }
+    }
+  }
+
+  @Override
+  public URL[] getLocalArtifactUrls(DependencyJar... dependencies) {
+    Resolution[] resolutions = resolve(dependencies);
+    URL[] urls = new URL[dependencies.length];
+    for (int i = 0; i < urls.length; i++) {
+      urls[i] = resolutions[i].get();
+    }
+    return urls;
+  }
+
+  @Override
+  public URL getLocalArtifactUrl(DependencyJar dependency) {
+    return getLocalArtifactUrls(dependency)[0];
+  }
+
+  private Resolution[] resolve(DependencyJar... dependencies) {
+    Resolution[] resolutions = new Resolution[dependencies.length];
+    final List<DependencyJar> unresolved = new ArrayList<>();
+    FutureTask<URL[]> batch = new FutureTask<>(new Callable<URL[]>() {
+      @Override
+      public URL[] call() throws Exception {
+        URL[] urls;
+        synchronized (RESOLVER_LOCK) {
+          urls = dependencyResolver.getLocalArtifactUrls(unresolved.toArray(new DependencyJar[unresolved.size()]));
+        }
+        if (indexFile != null) {
+          writeIndex(unresolved, urls);
+        }
+        return urls;
+      }
+    });
+
+    synchronized (this) {
+      for (int i = 0; i < dependencies.length; i++) {
+        String key = dependencies[i].getShortName();
+        Resolution resolution = this.resolutions.get(key);
+        if (resolution == null || !resolution.isUsable()) {
+          resolution = new Resolution(batch, unresolved.size());
+          unresolved.add(dependencies[i]);
+          this.resolutions.put(key, resolution);
+        }
+        resolutions[i] = resolution;
+      }
+    }
+
+    if (!unresolved.isEmpty()) {
+      batch.run();
+    }
+    return resolutions;
+  }
+
+  private void writeIndex(List<DependencyJar> dependencies, URL[] urls) {
+    synchronized (indexLock) {
+      doWriteIndex(dependencies, urls);
+    }
+  }
+
+  private void doWriteIndex(List<DependencyJar> dependencies, URL[] urls) {
+    // other processes may have added to the index since we read it
+    Map<String, URL> index = readIndex(indexFile);
+    for (int i = 0; i < urls.length; i++) {
+      if (urls[i] != null) {
+        index.put(dependencies.get(i).getShortName(), urls[i]);
+      }
+    }
+
+    File dir = indexFile.getAbsoluteFile().getParentFile();
+    File tempFile = null;
+    try {
+      tempFile = File.createTempFile(indexFile.getName(), ".tmp", dir);
+      try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), UTF_8)) {
+        for (Map.Entry<String, URL> entry : index.entrySet()) {
+          writer.write(entry.getKey() + "\t" + entry.getValue().toExternalForm() + "\n");
+        }
+      }
+      try {
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      Logger.info("Couldn't write dependency index %s: %s", indexFile, e);
+      if (tempFile != null) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  private static Map<String, URL> readIndex(File indexFile) {
+    Map<String, URL> index = new TreeMap<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        int tab = line.indexOf('\t');
+        if (tab > 0) {
+          try {
+            index.put(line.substring(0, tab), new URL(line.substring(tab + 1)));
+          } catch (MalformedURLException e) {
+            // skip it; it'll be resolved again
+          }
+        }
+      }
+    } catch (FileNotFoundException e) {
+      // nothing has been indexed yet
+    } catch (IOException e) {
+      Logger.info("Couldn't read dependency index %s: %s", indexFile, e);
+    }
+    return index;
+  }
+
+  private static boolean exists(URL url) {
+    if (!"file".equals(url.getProtocol())) {
+      return true;
+    }
+    try {
+      return new File(url.toURI()).exists();
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return new File(url.getPath()).exists();
+    }
+  }
+
+  private static class Resolution {
+    private final URL url;
+    private final FutureTask<URL[]> batch;
+    private final int index;
+
+    Resolution(URL url) {
+      this.url = url;
+      this.batch = null;
+      this.index = -1;
+    }
+
+    Resolution(FutureTask<URL[]> batch, int index) {
+      this.url = null;
+      this.batch = batch;
+      this.index = index;
+    }
+
+    URL get() {
+      if (batch == null) {
+        return url;
+      }
+
+      try {
+        return batch.get()[index];
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+      }
+    }
+
+    /**
+     * Returns false if this resolution failed, or its file has gone since.
+     */
+    boolean isUsable() {
+      if (batch != null && !batch.isDone()) {
+        return true;
+      }
+      try {
+        URL url = get();
+        return url != null && exists(url);
+      } catch (RuntimeException | Error e) {
+        return false;
+      }
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package org.robolectric.internal;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelRunnerSchedulerTest {
+
+  @Test
+  public void shouldUseSlotZeroOutsideOfWorkers() throws Exception {
+    assertThat(ParallelRunnerScheduler.currentSlot()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldRunChildrenConcurrentlyInDistinctSlots() throws Exception {
+    ParallelRunnerScheduler scheduler = new ParallelRunnerScheduler("test", 2);
+    final CountDownLatch bothRunning = new CountDownLatch(2);
+    final Set<Integer> slots = Collections.synchronizedSet(new HashSet<Integer>());
+
+    for (int i = 0; i < 2; i++) {
+      scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          slots.add(ParallelRunnerScheduler.currentSlot());
+          bothRunning.countDown();
+          try {
+            bothRunning.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      });
+    }
+    scheduler.finished();
+
+    assertThat(bothRunning.getCount()).isEqualTo(0);
+    assertThat(slots).hasSize(2).doesNotContain(0);
+  }
+
+  @Test
+  public void shouldRunChildrenAgainAfterFinishing() throws Exception {
+    ParallelRunnerScheduler scheduler = new ParallelRunnerScheduler("test", 2);
+    final AtomicInteger runs = new AtomicInteger();
+    Runnable child = new Runnable() {
+      @Override
+      public void run() {
+        runs.incrementAndGet();
+      }
+    };
+
+    scheduler.schedule(child);
+    scheduler.finished();
+    scheduler.schedule(child);
+    scheduler.finished();
+
+    assertThat(runs.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void finished_shouldDoNothingIfNothingWasScheduled() throws Exception {
+    new ParallelRunnerScheduler("test", 2).finished();
+  }
+}
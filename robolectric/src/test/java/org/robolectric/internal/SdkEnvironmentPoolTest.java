@@ -0,0 +1,98 @@
+package org.robolectric.internal;
+
+import org.junit.Test;
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SdkEnvironmentPoolTest {
+  private final SdkEnvironmentPool pool = new SdkEnvironmentPool(1);
+  private final InstrumentingClassLoaderFactory factory = new InstrumentingClassLoaderFactory(InstrumentationConfiguration.newBuilder().build(), null) {
+    @Override
+    SdkEnvironment createSdkEnvironment(SdkConfig sdkConfig) {
+      return new SdkEnvironment(sdkConfig, getClass().getClassLoader());
+    }
+  };
+
+  @Test
+  public void shouldReuseEnvironments() throws Exception {
+    SdkConfig sdkConfig = new SdkConfig(18);
+    SdkEnvironment sdkEnvironment = pool.get(factory, sdkConfig, 0);
+
+    assertThat(pool.get(factory, sdkConfig, 0)).isSameAs(sdkEnvironment);
+    assertThat(pool.getStatistics().getHits()).isEqualTo(1);
+    assertThat(pool.getStatistics().getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldKeepSeparateEnvironmentsPerSlot() throws Exception {
+    SdkConfig sdkConfig = new SdkConfig(18);
+
+    assertThat(pool.get(factory, sdkConfig, 1)).isNotSameAs(pool.get(factory, sdkConfig, 2));
+  }
+
+  @Test
+  public void shouldSoftlyHoldEvictedEnvironments() throws Exception {
+    SdkEnvironment sdkEnvironment = pool.get(factory, new SdkConfig(18), 0);
+    pool.get(factory, new SdkConfig(19), 0);
+
+    assertThat(pool.getStatistics().getEvictions()).isEqualTo(1);
+    assertThat(pool.get(factory, new SdkConfig(18), 0)).isSameAs(sdkEnvironment);
+    assertThat(pool.getStatistics().getSoftHits()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldBuildEnvironmentsWithoutMakingOtherRequestsWait() throws Exception {
+    final CountDownLatch buildStarted = new CountDownLatch(1);
+    final CountDownLatch finishBuild = new CountDownLatch(1);
+    final AtomicInteger builds = new AtomicInteger();
+    final InstrumentingClassLoaderFactory slowFactory = new InstrumentingClassLoaderFactory(InstrumentationConfiguration.newBuilder().build(), null) {
+      @Override
+      SdkEnvironment createSdkEnvironment(SdkConfig sdkConfig) {
+        if (sdkConfig.getApiLevel() == 19) {
+          builds.incrementAndGet();
+          buildStarted.countDown();
+          try {
+            finishBuild.await();
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+        }
+        return new SdkEnvironment(sdkConfig, getClass().getClassLoader());
+      }
+    };
+    SdkEnvironment builtEnvironment = pool.get(slowFactory, new SdkConfig(18), 0);
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    List<Future<SdkEnvironment>> requests = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      requests.add(executor.submit(new Callable<SdkEnvironment>() {
+        @Override
+        public SdkEnvironment call() throws Exception {
+          return pool.get(slowFactory, new SdkConfig(19), 0);
+        }
+      }));
+    }
+    assertThat(buildStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(pool.get(slowFactory, new SdkConfig(18), 0)).isSameAs(builtEnvironment);
+
+    finishBuild.countDown();
+    SdkEnvironment sdkEnvironment = requests.get(0).get();
+    for (Future<SdkEnvironment> request : requests) {
+      assertThat(request.get()).isSameAs(sdkEnvironment);
+    }
+    assertThat(builds.get()).isEqualTo(1);
+    executor.shutdown();
+  }
+}
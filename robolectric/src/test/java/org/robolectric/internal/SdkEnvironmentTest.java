@@ -0,0 +1,19 @@
+package org.robolectric.internal;
+
+import org.junit.Test;
+import org.robolectric.internal.bytecode.ShadowMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SdkEnvironmentTest {
+  private final SdkEnvironment sdkEnvironment = new SdkEnvironment(new SdkConfig(18), getClass().getClassLoader());
+
+  @Test
+  public void shouldShareClassHandlersForEqualShadowMaps() throws Exception {
+    ShadowMap shadowMap = ShadowMap.EMPTY.newBuilder().addShadowClass("a.Thing", "a.ShadowThing", true, false, false).build();
+    ShadowMap equalShadowMap = ShadowMap.EMPTY.newBuilder().addShadowClass("a.Thing", "a.ShadowThing", true, false, false).build();
+
+    assertThat(sdkEnvironment.getClassHandler(shadowMap)).isSameAs(sdkEnvironment.getClassHandler(equalShadowMap));
+    assertThat(sdkEnvironment.getClassHandler(shadowMap)).isNotSameAs(sdkEnvironment.getClassHandler(ShadowMap.EMPTY));
+  }
+}
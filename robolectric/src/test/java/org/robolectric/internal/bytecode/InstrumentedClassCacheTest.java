@@ -0,0 +1,73 @@
+package org.robolectric.internal.bytecode;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InstrumentedClassCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final InstrumentationConfiguration config = InstrumentationConfiguration.newBuilder().build();
+
+  @Test
+  public void shouldReturnNullAndCountMissWhenClassIsNotCached() throws Exception {
+    InstrumentedClassCache cache = new InstrumentedClassCache(temporaryFolder.getRoot().toPath());
+
+    assertThat(cache.load("foo.Bar")).isNull();
+    assertThat(cache.getHitCount()).isEqualTo(0);
+    assertThat(cache.getMissCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldLoadStoredClass() throws Exception {
+    InstrumentedClassCache cache = new InstrumentedClassCache(temporaryFolder.getRoot().toPath());
+    cache.store("foo.Bar", new byte[] {1, 2, 3});
+
+    ByteBuffer buffer = cache.load("foo.Bar");
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+
+    assertThat(bytes).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldNotCacheClassesFromDirectories() throws Exception {
+    File classesDir = temporaryFolder.newFolder("classes");
+
+    assertThat(InstrumentedClassCache.create(temporaryFolder.getRoot(), config, new URL[] {classesDir.toURI().toURL()}, "1.0")).isNull();
+  }
+
+  @Test
+  public void shouldShareEntriesBetweenCachesForTheSameJars() throws Exception {
+    File jar = temporaryFolder.newFile("some.jar", "not really a jar");
+    File cacheDir = temporaryFolder.newFolder("cache");
+    URL[] urls = {jar.toURI().toURL()};
+
+    InstrumentedClassCache.create(cacheDir, config, urls, "1.0").store("foo.Bar", new byte[] {1});
+
+    assertThat(InstrumentedClassCache.create(cacheDir, config, urls, "1.0").load("foo.Bar")).isNotNull();
+    assertThat(InstrumentedClassCache.create(cacheDir, config, urls, "2.0").load("foo.Bar")).isNull();
+  }
+
+  @Test
+  public void shouldNotShareEntriesBetweenDifferentConfigurations() throws Exception {
+    File jar = temporaryFolder.newFile("some.jar", "not really a jar");
+    File cacheDir = temporaryFolder.newFolder("cache");
+    URL[] urls = {jar.toURI().toURL()};
+
+    InstrumentedClassCache.create(cacheDir, config, urls, "1.0").store("foo.Bar", new byte[] {1});
+
+    InstrumentationConfiguration otherConfig = InstrumentationConfiguration.newBuilder().doNotAcquirePackage("foo.").build();
+    assertThat(InstrumentedClassCache.create(cacheDir, otherConfig, urls, "1.0").load("foo.Bar")).isNull();
+    otherConfig = InstrumentationConfiguration.newBuilder().doNotInstrumentClass("foo.Bar").build();
+    assertThat(InstrumentedClassCache.create(cacheDir, otherConfig, urls, "1.0").load("foo.Bar")).isNull();
+  }
+}
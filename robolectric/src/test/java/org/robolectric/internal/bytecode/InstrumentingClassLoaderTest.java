@@ -753,4 +753,33 @@ public class InstrumentingClassLoaderTest {
 
     transcript.assertEventsSoFar("find foo.AClass");
   }
+
+  @Test public void shouldLoadEachClassOnceWhenLoadingConcurrently() throws Exception {
+    final InstrumentingClassLoader classLoader = new InstrumentingClassLoader(InstrumentationConfiguration.newBuilder().build());
+    final Class<?>[] loadedClasses = new Class<?>[8];
+
+    Thread[] threads = new Thread[loadedClasses.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            loadedClasses[index] = classLoader.loadClass(AnExampleClass.class.getName());
+          } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    for (Class<?> loadedClass : loadedClasses) {
+      assertNotNull(loadedClass);
+      assertSame(loadedClasses[0], loadedClass);
+    }
+  }
 }
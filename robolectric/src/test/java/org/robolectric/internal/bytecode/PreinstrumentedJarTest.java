@@ -0,0 +1,96 @@
+package org.robolectric.internal.bytecode;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.robolectric.internal.ShadowConstants;
+import org.robolectric.internal.bytecode.testing.AnExampleClass;
+import org.robolectric.internal.bytecode.testing.AnUninstrumentedClass;
+import org.robolectric.test.TemporaryFolder;
+import org.robolectric.util.Util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PreinstrumentedJarTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final InstrumentationConfiguration config = InstrumentationConfiguration.newBuilder().build();
+  private File sourceJar;
+  private File outputDir;
+
+  @Before
+  public void setUp() throws Exception {
+    sourceJar = temporaryFolder.newFile("android-all.jar");
+    try (JarOutputStream out = new JarOutputStream(new FileOutputStream(sourceJar))) {
+      addClass(out, AnExampleClass.class);
+      addClass(out, AnUninstrumentedClass.class);
+    }
+    outputDir = temporaryFolder.newFolder("preinstrumented");
+    PreinstrumentedJar.write(config, sourceJar, new File(outputDir, "android-all-instrumented.jar"), "1.0");
+  }
+
+  @Test
+  public void shouldContainOnlyInstrumentedClasses() throws Exception {
+    PreinstrumentedJar jar = PreinstrumentedJar.open(outputDir, sourceJar.toURI().toURL(), config, "1.0");
+
+    assertThat(jar.load(AnExampleClass.class.getName())).isNotNull();
+    assertThat(jar.load(AnUninstrumentedClass.class.getName())).isNull();
+  }
+
+  @Test
+  public void shouldIgnoreJarBuiltByADifferentVersion() throws Exception {
+    assertThat(PreinstrumentedJar.open(outputDir, sourceJar.toURI().toURL(), config, "2.0")).isNull();
+  }
+
+  @Test
+  public void shouldIgnoreJarBuiltWithADifferentConfiguration() throws Exception {
+    InstrumentationConfiguration otherConfig = InstrumentationConfiguration.newBuilder()
+        .doNotInstrumentClass(AnExampleClass.class.getName())
+        .build();
+
+    assertThat(PreinstrumentedJar.open(outputDir, sourceJar.toURI().toURL(), otherConfig, "1.0")).isNull();
+  }
+
+  @Test
+  public void shouldFindJarsForSourceJarsWhosePathsNeedEscaping() throws Exception {
+    File sourceDir = temporaryFolder.newFolder("with space");
+    File escapedSourceJar = new File(sourceDir, "android all.jar");
+    assertThat(sourceJar.renameTo(escapedSourceJar)).isTrue();
+    PreinstrumentedJar.write(config, escapedSourceJar, new File(outputDir, "android all-instrumented.jar"), "1.0");
+
+    try (PreinstrumentedJar jar = PreinstrumentedJar.open(outputDir, escapedSourceJar.toURI().toURL(), config, "1.0")) {
+      assertThat(jar).isNotNull();
+      assertThat(jar.load(AnExampleClass.class.getName())).isNotNull();
+    }
+  }
+
+  @Test
+  public void classLoaderShouldDefinePreinstrumentedClasses() throws Exception {
+    PreinstrumentedJar jar = PreinstrumentedJar.open(outputDir, sourceJar.toURI().toURL(), config, "1.0");
+    InstrumentingClassLoader classLoader = new InstrumentingClassLoader(config, null, jar) {
+      @Override
+      protected byte[] getByteCode(String className) throws ClassNotFoundException {
+        throw new AssertionError("shouldn't read " + className);
+      }
+    };
+
+    Class<?> exampleClass = classLoader.loadClass(AnExampleClass.class.getName());
+    assertThat(exampleClass.getClassLoader()).isSameAs(classLoader);
+    assertThat(exampleClass.getDeclaredField(ShadowConstants.CLASS_HANDLER_DATA_FIELD_NAME)).isNotNull();
+  }
+
+  private void addClass(JarOutputStream out, Class<?> clazz) throws Exception {
+    String entryName = clazz.getName().replace('.', '/') + ".class";
+    out.putNextEntry(new JarEntry(entryName));
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream(entryName)) {
+      out.write(Util.readBytes(in));
+    }
+    out.closeEntry();
+  }
+}
@@ -10,6 +10,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 @SuppressWarnings("unchecked")
 public class ShadowWranglerUnitTest {
@@ -113,6 +114,67 @@ public class ShadowWranglerUnitTest {
     assertThat(new ShadowWrangler(shadowMap, 21).methodInvoked(methodName, false, DummyClass.class)).isNull();
   }
 
+  @Test
+  public void shadowMethodPlan_shouldConvertArgumentsAndReturnValue() throws Throwable {
+    ShadowMap shadowMap = new ShadowMap.Builder().addShadowClasses(ShadowDummyClass.class).build();
+    String methodName = internalName(DummyClass.class) + "/add(IJ)J";
+    ClassHandler.Plan plan = new ShadowWrangler(shadowMap, 20).methodInvoked(methodName, false, DummyClass.class);
+
+    assertThat(plan.run(new DummyClass(), new ShadowDummyClass(), new Object[] {1, 2L})).isEqualTo(3L);
+  }
+
+  @Test
+  public void shadowMethodPlan_shouldPropagateExceptionsFromShadowMethod() throws Throwable {
+    ShadowMap shadowMap = new ShadowMap.Builder().addShadowClasses(ShadowDummyClass.class).build();
+    String methodName = internalName(DummyClass.class) + "/explode()V";
+    ClassHandler.Plan plan = new ShadowWrangler(shadowMap, 20).methodInvoked(methodName, false, DummyClass.class);
+
+    try {
+      plan.run(new DummyClass(), new ShadowDummyClass(), new Object[0]);
+      fail("should have thrown");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("boom");
+    }
+  }
+
+  @Test
+  public void shadowMethodPlan_shouldRejectShadowOfTheWrongType() throws Throwable {
+    ShadowMap shadowMap = new ShadowMap.Builder().addShadowClasses(ShadowDummyClass.class).build();
+    String methodName = internalName(DummyClass.class) + "/methodWithoutRange()V";
+    ClassHandler.Plan plan = new ShadowWrangler(shadowMap, 20).methodInvoked(methodName, false, DummyClass.class);
+
+    try {
+      plan.run(new DummyClass(), new Object(), new Object[0]);
+      fail("should have thrown");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("doesn't extend ShadowDummyClass");
+    }
+  }
+
+  @Test
+  public void methodInvoked_shouldCachePlansIncludingCallsToRealCode() throws Throwable {
+    ShadowMap shadowMap = new ShadowMap.Builder().addShadowClasses(ShadowDummyClass.class).build();
+    ShadowWrangler wrangler = new ShadowWrangler(shadowMap, 18);
+    String methodName = internalName(DummyClass.class) + "/methodWithoutRange()V";
+
+    assertThat(wrangler.methodInvoked(methodName, false, DummyClass.class)).isNull();
+    assertThat(wrangler.methodInvoked(methodName, false, DummyClass.class)).isNull();
+    assertThat(wrangler.getPlanCacheMissCount()).isEqualTo(1);
+    assertThat(wrangler.getPlanCacheHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void methodInvoked_shouldEvictPlansBeyondCacheSize() throws Throwable {
+    ShadowMap shadowMap = new ShadowMap.Builder().addShadowClasses(ShadowDummyClass.class).build();
+    ShadowWrangler wrangler = new ShadowWrangler(shadowMap, 20, 2);
+    for (String method : new String[] {"methodWithoutRange", "methodFor20", "methodMin20", "methodMax20"}) {
+      String methodName = internalName(DummyClass.class) + "/" + method + "()V";
+      assertThat(wrangler.methodInvoked(methodName, false, DummyClass.class).describe()).contains(method);
+    }
+
+    assertThat(wrangler.getPlanCacheEvictionCount()).isEqualTo(2);
+  }
+
   public static class DummyClass {
   }
 
@@ -137,6 +199,16 @@ public class ShadowWranglerUnitTest {
     @Implementation(maxSdk = 20)
     public void methodMax20() {
     }
+
+    @Implementation
+    public long add(int a, long b) {
+      return a + b;
+    }
+
+    @Implementation
+    public void explode() {
+      throw new IllegalStateException("boom");
+    }
   }
 
   ///////////////////////
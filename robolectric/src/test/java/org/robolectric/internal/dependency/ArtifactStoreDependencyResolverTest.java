@@ -0,0 +1,208 @@
+package org.robolectric.internal.dependency;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class ArtifactStoreDependencyResolverTest {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final DependencyResolver delegate = mock(DependencyResolver.class);
+  private final DependencyJar dependency1 = new DependencyJar("group1", "artifact1", "1.0", null);
+  private final DependencyJar dependency2 = new DependencyJar("group2", "artifact2", "2.0", "classifier");
+  private File storeDir;
+  private File source1;
+  private File source2;
+
+  @Before
+  public void setUp() throws Exception {
+    storeDir = new File(temporaryFolder.getRoot(), "store");
+    source1 = write(temporaryFolder.newFile("source1.jar"), "contents of artifact1");
+    source2 = write(temporaryFolder.newFile("source2.jar"), "contents of artifact2");
+  }
+
+  @Test
+  public void whenOffline_shouldUseJarsPutInTheStoreByHand() throws Exception {
+    assertThat(storeDir.mkdir()).isTrue();
+    File jar = write(new File(storeDir, "artifact2-2.0-classifier.jar"), "by hand");
+
+    ArtifactStoreDependencyResolver resolver = new ArtifactStoreDependencyResolver(storeDir, null);
+
+    assertThat(resolver.getLocalArtifactUrl(dependency2)).isEqualTo(jar.toURI().toURL());
+    assertThat(Files.readAllLines(new File(storeDir, ArtifactStoreDependencyResolver.MANIFEST_FILE_NAME).toPath(), UTF_8))
+        .containsExactly("artifact2-2.0-classifier.jar\t" + jar.length() + "\t" + jar.lastModified() + "\t"
+            + ArtifactStoreDependencyResolver.sha1(jar));
+  }
+
+  @Test
+  public void whenOffline_shouldNoticeJarsPutInTheStoreByHandWhichHaveChangedSinceTheyWereFirstUsed() throws Exception {
+    assertThat(storeDir.mkdir()).isTrue();
+    File jar = write(new File(storeDir, "artifact2-2.0-classifier.jar"), "by hand");
+    new ArtifactStoreDependencyResolver(storeDir, null).getLocalArtifactUrl(dependency2);
+    write(jar, "changed by hand");
+
+    try {
+      new ArtifactStoreDependencyResolver(storeDir, null).getLocalArtifactUrl(dependency2);
+      fail("should have failed");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).startsWith("File doesn't match its SHA-1");
+    }
+  }
+
+  @Test
+  public void whenOffline_shouldTrustJarsPutInTheStoreByHandIfTheManifestCantBeWritten() throws Exception {
+    assertThat(storeDir.mkdir()).isTrue();
+    File jar = write(new File(storeDir, "artifact2-2.0-classifier.jar"), "by hand");
+    // stands in for a read-only store, which root can write to anyway
+    assertThat(new File(storeDir, ".artifacts.lock").mkdir()).isTrue();
+
+    ArtifactStoreDependencyResolver resolver = new ArtifactStoreDependencyResolver(storeDir, null);
+
+    assertThat(resolver.getLocalArtifactUrl(dependency2)).isEqualTo(url(jar));
+    assertThat(resolver.getLocalArtifactUrl(dependency2)).isEqualTo(url(jar));
+    assertThat(new File(storeDir, ArtifactStoreDependencyResolver.MANIFEST_FILE_NAME).exists()).isFalse();
+  }
+
+  @Test
+  public void whenOffline_shouldNameEveryMissingJar() throws Exception {
+    ArtifactStoreDependencyResolver resolver = new ArtifactStoreDependencyResolver(storeDir, null);
+
+    try {
+      resolver.getLocalArtifactUrls(dependency1, dependency2);
+      fail("should have failed");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("artifact1-1.0.jar").contains("artifact2-2.0-classifier.jar");
+    }
+  }
+
+  @Test
+  public void whenOffline_shouldFailForMissingJars() throws Exception {
+    ArtifactStoreDependencyResolver resolver = new ArtifactStoreDependencyResolver(storeDir, null);
+
+    try {
+      resolver.getLocalArtifactUrl(dependency1);
+      fail("should have failed");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).startsWith("Path is not a file: ");
+    }
+  }
+
+  @Test
+  public void shouldStoreMissingJarsWithTheirSha1() throws Exception {
+    when(delegate.getLocalArtifactUrls(dependency1, dependency2)).thenReturn(new URL[] {url(source1), url(source2)});
+    ArtifactStoreDependencyResolver resolver = new ArtifactStoreDependencyResolver(storeDir, delegate);
+
+    URL[] urls = resolver.getLocalArtifactUrls(dependency1, dependency2);
+
+    File jar1 = new File(storeDir, "artifact1-1.0.jar");
+    File jar2 = new File(storeDir, "artifact2-2.0-classifier.jar");
+    assertThat(urls).containsExactly(url(jar1), url(jar2));
+    assertThat(read(jar1)).isEqualTo("contents of artifact1");
+    assertThat(read(jar2)).isEqualTo("contents of artifact2");
+    assertThat(Files.readAllLines(new File(storeDir, ArtifactStoreDependencyResolver.MANIFEST_FILE_NAME).toPath(), UTF_8))
+        .containsExactly(
+            "artifact1-1.0.jar\t" + jar1.length() + "\t" + jar1.lastModified() + "\t" + ArtifactStoreDependencyResolver.sha1(source1),
+            "artifact2-2.0-classifier.jar\t" + jar2.length() + "\t" + jar2.lastModified() + "\t" + ArtifactStoreDependencyResolver.sha1(source2));
+    assertThat(storeDir.list()).containsOnly(jar1.getName(), jar2.getName(),
+        ArtifactStoreDependencyResolver.MANIFEST_FILE_NAME, ".artifacts.lock");
+
+    DependencyResolver otherDelegate = mock(DependencyResolver.class);
+    assertThat(new ArtifactStoreDependencyResolver(storeDir, otherDelegate).getLocalArtifactUrls(dependency1, dependency2))
+        .containsExactly(url(jar1), url(jar2));
+    verifyNoMoreInteractions(otherDelegate);
+  }
+
+  @Test
+  public void shouldOnlyFetchJarsWhichArentStored() throws Exception {
+    when(delegate.getLocalArtifactUrls(dependency1)).thenReturn(new URL[] {url(source1)});
+    when(delegate.getLocalArtifactUrls(dependency2)).thenReturn(new URL[] {url(source2)});
+    ArtifactStoreDependencyResolver resolver = new ArtifactStoreDependencyResolver(storeDir, delegate);
+
+    resolver.getLocalArtifactUrl(dependency1);
+    resolver.getLocalArtifactUrls(dependency1, dependency2);
+
+    verify(delegate).getLocalArtifactUrls(dependency1);
+    verify(delegate).getLocalArtifactUrls(dependency2);
+    verifyNoMoreInteractions(delegate);
+  }
+
+  @Test
+  public void shouldNotStoreJarsWhichDontMatchTheSha1MavenDownloaded() throws Exception {
+    write(new File(source1.getPath() + ".sha1"), "0123456789abcdef0123456789abcdef01234567  source1.jar");
+    when(delegate.getLocalArtifactUrls(dependency1)).thenReturn(new URL[] {url(source1)});
+    ArtifactStoreDependencyResolver resolver = new ArtifactStoreDependencyResolver(storeDir, delegate);
+
+    try {
+      resolver.getLocalArtifactUrl(dependency1);
+      fail("should have failed");
+    } catch (RuntimeException e) {
+      assertThat(e.getCause().getMessage()).contains("0123456789abcdef0123456789abcdef01234567");
+    }
+    assertThat(new File(storeDir, "artifact1-1.0.jar").exists()).isFalse();
+  }
+
+  @Test
+  public void shouldStoreJarsWhichMatchTheSha1MavenDownloaded() throws Exception {
+    write(new File(source1.getPath() + ".sha1"), ArtifactStoreDependencyResolver.sha1(source1).toUpperCase() + "\n");
+    when(delegate.getLocalArtifactUrls(dependency1)).thenReturn(new URL[] {url(source1)});
+
+    URL url = new ArtifactStoreDependencyResolver(storeDir, delegate).getLocalArtifactUrl(dependency1);
+
+    assertThat(url).isEqualTo(url(new File(storeDir, "artifact1-1.0.jar")));
+  }
+
+  @Test
+  public void shouldNoticeStoredJarsWhichHaveChanged() throws Exception {
+    when(delegate.getLocalArtifactUrls(dependency1)).thenReturn(new URL[] {url(source1)});
+    new ArtifactStoreDependencyResolver(storeDir, delegate).getLocalArtifactUrl(dependency1);
+    File jar = write(new File(storeDir, "artifact1-1.0.jar"), "truncated");
+
+    try {
+      new ArtifactStoreDependencyResolver(storeDir, null).getLocalArtifactUrl(dependency1);
+      fail("should have failed");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).startsWith("File doesn't match its SHA-1");
+    }
+
+    new ArtifactStoreDependencyResolver(storeDir, delegate).getLocalArtifactUrl(dependency1);
+    assertThat(read(jar)).isEqualTo("contents of artifact1");
+  }
+
+  @Test
+  public void shouldTrustStoredJarsWhichWereOnlyTouched() throws Exception {
+    when(delegate.getLocalArtifactUrls(dependency1)).thenReturn(new URL[] {url(source1)});
+    new ArtifactStoreDependencyResolver(storeDir, delegate).getLocalArtifactUrl(dependency1);
+    File jar = new File(storeDir, "artifact1-1.0.jar");
+    assertThat(jar.setLastModified(jar.lastModified() - 60000)).isTrue();
+
+    assertThat(new ArtifactStoreDependencyResolver(storeDir, null).getLocalArtifactUrl(dependency1)).isEqualTo(url(jar));
+  }
+
+  private static File write(File file, String contents) throws Exception {
+    Files.write(file.toPath(), contents.getBytes(UTF_8));
+    return file;
+  }
+
+  private static String read(File file) throws Exception {
+    return new String(Files.readAllBytes(file.toPath()), UTF_8);
+  }
+
+  private static URL url(File file) throws Exception {
+    return file.toURI().toURL();
+  }
+}
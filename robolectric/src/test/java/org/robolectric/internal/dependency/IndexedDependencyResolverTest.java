@@ -0,0 +1,164 @@
+package org.robolectric.internal.dependency;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class IndexedDependencyResolverTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final DependencyResolver delegate = mock(DependencyResolver.class);
+  private final DependencyJar dependency1 = new DependencyJar("group1", "artifact1", "1.0", null);
+  private final DependencyJar dependency2 = new DependencyJar("group2", "artifact2", "2.0", "classifier");
+  private File indexFile;
+  private URL url1;
+  private URL url2;
+
+  @Before
+  public void setUp() throws Exception {
+    indexFile = new File(temporaryFolder.getRoot(), "dependencies.index");
+    url1 = temporaryFolder.newFile("artifact1-1.0.jar").toURI().toURL();
+    url2 = temporaryFolder.newFile("artifact2-2.0-classifier.jar").toURI().toURL();
+  }
+
+  @Test
+  public void shouldResolveEachDependencyOnlyOnce() throws Exception {
+    when(delegate.getLocalArtifactUrls(dependency1, dependency2)).thenReturn(new URL[] {url1, url2});
+    IndexedDependencyResolver resolver = new IndexedDependencyResolver(delegate, null);
+
+    assertThat(resolver.getLocalArtifactUrls(dependency1, dependency2)).containsExactly(url1, url2);
+    assertThat(resolver.getLocalArtifactUrls(dependency2, dependency1)).containsExactly(url2, url1);
+    assertThat(resolver.getLocalArtifactUrl(dependency1)).isEqualTo(url1);
+
+    verify(delegate, times(1)).getLocalArtifactUrls(dependency1, dependency2);
+    verifyNoMoreInteractions(delegate);
+  }
+
+  @Test
+  public void shouldOnlyAskForDependenciesWhichHaventBeenResolved() throws Exception {
+    when(delegate.getLocalArtifactUrls(dependency1)).thenReturn(new URL[] {url1});
+    when(delegate.getLocalArtifactUrls(dependency2)).thenReturn(new URL[] {url2});
+    IndexedDependencyResolver resolver = new IndexedDependencyResolver(delegate, null);
+
+    resolver.getLocalArtifactUrl(dependency1);
+    assertThat(resolver.getLocalArtifactUrls(dependency1, dependency2)).containsExactly(url1, url2);
+
+    verify(delegate).getLocalArtifactUrls(dependency1);
+    verify(delegate).getLocalArtifactUrls(dependency2);
+    verifyNoMoreInteractions(delegate);
+  }
+
+  @Test
+  public void shouldUseTheIndexWrittenByAnotherResolver() throws Exception {
+    when(delegate.getLocalArtifactUrls(dependency1, dependency2)).thenReturn(new URL[] {url1, url2});
+    new IndexedDependencyResolver(delegate, indexFile).getLocalArtifactUrls(dependency1, dependency2);
+
+    assertThat(Files.readAllLines(indexFile.toPath(), Charset.forName("UTF-8"))).containsExactly(
+        "group1:artifact1:1.0\t" + url1,
+        "group2:artifact2:2.0:classifier\t" + url2);
+
+    DependencyResolver otherDelegate = mock(DependencyResolver.class);
+    IndexedDependencyResolver resolver = new IndexedDependencyResolver(otherDelegate, indexFile);
+    assertThat(resolver.getLocalArtifactUrls(dependency1, dependency2)).containsExactly(url1, url2);
+    verifyNoMoreInteractions(otherDelegate);
+  }
+
+  @Test
+  public void shouldResolveAgainWhenTheIndexedFileHasGone() throws Exception {
+    when(delegate.getLocalArtifactUrls(dependency1)).thenReturn(new URL[] {url1});
+    IndexedDependencyResolver resolver = new IndexedDependencyResolver(delegate, indexFile);
+    resolver.getLocalArtifactUrl(dependency1);
+
+    File movedFile = temporaryFolder.newFile("moved-artifact1-1.0.jar");
+    URL movedUrl = movedFile.toURI().toURL();
+    assertThat(new File(url1.toURI()).delete()).isTrue();
+    when(delegate.getLocalArtifactUrls(dependency1)).thenReturn(new URL[] {movedUrl});
+
+    assertThat(resolver.getLocalArtifactUrl(dependency1)).isEqualTo(movedUrl);
+    assertThat(new IndexedDependencyResolver(mock(DependencyResolver.class), indexFile).getLocalArtifactUrl(dependency1))
+        .isEqualTo(movedUrl);
+  }
+
+  @Test
+  public void shouldResolveAgainAfterAFailure() throws Exception {
+    when(delegate.getLocalArtifactUrls(dependency1))
+        .thenThrow(new RuntimeException("offline"))
+        .thenReturn(new URL[] {url1});
+    IndexedDependencyResolver resolver = new IndexedDependencyResolver(delegate, indexFile);
+    try {
+      resolver.getLocalArtifactUrl(dependency1);
+      fail("should have failed");
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage()).isEqualTo("offline");
+    }
+
+    assertThat(resolver.getLocalArtifactUrl(dependency1)).isEqualTo(url1);
+  }
+
+  @Test
+  public void shouldNeverCallTheOtherResolverConcurrently() throws Exception {
+    final AtomicInteger calls = new AtomicInteger();
+    final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+    DependencyResolver slowDelegate = new DependencyResolver() {
+      @Override
+      public URL getLocalArtifactUrl(DependencyJar dependency) {
+        return getLocalArtifactUrls(dependency)[0];
+      }
+
+      @Override
+      public URL[] getLocalArtifactUrls(DependencyJar... dependencies) {
+        int concurrentCalls = calls.incrementAndGet();
+        maxConcurrentCalls.set(Math.max(maxConcurrentCalls.get(), concurrentCalls));
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        } finally {
+          calls.decrementAndGet();
+        }
+        return new URL[] {dependencies[0] == dependency1 ? url1 : url2};
+      }
+    };
+    final IndexedDependencyResolver resolver = new IndexedDependencyResolver(slowDelegate, indexFile);
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<URL> future1 = executor.submit(new Callable<URL>() {
+        @Override
+        public URL call() throws Exception {
+          return resolver.getLocalArtifactUrl(dependency1);
+        }
+      });
+      Future<URL> future2 = executor.submit(new Callable<URL>() {
+        @Override
+        public URL call() throws Exception {
+          return resolver.getLocalArtifactUrl(dependency2);
+        }
+      });
+      assertThat(future1.get()).isEqualTo(url1);
+      assertThat(future2.get()).isEqualTo(url2);
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(maxConcurrentCalls.get()).isEqualTo(1);
+  }
+}
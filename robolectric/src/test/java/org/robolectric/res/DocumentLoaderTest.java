@@ -0,0 +1,60 @@
+package org.robolectric.res;
+
+import com.ximpleware.VTDNav;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.robolectric.util.TestUtil.testResources;
+
+public class DocumentLoaderTest {
+
+  @Test
+  public void shouldProcessFilesInTheOrderTheyAreFound() throws Exception {
+    RecordingLoader loader = new RecordingLoader();
+    new DocumentLoader(testResources()).load("layout", loader);
+
+    List<String> expected = new ArrayList<>();
+    for (FsFile dir : testResources().getResourceBase().listFiles()) {
+      if (dir.getName().startsWith("layout")) {
+        for (FsFile file : dir.listFiles()) {
+          if (file.getName().endsWith(".xml")) expected.add(file.getPath());
+        }
+      }
+    }
+
+    assertThat(loader.processed).hasSize(expected.size()).isEqualTo(expected);
+  }
+
+  @Test
+  public void shouldHandEachFileItsPreparedValue() throws Exception {
+    RecordingLoader loader = new RecordingLoader();
+    new DocumentLoader(testResources()).load("values", loader);
+
+    assertThat(loader.mismatches).isEmpty();
+  }
+
+  private static class RecordingLoader extends XmlLoader {
+    final List<String> processed = new ArrayList<>();
+    final List<String> mismatches = Collections.synchronizedList(new ArrayList<String>());
+
+    @Override
+    protected Object prepareResourceXml(FsFile xmlFile, VTDNav vtdNav, String packageName) throws Exception {
+      return xmlFile.getPath();
+    }
+
+    @Override
+    protected void processResourceXml(FsFile xmlFile, VTDNav vtdNav, String packageName, Object prepared) throws Exception {
+      if (!xmlFile.getPath().equals(prepared)) mismatches.add(xmlFile.getPath());
+      processed.add(xmlFile.getPath());
+    }
+
+    @Override
+    protected void processResourceXml(FsFile xmlFile, XpathResourceXmlLoader.XmlNode xmlNode, XmlContext xmlContext) throws Exception {
+      throw new AssertionError();
+    }
+  }
+}
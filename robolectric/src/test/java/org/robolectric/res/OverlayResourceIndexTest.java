@@ -34,6 +34,7 @@ public class OverlayResourceIndexTest {
     assertThat(overlayResourceIndex.getResName(456)).isNull();
   }
 
+  // like an index from outside this package, which can't see ResourceIdTable
   private static class DummyResourceIndex extends ResourceIndex {
     private final String packageName;
 
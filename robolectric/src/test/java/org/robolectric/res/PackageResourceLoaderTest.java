@@ -73,4 +73,16 @@ public class PackageResourceLoaderTest {
     assertThat(value).describedAs("Item color from gradle output is not loaded").isNotNull();
     assertThat(value.asString()).isEqualTo("1.0");
   }
+
+  @Test
+  public void shouldOnlyLoadTheResourcesItNeeds() throws Exception {
+    PackageResourceLoader loader = new PackageResourceLoader(testResources());
+    loader.getValue(new ResName("org.robolectric", "string", "hello"), "");
+    assertThat(loader.getLoadedFamilies()).containsOnly("values");
+    assertThat(loader.getLoadedTypes()).containsOnly("string");
+
+    assertThat(loader.getXml(new ResName("org.robolectric", "layout", "main"), "")).isNotNull();
+    assertThat(loader.getLoadedFamilies()).containsOnly("values", "layout");
+    assertThat(loader.getLoadedTypes()).containsOnly("string", "layout");
+  }
 }
@@ -159,6 +159,73 @@ public class ResBundleTest {
         "sh300dp"), "sw320dp-sh320dp").getValue());
   }
 
+  @Test
+  public void shouldPreferLocaleOverOtherQualifiers() throws Exception {
+    assertEquals("en-rGB", ResBundle.pick(asValues(
+        "",
+        "en",
+        "en-rUS",
+        "en-rGB",
+        "land-night",
+        "sw300dp-night"), "en-rGB-sw320dp-land-night").getValue());
+  }
+
+  @Test
+  public void shouldEliminateContradictingQualifiers() throws Exception {
+    assertEquals("notnight-v14", ResBundle.pick(asValues(
+        "night",
+        "ldrtl",
+        "car",
+        "notnight-v14",
+        "mcc310"), "mcc311-ldltr-notnight-v21").getValue());
+  }
+
+  @Test
+  public void shouldPreferClosestDensityScalingDown() throws Exception {
+    assertEquals("xxhdpi", ResBundle.pick(asValues(
+        "",
+        "mdpi",
+        "hdpi",
+        "xxhdpi"), "xhdpi").getValue());
+    assertEquals("anydpi", ResBundle.pick(asValues(
+        "xxhdpi",
+        "anydpi"), "xhdpi").getValue());
+    assertEquals("", ResBundle.pick(asValues(
+        "xxhdpi",
+        ""), "mdpi").getValue());
+  }
+
+  @Test
+  public void shouldNotEliminateOtherDensities() throws Exception {
+    assertEquals("port-ldpi", ResBundle.pick(asValues(
+        "",
+        "port-ldpi"), "port-xhdpi").getValue());
+  }
+
+  @Test
+  public void getValueShouldPickAgainWhenQualifiersChange() throws Exception {
+    ResBundle<String> bundle = new ResBundle<>();
+    ResName resName = new ResName("pkg", "string", "greeting");
+    bundle.putValue(resName, new Value<>("", "hello"));
+    bundle.putValue(resName, new Value<>("fr", "bonjour"));
+
+    assertThat(bundle.get(resName, "fr")).isEqualTo("bonjour");
+    assertThat(bundle.getValue(resName, "fr")).isSameAs(bundle.getValue(resName, "fr"));
+    assertThat(bundle.get(resName, "en")).isEqualTo("hello");
+    assertThat(bundle.get(resName, "fr")).isEqualTo("bonjour");
+  }
+
+  @Test
+  public void getValueShouldPickAgainWhenValuesAreAdded() throws Exception {
+    ResBundle<String> bundle = new ResBundle<>();
+    ResName resName = new ResName("pkg", "string", "greeting");
+    bundle.putValue(resName, new Value<>("", "hello"));
+    assertThat(bundle.get(resName, "fr")).isEqualTo("hello");
+
+    bundle.putValue(resName, new Value<>("fr", "bonjour"));
+    assertThat(bundle.get(resName, "fr")).isEqualTo("bonjour");
+  }
+
   private List<Value<String>> asValues(String... qualifierses) {
     List<Value<String>> values = new ArrayList<>();
     for (String qualifiers : qualifierses) {
@@ -62,4 +62,23 @@ public class ResourceExtractorTest {
     assertThat(resourceIndex.getResourceId(new ResName("org.robolectric.lib2", "string", "in_all_libs"))).isEqualTo(R.string.in_all_libs);
     assertThat(resourceIndex.getResourceId(new ResName("org.robolectric.lib3", "string", "in_all_libs"))).isEqualTo(R.string.in_all_libs);
   }
+
+  @Test
+  public void shouldShareResourceIdsBetweenExtractorsForTheSameRClasses() throws Exception {
+    ResourceExtractor resourceExtractor = new ResourceExtractor(systemResources());
+    ResourceExtractor otherResourceExtractor = new ResourceExtractor(systemResources());
+
+    assertThat(resourceExtractor.getResourceIdTable()).isSameAs(otherResourceExtractor.getResourceIdTable());
+    assertThat(otherResourceExtractor.getResourceId(new ResName("android", "id", "text1"))).isEqualTo(android.R.id.text1);
+  }
+
+  @Test
+  public void shouldGenerateIdsForUndeclaredSystemResources() throws Exception {
+    ResName resName = new ResName("android", "string", "not_in_r_class");
+    Integer id = resourceIndex.getResourceId(resName);
+
+    assertThat(id).isNotNull();
+    assertThat(resourceIndex.getResourceId(resName)).isEqualTo(id);
+    assertThat(resourceIndex.getResName(id)).isEqualTo(resName);
+  }
 }
@@ -0,0 +1,56 @@
+package org.robolectric.res.builder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.res.Fs;
+import org.robolectric.res.FsFile;
+
+import java.io.File;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.robolectric.util.TestUtil.testResources;
+
+@RunWith(JUnit4.class)
+public class CompiledXmlCacheTest {
+  private final FsFile main = testResources().getResourceBase().join("layout", "main.xml");
+  private final FsFile preferences = testResources().getResourceBase().join("xml", "preferences.xml");
+
+  @Test
+  public void shouldCompileEachFileOnce() throws Exception {
+    CompiledXmlCache cache = new CompiledXmlCache(Long.MAX_VALUE);
+
+    CompiledXml compiledXml = cache.get(main);
+    assertThat(cache.get(main)).isSameAs(compiledXml);
+    assertThat(cache.getMisses()).isEqualTo(1);
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getSize()).isEqualTo(compiledXml.getByteCount());
+  }
+
+  @Test
+  public void shouldKeyFilesByAbsolutePath() throws Exception {
+    CompiledXmlCache cache = new CompiledXmlCache(Long.MAX_VALUE);
+    FsFile absoluteMain = Fs.newFile(new File(main.getPath()).getAbsoluteFile());
+
+    assertThat(cache.get(absoluteMain)).isSameAs(cache.get(main));
+    assertThat(cache.getMisses()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedFilesWhenFull() throws Exception {
+    CompiledXmlCache cache = new CompiledXmlCache(new CompiledXmlCache(Long.MAX_VALUE).get(main).getByteCount());
+
+    cache.get(main);
+    cache.get(preferences);
+    assertThat(cache.getEvictions()).isGreaterThanOrEqualTo(1);
+    assertThat(cache.getSize()).isLessThanOrEqualTo(cache.get(main).getByteCount());
+  }
+
+  @Test
+  public void xmlBlockShouldCompileItsFileWhenUsed() throws Exception {
+    XmlBlock block = XmlBlock.create(main, "org.robolectric");
+
+    assertThat(block.getFilename()).isEqualTo(main.getPath());
+    assertThat(block.getCompiledXml().getName(0)).isEqualTo("LinearLayout");
+  }
+}
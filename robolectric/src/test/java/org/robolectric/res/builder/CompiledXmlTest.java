@@ -0,0 +1,105 @@
+package org.robolectric.res.builder;
+
+import com.ximpleware.VTDGen;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.robolectric.res.FsFile;
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.robolectric.util.TestUtil.testResources;
+
+@RunWith(JUnit4.class)
+public class CompiledXmlTest {
+
+  @Test
+  public void shouldCompileTheSameTreeFromVtdAndDom() throws Exception {
+    int compared = 0;
+    for (FsFile dir : testResources().getResourceBase().listFiles()) {
+      if (!dir.getName().startsWith("layout") && !dir.getName().startsWith("xml")) continue;
+      for (FsFile file : dir.listFiles()) {
+        if (!file.getName().endsWith(".xml")) continue;
+        byte[] bytes = file.getBytes();
+        assertThat(describe(fromVtd(bytes))).describedAs(file.getPath()).isEqualTo(describe(fromDom(bytes)));
+        compared++;
+      }
+    }
+    assertThat(compared).isGreaterThan(0);
+  }
+
+  @Test
+  public void shouldDropCommentsAndWhitespace() throws Exception {
+    CompiledXml xml = fromVtd("<a>\n  <!-- comment -->\n  <b/>text</a>".getBytes());
+
+    int b = xml.getFirstChild(0);
+    assertThat(xml.getName(b)).isEqualTo("b");
+    assertThat(xml.getKind(xml.getNextSibling(b))).isEqualTo(CompiledXml.TEXT);
+    assertThat(xml.getText(0)).isEqualTo("text");
+  }
+
+  @Test
+  public void shouldResolveNamespaces() throws Exception {
+    CompiledXml xml = fromVtd(("<a xmlns:android=\"http://schemas.android.com/apk/res/android\">"
+        + "<b android:id=\"@+id/b\" style=\"@style/s\"/></a>").getBytes());
+
+    int b = xml.getFirstChild(0);
+    assertThat(xml.getAttributeValue(b, "http://schemas.android.com/apk/res/android", "id")).isEqualTo("@+id/b");
+    assertThat(xml.getAttributeValue(b, null, "style")).isEqualTo("@style/s");
+    assertThat(xml.getAttributeValue(b, null, "id")).isNull();
+    assertThat(xml.getAttributeValue(0, CompiledXml.XMLNS_NS, "android")).isEqualTo("http://schemas.android.com/apk/res/android");
+  }
+
+  @Test
+  public void shouldKeepWhitespaceFromCharacterReferencesLikeDom() throws Exception {
+    byte[] bytes = ("<a text=\"a&#10;b&#9;c&#13;d\n\te &lt;&amp;&#x41;\">"
+        + "one&#13;\r\ntwo&#10;three&#9;&gt;</a>").getBytes();
+
+    assertThat(describe(fromVtd(bytes))).isEqualTo(describe(fromDom(bytes)));
+    CompiledXml xml = fromVtd(bytes);
+    assertThat(xml.getAttributeValue(0, null, "text")).isEqualTo("a\nb\tc\rd  e <&A");
+    assertThat(xml.getText(0)).isEqualTo("one\r\ntwo\nthree\t>");
+  }
+
+  private static CompiledXml fromVtd(byte[] bytes) throws Exception {
+    VTDGen vtdGen = new VTDGen();
+    vtdGen.setDoc(bytes);
+    vtdGen.parse(true);
+    return CompiledXml.from(vtdGen.getNav());
+  }
+
+  private static CompiledXml fromDom(byte[] bytes) throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    Document document = factory.newDocumentBuilder().parse(new ByteArrayInputStream(bytes));
+    return CompiledXml.from(document);
+  }
+
+  private static String describe(CompiledXml xml) {
+    StringBuilder description = new StringBuilder();
+    describe(xml, 0, description);
+    return description.toString();
+  }
+
+  private static void describe(CompiledXml xml, int node, StringBuilder description) {
+    description.append(xml.getKind(node)).append(' ').append(xml.getName(node))
+        .append(" ns=").append(xml.getNamespace(node));
+    if (xml.getKind(node) == CompiledXml.ELEMENT) {
+      for (int i = 0; i < xml.getAttributeCount(node); i++) {
+        description.append(" [").append(xml.getAttributeNamespace(node, i))
+            .append(' ').append(xml.getAttributeName(node, i))
+            .append(' ').append(xml.getAttributeLocalName(node, i))
+            .append('=').append(xml.getAttributeValue(node, i)).append(']');
+      }
+    } else {
+      description.append(" text=").append(xml.getText(node));
+    }
+    description.append('\n');
+    for (int child = xml.getFirstChild(node); child != -1; child = xml.getNextSibling(child)) {
+      describe(xml, child, description);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package org.robolectric.shadows;
+
+import android.util.TypedValue;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.TestRunners;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(TestRunners.WithDefaults.class)
+public class ResourceHelperTest {
+
+  @Test
+  public void getColor_shouldParseAllFormats() throws Exception {
+    assertThat(ResourceHelper.getColor("#abc")).isEqualTo(0xffaabbcc);
+    assertThat(ResourceHelper.getColor("#8abc")).isEqualTo(0x88aabbcc);
+    assertThat(ResourceHelper.getColor("#A1B2C3")).isEqualTo(0xffa1b2c3);
+    assertThat(ResourceHelper.getColor("#802C76AD")).isEqualTo(0x802c76ad);
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void getColor_shouldRejectValuesWithoutHash() throws Exception {
+    ResourceHelper.getColor("abc");
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void getColor_shouldRejectNonHexadecimalValues() throws Exception {
+    ResourceHelper.getColor("#abg");
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void getColor_shouldRejectValuesLongerThan32Bits() throws Exception {
+    ResourceHelper.getColor("#123456789");
+  }
+
+  @Test
+  public void parseFloatAttribute_shouldParseDimensions() throws Exception {
+    assertDimension(" 16dp ", TypedValue.COMPLEX_UNIT_DIP, 16f);
+    assertDimension("1.5dip", TypedValue.COMPLEX_UNIT_DIP, 1.5f);
+    assertDimension("-2.25sp", TypedValue.COMPLEX_UNIT_SP, -2.25f);
+    assertDimension("0.5px", TypedValue.COMPLEX_UNIT_PX, 0.5f);
+    assertDimension("12345.75mm", TypedValue.COMPLEX_UNIT_MM, 12345.75f);
+  }
+
+  @Test
+  public void parseFloatAttribute_shouldParseFractions() throws Exception {
+    TypedValue typedValue = parse("25%", false);
+    assertThat(typedValue.type).isEqualTo(TypedValue.TYPE_FRACTION);
+    assertThat(typedValue.getFraction(1, 1)).isEqualTo(0.25f);
+
+    typedValue = parse("50%p", false);
+    assertThat(typedValue.type).isEqualTo(TypedValue.TYPE_FRACTION);
+    assertThat(typedValue.getFraction(1, 2)).isEqualTo(1f);
+  }
+
+  @Test
+  public void parseFloatAttribute_shouldParseFloats() throws Exception {
+    TypedValue typedValue = parse("3.14159", false);
+    assertThat(typedValue.type).isEqualTo(TypedValue.TYPE_FLOAT);
+    assertThat(typedValue.getFloat()).isEqualTo(3.14159f);
+
+    assertThat(parse("0.000000000001", false).getFloat()).isEqualTo(0.000000000001f);
+    assertThat(parse("123456789012", false).getFloat()).isEqualTo(123456789012f);
+  }
+
+  @Test
+  public void parseFloatAttribute_shouldUseDpWhenAUnitIsRequiredButMissing() throws Exception {
+    TypedValue typedValue = parse("8", true);
+    assertThat(typedValue.type).isEqualTo(TypedValue.TYPE_DIMENSION);
+    assertThat(TypedValue.complexToFloat(typedValue.data)).isEqualTo(8f);
+  }
+
+  @Test
+  public void parseFloatAttribute_shouldRejectMalformedValues() throws Exception {
+    for (String value : new String[] {"", " ", "dp", ".5dp", "5.dp", "5 dp", "5dpx", "1.2.3", "--1", "#fff"}) {
+      assertThat(ResourceHelper.parseFloatAttribute(null, value, new TypedValue(), false)).as(value).isFalse();
+    }
+  }
+
+  @Test
+  public void parseFloatAttribute_shouldBeSafeToCallConcurrently() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        final int value = i + 1;
+        results.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            for (int j = 0; j < 10000; j++) {
+              TypedValue typedValue = new TypedValue();
+              ResourceHelper.parseFloatAttribute(null, value + ".5dp", typedValue, false);
+              if (TypedValue.complexToFloat(typedValue.data) != value + 0.5f) {
+                return false;
+              }
+            }
+            return true;
+          }
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void assertDimension(String value, int unit, float expected) {
+    TypedValue typedValue = parse(value, false);
+    assertThat(typedValue.type).isEqualTo(TypedValue.TYPE_DIMENSION);
+    assertThat((typedValue.data >> TypedValue.COMPLEX_UNIT_SHIFT) & TypedValue.COMPLEX_UNIT_MASK).isEqualTo(unit);
+    assertThat(TypedValue.complexToFloat(typedValue.data)).isEqualTo(expected);
+  }
+
+  private static TypedValue parse(String value, boolean requireUnit) {
+    TypedValue typedValue = new TypedValue();
+    assertThat(ResourceHelper.parseFloatAttribute("attr", value, typedValue, requireUnit)).as(value).isTrue();
+    return typedValue;
+  }
+}
@@ -4,7 +4,11 @@ import android.app.Activity;
 import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.content.res.XmlResourceParser;
 import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.Gravity;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -16,7 +20,9 @@ import org.robolectric.Robolectric;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.TestRunners;
 import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
 import org.robolectric.util.Strings;
+import org.xmlpull.v1.XmlPullParser;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -36,6 +42,7 @@ import static org.robolectric.util.TestUtil.joinPath;
 
 @RunWith(TestRunners.MultiApiWithDefaults.class)
 public class ShadowAssetManagerTest {
+  private static final int[] CUSTOM_VIEW_ATTRS = {R.attr.message, android.R.attr.gravity};
 
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
@@ -280,4 +287,45 @@ public class ShadowAssetManagerTest {
     assertThat(shadowOf(assetManager).getResourceIdentifier("raw_resource", "raw", "org.robolectric"))
         .isEqualTo(R.raw.raw_resource);
   }
+
+  @Test
+  public void getResourceValue_shouldGiveTheSameNumbersWhenAskedAgain() throws Exception {
+    TypedValue first = new TypedValue();
+    TypedValue second = new TypedValue();
+    second.string = "stale";
+    second.assetCookie = 42;
+
+    resources.getValue(R.color.color_with_alpha, first, true);
+    resources.getValue(R.color.color_with_alpha, second, true);
+    assertThat(second.type).isEqualTo(first.type).isEqualTo(TypedValue.TYPE_INT_COLOR_ARGB8);
+    assertThat(second.data).isEqualTo(first.data).isEqualTo(0x802C76AD);
+    assertThat(second.string).isNull();
+    assertThat(second.assetCookie).isEqualTo(0);
+
+    resources.getValue(R.dimen.test_dp_dimen, first, true);
+    resources.getValue(R.dimen.test_dp_dimen, second, true);
+    assertThat(second.type).isEqualTo(first.type).isEqualTo(TypedValue.TYPE_DIMENSION);
+    assertThat(second.data).isEqualTo(first.data);
+    assertThat(resources.getDimension(R.dimen.test_dp_dimen)).isEqualTo(resources.getDimension(R.dimen.test_dp_dimen));
+  }
+
+  @Test
+  public void attrsToTypedArray_shouldGiveEachTypedArrayItsOwnCopyOfTheSameValues() throws Exception {
+    TypedArray first = obtainCustomViewAttributes();
+    TypedArray second = obtainCustomViewAttributes();
+
+    for (TypedArray typedArray : Arrays.asList(first, second)) {
+      assertThat(typedArray.getString(0)).isEqualTo("Hello");
+      assertThat(typedArray.getInt(1, 0)).isEqualTo(Gravity.CENTER);
+    }
+    // recycled TypedArrays are reused, so they can't share their data
+    assertThat(ReflectionHelpers.<Object>getField(first, "mData")).isNotSameAs(ReflectionHelpers.getField(second, "mData"));
+  }
+
+  private TypedArray obtainCustomViewAttributes() throws Exception {
+    XmlResourceParser parser = resources.getXml(R.layout.custom_layout);
+    while (parser.next() != XmlPullParser.START_TAG) {
+    }
+    return resources.obtainAttributes(parser, CUSTOM_VIEW_ATTRS);
+  }
 }
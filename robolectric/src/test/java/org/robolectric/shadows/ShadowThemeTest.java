@@ -26,6 +26,7 @@ import static org.robolectric.Shadows.shadowOf;
 
 @RunWith(TestRunners.MultiApiWithDefaults.class)
 public class ShadowThemeTest {
+  private static final int[] STRING1_ATTRS = {R.attr.string1};
 
   private Resources resources;
 
@@ -152,6 +153,18 @@ public class ShadowThemeTest {
         .isEqualTo("string 3 from Theme.Robolectric");
   }
 
+  @Test
+  public void obtainStyledAttributes_shouldSeeStylesAppliedSinceTheLastTimeWithTheSameAttrs() throws Exception {
+    Resources.Theme theme = resources.newTheme();
+    theme.applyStyle(R.style.Theme_Robolectric, false);
+    assertThat(theme.obtainStyledAttributes(STRING1_ATTRS).getString(0))
+        .isEqualTo("string 1 from Theme.Robolectric");
+
+    theme.applyStyle(R.style.Theme_AnotherTheme, true);
+    assertThat(theme.obtainStyledAttributes(STRING1_ATTRS).getString(0))
+        .isEqualTo("string 1 from Theme.AnotherTheme");
+  }
+
   @Test
   public void setTo_shouldCopyAllAttributesToEmptyTheme() throws Exception {
     Resources.Theme theme1 = resources.newTheme();